@@ -96,7 +96,7 @@ public final class RecyclerViewActions {
    */
   public static <VH extends ViewHolder> PositionableRecyclerViewAction scrollToHolder(
       final Matcher<VH> viewHolderMatcher) {
-    return new ScrollToViewAction<VH>(viewHolderMatcher);
+    return new ScrollToViewAction(new ViewHolderItemsMatcher<VH>(viewHolderMatcher));
   }
 
   /**
@@ -116,7 +116,7 @@ public final class RecyclerViewActions {
   public static <VH extends ViewHolder> PositionableRecyclerViewAction scrollTo(
       final Matcher<View> itemViewMatcher) {
     Matcher<VH> viewHolderMatcher = viewHolderMatcher(itemViewMatcher);
-    return new ScrollToViewAction<VH>(viewHolderMatcher);
+    return new ScrollToViewAction(new ViewHolderItemsMatcher<VH>(viewHolderMatcher));
   }
 
   /**
@@ -151,7 +151,8 @@ public final class RecyclerViewActions {
   public static <VH extends ViewHolder> PositionableRecyclerViewAction actionOnItem(
       final Matcher<View> itemViewMatcher, final ViewAction viewAction) {
     Matcher<VH> viewHolderMatcher = viewHolderMatcher(itemViewMatcher);
-    return new ActionOnItemViewAction<VH>(viewHolderMatcher, viewAction);
+    return new ActionOnItemViewAction(
+        new ViewHolderItemsMatcher<VH>(viewHolderMatcher), viewAction);
   }
 
   /**
@@ -173,26 +174,81 @@ public final class RecyclerViewActions {
    */
   public static <VH extends ViewHolder> PositionableRecyclerViewAction actionOnHolderItem(
       final Matcher<VH> viewHolderMatcher, final ViewAction viewAction) {
-    return new ActionOnItemViewAction<VH>(viewHolderMatcher, viewAction);
+    return new ActionOnItemViewAction(
+        new ViewHolderItemsMatcher<VH>(viewHolderMatcher), viewAction);
   }
 
-  private static final class ActionOnItemViewAction<VH extends ViewHolder>
-      implements PositionableRecyclerViewAction {
-    private final Matcher<VH> viewHolderMatcher;
+  /**
+   * Provides the data of the items of a {@link RecyclerView}'s adapter, like {@link
+   * android.widget.Adapter#getItem(int)} does for an {@link AdapterView}.
+   *
+   * @param <T> the type of the data
+   */
+  public interface AdapterDataProvider<T> {
+
+    /** Returns the data of the item at position in the adapter. */
+    T getData(Adapter<?> adapter, int position);
+  }
+
+  /**
+   * Returns a {@link ViewAction} which scrolls {@link RecyclerView} to the item whose data is
+   * matched by dataMatcher.
+   *
+   * <p>Unlike {@link #scrollTo(Matcher)}, this approach does not create or bind any {@link
+   * ViewHolder} to find the target item, which makes it much faster on large adapters.
+   *
+   * @param dataProvider provides the data of the adapter's items
+   * @param dataMatcher a <a
+   *     href="http://hamcrest.org/JavaHamcrest/javadoc/1.3/org/hamcrest/Matcher.html"><code>Matcher
+   *     </code></a> that matches the data of an item in {@link RecyclerView}
+   * @throws PerformException if there are more than one items matching given dataMatcher.
+   */
+  public static <T> PositionableRecyclerViewAction scrollToData(
+      final AdapterDataProvider<T> dataProvider, final Matcher<? super T> dataMatcher) {
+    return new ScrollToViewAction(new DataItemsMatcher<T>(dataProvider, dataMatcher));
+  }
+
+  /**
+   * Performs a {@link ViewAction} on the item whose data is matched by dataMatcher.
+   *
+   * <ol>
+   *   <li>Scroll Recycler View to the item matched by dataMatcher
+   *   <li>Perform an action on the view of the matched item
+   * </ol>
+   *
+   * See {@link #scrollToData(AdapterDataProvider, Matcher)} for how items are matched.
+   *
+   * @param dataProvider provides the data of the adapter's items
+   * @param dataMatcher a <a
+   *     href="http://hamcrest.org/JavaHamcrest/javadoc/1.3/org/hamcrest/Matcher.html"><code>Matcher
+   *     </code></a> that matches the data of an item in {@link RecyclerView}
+   * @param viewAction the action that is performed on the view of the item matched by dataMatcher
+   * @throws PerformException if there are more than one items matching given dataMatcher.
+   */
+  public static <T> PositionableRecyclerViewAction actionOnData(
+      final AdapterDataProvider<T> dataProvider,
+      final Matcher<? super T> dataMatcher,
+      final ViewAction viewAction) {
+    return new ActionOnItemViewAction(
+        new DataItemsMatcher<T>(dataProvider, dataMatcher), viewAction);
+  }
+
+  private static final class ActionOnItemViewAction implements PositionableRecyclerViewAction {
+    private final ItemsMatcher itemsMatcher;
     private final ViewAction viewAction;
     private final int atPosition;
-    private final ScrollToViewAction<VH> scroller;
+    private final ScrollToViewAction scroller;
 
-    private ActionOnItemViewAction(Matcher<VH> viewHolderMatcher, ViewAction viewAction) {
-      this(viewHolderMatcher, viewAction, NO_POSITION);
+    private ActionOnItemViewAction(ItemsMatcher itemsMatcher, ViewAction viewAction) {
+      this(itemsMatcher, viewAction, NO_POSITION);
     }
 
     private ActionOnItemViewAction(
-        Matcher<VH> viewHolderMatcher, ViewAction viewAction, int atPosition) {
-      this.viewHolderMatcher = checkNotNull(viewHolderMatcher);
+        ItemsMatcher itemsMatcher, ViewAction viewAction, int atPosition) {
+      this.itemsMatcher = checkNotNull(itemsMatcher);
       this.viewAction = checkNotNull(viewAction);
       this.atPosition = atPosition;
-      this.scroller = new ScrollToViewAction<VH>(viewHolderMatcher, atPosition);
+      this.scroller = new ScrollToViewAction(itemsMatcher, atPosition);
     }
 
     @SuppressWarnings("unchecked")
@@ -204,7 +260,7 @@ public final class RecyclerViewActions {
     @Override
     public PositionableRecyclerViewAction atPosition(int position) {
       checkArgument(position >= 0, "%d is used as an index - must be >= 0", position);
-      return new ActionOnItemViewAction<VH>(viewHolderMatcher, viewAction, position);
+      return new ActionOnItemViewAction(itemsMatcher, viewAction, position);
     }
 
     @Override
@@ -212,12 +268,12 @@ public final class RecyclerViewActions {
       if (atPosition == NO_POSITION) {
         return String.format(
             "performing ViewAction: %s on item matching: %s",
-            viewAction.getDescription(), viewHolderMatcher);
+            viewAction.getDescription(), itemsMatcher);
 
       } else {
         return String.format(
             "performing ViewAction: %s on %d-th item matching: %s",
-            viewAction.getDescription(), atPosition, viewHolderMatcher);
+            viewAction.getDescription(), atPosition, itemsMatcher);
       }
     }
 
@@ -225,14 +281,9 @@ public final class RecyclerViewActions {
     public void perform(UiController uiController, View root) {
       RecyclerView recyclerView = (RecyclerView) root;
       try {
-        scroller.perform(uiController, root);
-        uiController.loopMainThreadUntilIdle();
-        // the above scroller has checked bounds, dupes (maybe) and brought the element into screen.
-        int max = atPosition == NO_POSITION ? 2 : atPosition + 1;
-        int selectIndex = atPosition == NO_POSITION ? 0 : atPosition;
-        List<MatchedItem> matchedItems = itemsMatching(recyclerView, viewHolderMatcher, max);
-        actionOnItemAtPosition(matchedItems.get(selectIndex).position, viewAction)
-            .perform(uiController, root);
+        // the scroller checks bounds, dupes (maybe) and brings the element into screen.
+        int position = scroller.scrollToMatchingItem(uiController, recyclerView);
+        actionOnItemAtPosition(position, viewAction).perform(uiController, root);
         uiController.loopMainThreadUntilIdle();
       } catch (RuntimeException e) {
         throw new PerformException.Builder()
@@ -318,24 +369,23 @@ public final class RecyclerViewActions {
    * {@link ViewAction} which scrolls {@link RecyclerView} to the view matched by itemViewMatcher.
    * See {@link RecyclerViewActions#scrollTo(Matcher)} for more details.
    */
-  private static final class ScrollToViewAction<VH extends ViewHolder>
-      implements PositionableRecyclerViewAction {
-    private final Matcher<VH> viewHolderMatcher;
+  private static final class ScrollToViewAction implements PositionableRecyclerViewAction {
+    private final ItemsMatcher itemsMatcher;
     private final int atPosition;
 
-    private ScrollToViewAction(Matcher<VH> viewHolderMatcher) {
-      this(viewHolderMatcher, NO_POSITION);
+    private ScrollToViewAction(ItemsMatcher itemsMatcher) {
+      this(itemsMatcher, NO_POSITION);
     }
 
-    private ScrollToViewAction(Matcher<VH> viewHolderMatcher, int atPosition) {
-      this.viewHolderMatcher = viewHolderMatcher;
+    private ScrollToViewAction(ItemsMatcher itemsMatcher, int atPosition) {
+      this.itemsMatcher = itemsMatcher;
       this.atPosition = atPosition;
     }
 
     @Override
     public PositionableRecyclerViewAction atPosition(int position) {
       checkArgument(position >= 0, "%d is used as an index - must be >= 0", position);
-      return new ScrollToViewAction<VH>(viewHolderMatcher, position);
+      return new ScrollToViewAction(itemsMatcher, position);
     }
 
     @SuppressWarnings("unchecked")
@@ -347,39 +397,17 @@ public final class RecyclerViewActions {
     @Override
     public String getDescription() {
       if (atPosition == NO_POSITION) {
-        return "scroll RecyclerView to: " + viewHolderMatcher;
+        return "scroll RecyclerView to: " + itemsMatcher;
       } else {
         return String.format(
-            "scroll RecyclerView to the: %dth matching %s.", atPosition, viewHolderMatcher);
+            "scroll RecyclerView to the: %dth matching %s.", atPosition, itemsMatcher);
       }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void perform(UiController uiController, View view) {
-      RecyclerView recyclerView = (RecyclerView) view;
       try {
-        int maxMatches = atPosition == NO_POSITION ? 2 : atPosition + 1;
-        int selectIndex = atPosition == NO_POSITION ? 0 : atPosition;
-        List<MatchedItem> matchedItems = itemsMatching(recyclerView, viewHolderMatcher, maxMatches);
-
-        if (selectIndex >= matchedItems.size()) {
-          throw new RuntimeException(
-              String.format(
-                  "Found %d items matching %s, but position %d was requested.",
-                  matchedItems.size(), viewHolderMatcher.toString(), atPosition));
-        }
-        if (atPosition == NO_POSITION && matchedItems.size() == 2) {
-          StringBuilder ambiguousViewError = new StringBuilder();
-          ambiguousViewError.append(
-              String.format("Found more than one sub-view matching %s", viewHolderMatcher));
-          for (MatchedItem item : matchedItems) {
-            ambiguousViewError.append(item + "\n");
-          }
-          throw new RuntimeException(ambiguousViewError.toString());
-        }
-        recyclerView.scrollToPosition(matchedItems.get(selectIndex).position);
-        uiController.loopMainThreadUntilIdle();
+        scrollToMatchingItem(uiController, (RecyclerView) view);
       } catch (RuntimeException e) {
         throw new PerformException.Builder()
             .withActionDescription(this.getDescription())
@@ -388,6 +416,38 @@ public final class RecyclerViewActions {
             .build();
       }
     }
+
+    /**
+     * Scrolls to the matching item and returns its position.
+     *
+     * @throws RuntimeException if the item is ambiguous or could not be found.
+     */
+    private int scrollToMatchingItem(UiController uiController, RecyclerView recyclerView) {
+      // Matching stops at the requested item, or at the second one to detect ambiguity.
+      int maxMatches = atPosition == NO_POSITION ? 2 : atPosition + 1;
+      int selectIndex = atPosition == NO_POSITION ? 0 : atPosition;
+      List<MatchedItem> matchedItems = itemsMatcher.itemsMatching(recyclerView, maxMatches);
+
+      if (selectIndex >= matchedItems.size()) {
+        throw new RuntimeException(
+            String.format(
+                "Found %d items matching %s, but position %d was requested.",
+                matchedItems.size(), itemsMatcher.toString(), atPosition));
+      }
+      if (atPosition == NO_POSITION && matchedItems.size() == 2) {
+        StringBuilder ambiguousViewError = new StringBuilder();
+        ambiguousViewError.append(
+            String.format("Found more than one sub-view matching %s", itemsMatcher));
+        for (MatchedItem item : matchedItems) {
+          ambiguousViewError.append(item + "\n");
+        }
+        throw new RuntimeException(ambiguousViewError.toString());
+      }
+      int position = matchedItems.get(selectIndex).position;
+      recyclerView.scrollToPosition(position);
+      uiController.loopMainThreadUntilIdle();
+      return position;
+    }
   }
 
   /**
@@ -444,70 +504,125 @@ public final class RecyclerViewActions {
     }
   }
 
-  /**
-   * Finds positions of items in {@link RecyclerView} which is matching given viewHolderMatcher.
-   * This is similar to positionMatching(RecyclerView, Matcher<VH>), except that it returns list of
-   * multiple positions if there are, rather than throwing Ambiguous view error exception.
-   *
-   * @param recyclerView recycler view which is hosting items.
-   * @param viewHolderMatcher a <a
-   *     href="http://hamcrest.org/JavaHamcrest/javadoc/1.3/org/hamcrest/Matcher.html"><code>Matcher
-   *     </code></a> that matches an item view in {@link RecyclerView}
-   * @return list of MatchedItem which contains position and description of items in recyclerView.
-   * @throws RuntimeException if more than one item or item could not be found.
-   */
-  @SuppressWarnings("unchecked")
-  private static <T extends VH, VH extends ViewHolder> List<MatchedItem> itemsMatching(
-      final RecyclerView recyclerView, final Matcher<VH> viewHolderMatcher, int max) {
-    final Adapter<T> adapter = recyclerView.getAdapter();
-    SparseArray<VH> viewHolderCache = new SparseArray<VH>();
-    List<MatchedItem> matchedItems = new ArrayList<MatchedItem>();
-    for (int position = 0; position < adapter.getItemCount(); position++) {
-      int itemType = adapter.getItemViewType(position);
-      VH cachedViewHolder = viewHolderCache.get(itemType);
-      // Create a view holder per type if not exists
-      if (null == cachedViewHolder) {
-        cachedViewHolder = adapter.createViewHolder(recyclerView, itemType);
-        viewHolderCache.put(itemType, cachedViewHolder);
+  /** Finds the items of a {@link RecyclerView} which match, in adapter order. */
+  private abstract static class ItemsMatcher {
+
+    /**
+     * Returns the first max items in recyclerView which match.
+     *
+     * @param recyclerView recycler view which is hosting items.
+     * @param max the number of matching items after which matching stops.
+     * @return list of MatchedItem which contains position and description of items in
+     *     recyclerView.
+     */
+    abstract List<MatchedItem> itemsMatching(RecyclerView recyclerView, int max);
+  }
+
+  /** Matches items by binding their data to a {@link ViewHolder} per item type. */
+  private static final class ViewHolderItemsMatcher<VH extends ViewHolder> extends ItemsMatcher {
+    private final Matcher<VH> viewHolderMatcher;
+
+    private ViewHolderItemsMatcher(Matcher<VH> viewHolderMatcher) {
+      this.viewHolderMatcher = checkNotNull(viewHolderMatcher);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    List<MatchedItem> itemsMatching(RecyclerView recyclerView, int max) {
+      final Adapter<VH> adapter = recyclerView.getAdapter();
+      SparseArray<VH> viewHolderCache = new SparseArray<VH>();
+      List<MatchedItem> matchedItems = new ArrayList<MatchedItem>();
+      for (int position = 0; position < adapter.getItemCount(); position++) {
+        int itemType = adapter.getItemViewType(position);
+        VH cachedViewHolder = viewHolderCache.get(itemType);
+        // Create a view holder per type if not exists
+        if (null == cachedViewHolder) {
+          cachedViewHolder = adapter.createViewHolder(recyclerView, itemType);
+          viewHolderCache.put(itemType, cachedViewHolder);
+        }
+        // Bind data to ViewHolder and apply matcher to view descendants.
+        adapter.bindViewHolder(cachedViewHolder, position);
+        boolean matches = viewHolderMatcher.matches(cachedViewHolder);
+        adapter.onViewRecycled(cachedViewHolder);
+        if (matches) {
+          matchedItems.add(new MatchedItem(recyclerView, position));
+          if (matchedItems.size() == max) {
+            break;
+          }
+        }
       }
-      // Bind data to ViewHolder and apply matcher to view descendants.
-      adapter.bindViewHolder((T) cachedViewHolder, position);
-      if (viewHolderMatcher.matches(cachedViewHolder)) {
-        matchedItems.add(
-            new MatchedItem(
-                position,
-                HumanReadables.getViewHierarchyErrorMessage(
-                    cachedViewHolder.itemView,
-                    /* problemViews= */ null,
-                    "\n\n*** Matched ViewHolder item at position: " + position + " ***",
-                    /* problemViewSuffix= */ null)));
-        adapter.onViewRecycled((T) cachedViewHolder);
-        if (matchedItems.size() == max) {
-          break;
+      return matchedItems;
+    }
+
+    @Override
+    public String toString() {
+      return viewHolderMatcher.toString();
+    }
+  }
+
+  /** Matches items by their data, without creating or binding any {@link ViewHolder}. */
+  private static final class DataItemsMatcher<T> extends ItemsMatcher {
+    private final AdapterDataProvider<T> dataProvider;
+    private final Matcher<? super T> dataMatcher;
+
+    private DataItemsMatcher(AdapterDataProvider<T> dataProvider, Matcher<? super T> dataMatcher) {
+      this.dataProvider = checkNotNull(dataProvider);
+      this.dataMatcher = checkNotNull(dataMatcher);
+    }
+
+    @Override
+    List<MatchedItem> itemsMatching(RecyclerView recyclerView, int max) {
+      Adapter<?> adapter = recyclerView.getAdapter();
+      List<MatchedItem> matchedItems = new ArrayList<MatchedItem>();
+      for (int position = 0; position < adapter.getItemCount(); position++) {
+        if (dataMatcher.matches(dataProvider.getData(adapter, position))) {
+          matchedItems.add(new MatchedItem(recyclerView, position));
+          if (matchedItems.size() == max) {
+            break;
+          }
         }
-      } else {
-        adapter.onViewRecycled((T) cachedViewHolder);
       }
+      return matchedItems;
+    }
+
+    @Override
+    public String toString() {
+      return "item with data: " + dataMatcher;
     }
-    return matchedItems;
   }
 
   /**
    * Wrapper for matched items in recycler view which contains position and description of matched
    * view.
+   *
+   * <p>The description is only needed for errors, so it is rendered when asked for, by binding
+   * the item to a new {@link ViewHolder}.
    */
   private static class MatchedItem {
     public final int position;
-    public final String description;
+    private final RecyclerView recyclerView;
 
-    private MatchedItem(int position, String description) {
+    private MatchedItem(RecyclerView recyclerView, int position) {
+      this.recyclerView = recyclerView;
       this.position = position;
-      this.description = description;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public String toString() {
-      return description;
+      Adapter<ViewHolder> adapter = recyclerView.getAdapter();
+      ViewHolder viewHolder =
+          adapter.createViewHolder(recyclerView, adapter.getItemViewType(position));
+      adapter.bindViewHolder(viewHolder, position);
+      try {
+        return HumanReadables.getViewHierarchyErrorMessage(
+            viewHolder.itemView,
+            /* problemViews= */ null,
+            "\n\n*** Matched ViewHolder item at position: " + position + " ***",
+            /* problemViewSuffix= */ null);
+      } finally {
+        adapter.onViewRecycled(viewHolder);
+      }
     }
   }
 
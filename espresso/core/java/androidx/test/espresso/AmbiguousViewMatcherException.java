@@ -42,6 +42,8 @@ import org.hamcrest.Matcher;
  * object - since it will most likely be created on the UI thread and thrown on the instrumentation
  * thread, it would be invalid to touch the view on the instrumentation thread. Also the view
  * hierarchy may have changed since exception creation (leading to more confusion).
+ *
+ * <p>The message, which describes the view hierarchy, is rendered when it is first requested.
  */
 public final class AmbiguousViewMatcherException extends RuntimeException
     implements RootViewException {
@@ -51,30 +53,43 @@ public final class AmbiguousViewMatcherException extends RuntimeException
   private View view1;
   private View view2;
   private View[] others;
+  private boolean includeViewHierarchy = true;
+  private int maxMsgLen = Integer.MAX_VALUE;
+  @Nullable private String viewHierarchyFile = null;
+  // Rendered on first use.
+  @Nullable private String message;
 
-  private AmbiguousViewMatcherException(String description) {
+  private AmbiguousViewMatcherException(@Nullable String description) {
     super(description);
+    this.message = description;
     TestOutputEmitter.dumpThreadStates("ThreadState-AmbiguousViewMatcherException.txt");
   }
 
   private AmbiguousViewMatcherException(Builder builder) {
-    this(getErrorMessage(builder));
+    this((String) null);
     this.viewMatcher = builder.viewMatcher;
     this.rootView = builder.rootView;
     this.view1 = builder.view1;
     this.view2 = builder.view2;
     this.others = builder.others;
+    this.includeViewHierarchy = builder.includeViewHierarchy;
+    this.maxMsgLen = builder.maxMsgLen;
+    this.viewHierarchyFile = builder.viewHierarchyFile;
+  }
+
+  @Override
+  public synchronized String getMessage() {
+    if (message == null) {
+      message = getErrorMessage();
+    }
+    return message;
   }
 
-  private static String getErrorMessage(Builder builder) {
+  private String getErrorMessage() {
     String errorMessage = "";
-    if (builder.includeViewHierarchy) {
+    if (includeViewHierarchy) {
       ArrayList<View> ambiguousViews =
-          Lists.newArrayList(
-              ImmutableSet.<View>builder()
-                  .add(builder.view1, builder.view2)
-                  .add(builder.others)
-                  .build());
+          Lists.newArrayList(ImmutableSet.<View>builder().add(view1, view2).add(others).build());
 
       StringBuilder viewsAsText = new StringBuilder();
       int numViews = ambiguousViews.size();
@@ -95,27 +110,26 @@ public final class AmbiguousViewMatcherException extends RuntimeException
 
       errorMessage =
           HumanReadables.getViewHierarchyErrorMessage(
-              builder.rootView,
+              rootView,
               ambiguousViews,
               String.format(
                   Locale.ROOT,
                   "'%s' matches %d views in the hierarchy:%s",
-                  builder.viewMatcher,
+                  viewMatcher,
                   numViews,
                   viewsAsText),
               "****MATCHES****",
-              builder.maxMsgLen);
+              maxMsgLen);
 
-      if (builder.viewHierarchyFile != null) {
+      if (viewHierarchyFile != null) {
         errorMessage +=
             String.format(
                 "\nThe complete view hierarchy is available in artifact file '%s'.",
-                builder.viewHierarchyFile);
+                viewHierarchyFile);
       }
     } else {
       errorMessage =
-          String.format(
-              Locale.ROOT, "Multiple ambiguous views found for matcher %s", builder.viewMatcher);
+          String.format(Locale.ROOT, "Multiple ambiguous views found for matcher %s", viewMatcher);
     }
 
     return errorMessage;
@@ -92,6 +92,22 @@ public final class Espresso {
     }
   }
 
+  /**
+   * Creates an {@link InteractionBatch}, which runs a sequence of view actions and assertions as a
+   * single interaction against the same root.
+   *
+   * <p>This method builds an InteractionBatch object - it does not interact with the application
+   * under test until {@link InteractionBatch#run()} is called.
+   */
+  @CheckReturnValue
+  @CheckResult
+  public static InteractionBatch batch() {
+    String spanName = TracingUtil.getSpanName("Espresso", "batch");
+    try (Span ignored = tracer.beginSpan(spanName)) {
+      return BASE.plus(new ViewInteractionModule(isRoot())).interactionBatch();
+    }
+  }
+
   /**
    * Creates an {@link DataInteraction} for a data object displayed by the application. Use this
    * method to load (into the view hierarchy) items from AdapterView widgets (e.g. ListView).
@@ -136,8 +152,7 @@ public final class Espresso {
   @Deprecated
   public static void registerLooperAsIdlingResource(Looper looper, boolean considerWaitIdle) {
     IdlingRegistry.getInstance().registerLooperAsIdlingResource(looper);
-    baseRegistry.sync(
-        IdlingRegistry.getInstance().getResources(), IdlingRegistry.getInstance().getLoopers());
+    baseRegistry.sync(IdlingRegistry.getInstance());
   }
 
   /**
@@ -152,8 +167,7 @@ public final class Espresso {
   @Deprecated
   public static boolean registerIdlingResources(IdlingResource... resources) {
     if (IdlingRegistry.getInstance().register(resources)) {
-      baseRegistry.sync(
-          IdlingRegistry.getInstance().getResources(), IdlingRegistry.getInstance().getLoopers());
+      baseRegistry.sync(IdlingRegistry.getInstance());
       return true;
     }
     return resources.length == 0;
@@ -169,8 +183,7 @@ public final class Espresso {
   @Deprecated
   public static boolean unregisterIdlingResources(IdlingResource... resources) {
     if (IdlingRegistry.getInstance().unregister(resources)) {
-      baseRegistry.sync(
-          IdlingRegistry.getInstance().getResources(), IdlingRegistry.getInstance().getLoopers());
+      baseRegistry.sync(IdlingRegistry.getInstance());
       return true;
     }
     return resources.length == 0;
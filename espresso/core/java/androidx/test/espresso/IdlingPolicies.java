@@ -54,6 +54,13 @@ public final class IdlingPolicies {
           .logWarning()
           .build();
 
+  private static volatile IdlingPolicy viewConditionPolicy =
+      new IdlingPolicy.Builder()
+          .withIdlingTimeout(10)
+          .withIdlingTimeoutUnit(TimeUnit.SECONDS)
+          .logWarning()
+          .build();
+
   /**
    * Updates the IdlingPolicy used in UiController.loopUntil to detect AppNotIdleExceptions.
    *
@@ -89,6 +96,24 @@ public final class IdlingPolicies {
             .build();
   }
 
+  /**
+   * Updates the IdlingPolicy used by {@link ViewInteraction#waitUntil(ViewAssertion)} to determine
+   * how long to wait for a view condition.
+   *
+   * @param timeout the timeout before the failure of the awaited assertion is reported.
+   * @param unit the unit of the timeout value.
+   */
+  public static void setViewConditionTimeout(long timeout, TimeUnit unit) {
+    checkArgument(timeout > 0);
+    checkNotNull(unit);
+    viewConditionPolicy =
+        viewConditionPolicy
+            .toBuilder()
+            .withIdlingTimeout(timeout)
+            .withIdlingTimeoutUnit(unit)
+            .build();
+  }
+
   /**
    * This method overrides Espresso's default behaviour of disabling timeouts when a step debugger
    * is attached to the VM. Setting the timeout flag reenables the behaviour of throwing a timeout
@@ -115,4 +140,8 @@ public final class IdlingPolicies {
   public static IdlingPolicy getDynamicIdlingResourceErrorPolicy() {
     return dynamicIdlingResourceErrorPolicy;
   }
+
+  public static IdlingPolicy getViewConditionPolicy() {
+    return viewConditionPolicy;
+  }
 }
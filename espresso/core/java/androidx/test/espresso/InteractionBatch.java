@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso;
+
+import static androidx.test.espresso.matcher.ViewMatchers.isRoot;
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.util.Log;
+import android.view.View;
+import androidx.annotation.Nullable;
+import androidx.test.espresso.base.InterruptableUiController;
+import androidx.test.espresso.base.MainThread;
+import androidx.test.espresso.base.ViewFinderFactory;
+import androidx.test.espresso.internal.data.TestFlowVisualizer;
+import androidx.test.espresso.util.TracingUtil;
+import androidx.test.internal.platform.os.ControlledLooper;
+import androidx.test.internal.util.Checks;
+import androidx.test.platform.tracing.Tracer.Span;
+import androidx.test.platform.tracing.Tracing;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.hamcrest.Matcher;
+
+/**
+ * Runs a sequence of view actions and assertions as a single interaction.
+ *
+ * <p>Every {@link ViewInteraction} is posted to the main thread separately, waits for the app to
+ * become idle and picks its root anew. A batch posts all its steps in one main-thread task, picks
+ * the root once and only waits for the app to become idle before the first step and after each
+ * action. For example:
+ *
+ * <pre>{@code
+ * Espresso.batch()
+ *     .perform(withId(R.id.name), typeText("Jane"))
+ *     .perform(withId(R.id.send), click())
+ *     .check(withId(R.id.greeting), matches(withText("Hello Jane")))
+ *     .run();
+ * }</pre>
+ *
+ * <p>As all steps run against the same root, a batch should not contain actions that open or
+ * close windows. Steps are only run in the current process.
+ *
+ * <p>A failing step is reported to the {@link FailureHandler} and ends the batch. If the handler
+ * throws, the failure is wrapped in an {@link InteractionBatchException} carrying the index of the
+ * step.
+ */
+public final class InteractionBatch {
+
+  private static final String TAG = InteractionBatch.class.getSimpleName();
+
+  private final InterruptableUiController uiController;
+  private final Executor mainThreadExecutor;
+  private final ControlledLooper controlledLooper;
+  private final FailureHandler failureHandler;
+  private final Provider<View> rootViewProvider;
+  private final AtomicReference<Matcher<Root>> rootMatcherRef;
+  private final ViewFinderFactory viewFinderFactory;
+  private final Tracing tracer;
+  private final TestFlowVisualizer testFlowVisualizer;
+  private final ViewActionPerformer actionPerformer;
+  // test thread only
+  private final List<Step> steps = new ArrayList<>();
+  // Written on the main thread before its task completes, read on the test thread afterwards.
+  private volatile int failedStepIndex = -1;
+
+  @Inject
+  InteractionBatch(
+      UiController uiController,
+      @MainThread Executor mainThreadExecutor,
+      ControlledLooper controlledLooper,
+      FailureHandler failureHandler,
+      Provider<View> rootViewProvider,
+      AtomicReference<Matcher<Root>> rootMatcherRef,
+      ViewFinderFactory viewFinderFactory,
+      Tracing tracer,
+      TestFlowVisualizer testFlowVisualizer) {
+    this.uiController = (InterruptableUiController) checkNotNull(uiController);
+    this.mainThreadExecutor = checkNotNull(mainThreadExecutor);
+    this.controlledLooper = checkNotNull(controlledLooper);
+    this.failureHandler = checkNotNull(failureHandler);
+    this.rootViewProvider = checkNotNull(rootViewProvider);
+    this.rootMatcherRef = checkNotNull(rootMatcherRef);
+    this.viewFinderFactory = checkNotNull(viewFinderFactory);
+    this.tracer = tracer;
+    this.testFlowVisualizer = checkNotNull(testFlowVisualizer);
+    this.actionPerformer = new ViewActionPerformer(uiController, testFlowVisualizer, tracer);
+  }
+
+  /** Makes all steps of this batch run against the root selected by the given root matcher. */
+  public InteractionBatch inRoot(Matcher<Root> rootMatcher) {
+    rootMatcherRef.set(checkNotNull(rootMatcher));
+    return this;
+  }
+
+  /**
+   * Adds a step for each of the given actions, performing it on the view selected by the view
+   * matcher.
+   *
+   * @return this batch for further steps.
+   */
+  public InteractionBatch perform(Matcher<View> viewMatcher, ViewAction... viewActions) {
+    checkNotNull(viewMatcher);
+    checkNotNull(viewActions);
+    for (ViewAction viewAction : viewActions) {
+      steps.add(new Step(viewMatcher, checkNotNull(viewAction), null));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a step checking the assertion on the view selected by the view matcher.
+   *
+   * @return this batch for further steps.
+   */
+  public InteractionBatch check(Matcher<View> viewMatcher, ViewAssertion viewAssert) {
+    steps.add(new Step(checkNotNull(viewMatcher), null, checkNotNull(viewAssert)));
+    return this;
+  }
+
+  /**
+   * Runs the steps of this batch in order.
+   *
+   * @throws InteractionBatchException if a step failed and the failure handler threw.
+   * @throws RuntimeException when being invoked on the main thread.
+   */
+  public void run() {
+    Checks.checkNotMainThread();
+    final List<Step> batchSteps = Collections.unmodifiableList(new ArrayList<>(steps));
+    failedStepIndex = -1;
+
+    Callable<Void> batchInteraction =
+        new Callable<Void>() {
+          @Override
+          public Void call() {
+            String spanName =
+                TracingUtil.getSpanName("Espresso", "batch", batchSteps.size() + " steps");
+            try (Span ignored = tracer.beginSpan(spanName)) {
+              runSteps(batchSteps);
+              return null;
+            }
+          }
+        };
+
+    ListenableFutureTask<Void> mainThreadInteraction =
+        ListenableFutureTask.create(batchInteraction);
+    mainThreadExecutor.execute(mainThreadInteraction);
+    List<ListenableFuture<Void>> interactions = new ArrayList<>();
+    interactions.add(mainThreadInteraction);
+    try {
+      controlledLooper.drainMainThreadUntilIdle();
+      // Blocking call
+      InteractionResultsHandler.gatherAnyResult(interactions);
+    } catch (RuntimeException | Error e) {
+      handleFailure(e, batchSteps);
+    } finally {
+      uiController.interruptEspressoTasks();
+    }
+  }
+
+  private void runSteps(List<Step> batchSteps) {
+    uiController.loopMainThreadUntilIdle();
+    final View rootView = rootViewProvider.get();
+    Provider<View> pickedRoot =
+        new Provider<View>() {
+          @Override
+          public View get() {
+            return rootView;
+          }
+        };
+    boolean performed = false;
+    for (int i = 0; i < batchSteps.size(); i++) {
+      Step step = batchSteps.get(i);
+      failedStepIndex = i;
+      if (performed) {
+        // The action may have posted work the next step depends on.
+        uiController.loopMainThreadUntilIdle();
+      }
+      ViewFinder viewFinder = viewFinderFactory.create(step.viewMatcher, pickedRoot);
+      if (step.viewAction != null) {
+        doPerform(step, viewFinder.getView());
+        performed = true;
+      } else {
+        doCheck(step, viewFinder);
+        performed = false;
+      }
+    }
+    failedStepIndex = -1;
+  }
+
+  private void doPerform(Step step, View targetView) {
+    ViewAction viewAction = step.viewAction;
+    Log.i(
+        TAG,
+        String.format(
+            Locale.ROOT,
+            "Performing '%s' action on view %s",
+            viewAction.getDescription(),
+            step.viewMatcher));
+    int actionIndex = testFlowVisualizer.getLastActionIndexAndIncrement();
+    boolean testFlowEnabled = testFlowVisualizer.isEnabled();
+    if (testFlowEnabled) {
+      testFlowVisualizer.beforeActionGenerateTestArtifact(actionIndex);
+    }
+    actionPerformer.perform(
+        viewAction, viewAction, step.viewMatcher, targetView, actionIndex, testFlowEnabled);
+    if (testFlowEnabled) {
+      testFlowVisualizer.afterActionGenerateTestArtifact(actionIndex);
+    }
+  }
+
+  private static void doCheck(Step step, ViewFinder viewFinder) {
+    View targetView = null;
+    NoMatchingViewException missingViewException = null;
+    try {
+      targetView = viewFinder.getView();
+    } catch (NoMatchingViewException nsve) {
+      missingViewException = nsve;
+    }
+    Log.i(
+        TAG,
+        String.format(
+            Locale.ROOT,
+            "Checking '%s' assertion on view %s",
+            step.viewAssertion,
+            step.viewMatcher));
+    step.viewAssertion.check(targetView, missingViewException);
+  }
+
+  private void handleFailure(Throwable failure, List<Step> batchSteps) {
+    int stepIndex = failedStepIndex;
+    if (stepIndex < 0) {
+      // Not caused by a step, e.g. no root could be picked.
+      failureHandler.handle(failure, isRoot());
+      return;
+    }
+    Step step = batchSteps.get(stepIndex);
+    try {
+      failureHandler.handle(failure, step.viewMatcher);
+    } catch (RuntimeException | Error e) {
+      throw new InteractionBatchException(stepIndex, step.toString(), e);
+    }
+  }
+
+  private static final class Step {
+    final Matcher<View> viewMatcher;
+    @Nullable final ViewAction viewAction;
+    @Nullable final ViewAssertion viewAssertion;
+
+    Step(
+        Matcher<View> viewMatcher,
+        @Nullable ViewAction viewAction,
+        @Nullable ViewAssertion viewAssertion) {
+      this.viewMatcher = viewMatcher;
+      this.viewAction = viewAction;
+      this.viewAssertion = viewAssertion;
+    }
+
+    @Override
+    public String toString() {
+      if (viewAction != null) {
+        return String.format(
+            Locale.ROOT, "'%s' action on view %s", viewAction.getDescription(), viewMatcher);
+      }
+      return String.format(Locale.ROOT, "'%s' assertion on view %s", viewAssertion, viewMatcher);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso;
+
+import java.util.Locale;
+
+/**
+ * Indicates that a step of an {@link InteractionBatch} failed. The cause is the failure of the
+ * step, as reported by the {@link FailureHandler}.
+ */
+public final class InteractionBatchException extends RuntimeException
+    implements EspressoException {
+
+  private final int stepIndex;
+
+  InteractionBatchException(int stepIndex, String stepDescription, Throwable cause) {
+    super(
+        String.format(
+            Locale.ROOT, "Step %d of the interaction batch failed: %s", stepIndex, stepDescription),
+        cause);
+    this.stepIndex = stepIndex;
+  }
+
+  /** Returns the 0-based index of the step that failed. */
+  public int getStepIndex() {
+    return stepIndex;
+  }
+}
@@ -40,6 +40,9 @@ import org.hamcrest.Matcher;
  * object - since it will most likely be created on the UI thread and thrown on the instrumentation
  * thread, it would be invalid to touch the view on the instrumentation thread. Also the view
  * hierarchy may have changed since exception creation (leading to more confusion).
+ *
+ * <p>The message, which describes the view hierarchy, is rendered when it is first requested, so
+ * exceptions that are caught and discarded, e.g. while polling for a view, don't pay for it.
  */
 public final class NoMatchingViewException extends RuntimeException implements RootViewException {
 
@@ -48,18 +51,33 @@ public final class NoMatchingViewException extends RuntimeException implements R
   private List<View> adapterViews = Lists.newArrayList();
   private boolean includeViewHierarchy = true;
   @Nullable private String adapterViewWarning = null;
+  private int maxMsgLen = Integer.MAX_VALUE;
+  @Nullable private String viewHierarchyFile = null;
+  // Rendered on first use.
+  @Nullable private String message;
 
   private NoMatchingViewException(String description) {
     super(description);
+    this.message = description;
   }
 
   private NoMatchingViewException(Builder builder) {
-    super(getErrorMessage(builder), builder.cause);
+    super(null, builder.cause);
     this.viewMatcher = builder.viewMatcher;
     this.rootView = builder.rootView;
     this.adapterViews = builder.adapterViews;
     this.adapterViewWarning = builder.adapterViewWarning;
     this.includeViewHierarchy = builder.includeViewHierarchy;
+    this.maxMsgLen = builder.maxMsgLen;
+    this.viewHierarchyFile = builder.viewHierarchyFile;
+  }
+
+  @Override
+  public synchronized String getMessage() {
+    if (message == null) {
+      message = getErrorMessage();
+    }
+    return message;
   }
 
   /**
@@ -79,32 +97,31 @@ public final class NoMatchingViewException extends RuntimeException implements R
     return rootView;
   }
 
-  private static String getErrorMessage(Builder builder) {
+  private String getErrorMessage() {
     String errorMessage = "";
-    if (builder.includeViewHierarchy) {
-      String message =
-          String.format(
-              Locale.ROOT, "No views in hierarchy found matching: %s", builder.viewMatcher);
-      if (builder.adapterViewWarning != null) {
-        message = message + builder.adapterViewWarning;
+    if (includeViewHierarchy) {
+      String header =
+          String.format(Locale.ROOT, "No views in hierarchy found matching: %s", viewMatcher);
+      if (adapterViewWarning != null) {
+        header = header + adapterViewWarning;
       }
       errorMessage =
           HumanReadables.getViewHierarchyErrorMessage(
-              builder.rootView,
+              rootView,
               /* problemViews= */ null,
-              message,
+              header,
               /* problemViewSuffix= */ null,
-              builder.maxMsgLen);
+              maxMsgLen);
 
-      if (builder.viewHierarchyFile != null) {
+      if (viewHierarchyFile != null) {
         errorMessage +=
             String.format(
                 "\nThe complete view hierarchy is available in artifact file '%s'.",
-                builder.viewHierarchyFile);
+                viewHierarchyFile);
       }
     } else {
       errorMessage =
-          String.format(Locale.ROOT, "Could not find a view that matches %s", builder.viewMatcher);
+          String.format(Locale.ROOT, "Could not find a view that matches %s", viewMatcher);
     }
 
     return errorMessage;
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso;
+
+import static androidx.test.espresso.matcher.ViewMatchers.isAssignableFrom;
+import static androidx.test.espresso.matcher.ViewMatchers.isDescendantOfA;
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.view.View;
+import android.widget.AdapterView;
+import androidx.test.espresso.action.ScrollToAction;
+import androidx.test.espresso.internal.data.TestFlowVisualizer;
+import androidx.test.espresso.internal.data.model.ActionData;
+import androidx.test.espresso.util.HumanReadables;
+import androidx.test.espresso.util.TracingUtil;
+import androidx.test.platform.tracing.Tracer.Span;
+import androidx.test.platform.tracing.Tracing;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+
+/** Performs a view action on an already found target view. Shared by all interactions. */
+final class ViewActionPerformer {
+
+  private final UiController uiController;
+  private final TestFlowVisualizer testFlowVisualizer;
+  private final Tracing tracer;
+
+  ViewActionPerformer(
+      UiController uiController, TestFlowVisualizer testFlowVisualizer, Tracing tracer) {
+    this.uiController = checkNotNull(uiController);
+    this.testFlowVisualizer = checkNotNull(testFlowVisualizer);
+    this.tracer = tracer;
+  }
+
+  /**
+   * Checks the constraints of the action against the target view and performs it. Should be
+   * executed on the main thread.
+   *
+   * @param viewAction the action to perform.
+   * @param innerViewAction the action the user asked for, used for failure hints and test flow
+   *     data. Differs from {@code viewAction} when the latter is a wrapper.
+   * @param viewMatcher the matcher that selected the target view.
+   * @param targetView the view to perform the action on.
+   * @param actionIndex the index of the action in the test flow.
+   * @param testFlowEnabled whether test flow data should be recorded.
+   */
+  void perform(
+      ViewAction viewAction,
+      ViewAction innerViewAction,
+      Matcher<View> viewMatcher,
+      View targetView,
+      int actionIndex,
+      boolean testFlowEnabled) {
+    final Matcher<? extends View> constraints = checkNotNull(viewAction.getConstraints());
+    if (!constraints.matches(targetView)) {
+      // TODO: update this to describeMismatch once hamcrest 1.4 is available
+      StringDescription stringDescription =
+          new StringDescription(
+              new StringBuilder(
+                  "Action will not be performed because the target view "
+                      + "does not match one or more of the following constraints:\n"));
+      constraints.describeTo(stringDescription);
+      stringDescription
+          .appendText("\nTarget view: ")
+          .appendValue(HumanReadables.describe(targetView));
+
+      if (innerViewAction instanceof ScrollToAction
+          && isDescendantOfA(isAssignableFrom(AdapterView.class)).matches(targetView)) {
+        stringDescription.appendText(
+            "\nFurther Info: ScrollToAction on a view inside an AdapterView will not work. "
+                + "Use Espresso.onData to load the view.");
+      }
+      throw new PerformException.Builder()
+          .withActionDescription(viewAction.getDescription())
+          .withViewDescription(viewMatcher.toString())
+          .withCause(new RuntimeException(stringDescription.toString()))
+          .build();
+    }
+    ActionData actionData = new ActionData(actionIndex, innerViewAction);
+    if (testFlowEnabled) {
+      testFlowVisualizer.beforeActionRecordData(actionData, targetView);
+    }
+    String spanName =
+        TracingUtil.getSpanName("Espresso", "doPerform", HumanReadables.describe(targetView));
+    try (Span ignored = tracer.beginSpan(spanName)) {
+      viewAction.perform(uiController, targetView);
+    }
+    if (testFlowEnabled) {
+      testFlowVisualizer.afterActionRecordData(actionData);
+    }
+  }
+}
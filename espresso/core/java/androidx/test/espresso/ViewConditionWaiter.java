@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso;
+
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.test.espresso.base.ViewFinderFactory;
+import androidx.test.espresso.base.WakeableUiController;
+import java.util.Locale;
+import javax.inject.Provider;
+import org.hamcrest.Matcher;
+
+/**
+ * Waits on the main thread until a {@link ViewAssertion} holds for the view matched by a view
+ * matcher.
+ *
+ * <p>The assertion is evaluated again only after the root view was laid out, drawn or scrolled.
+ * With a {@link WakeableUiController} the main thread is woken up by these events, otherwise they
+ * are polled for. The root view is picked once per evaluation, without waiting. While none can be
+ * picked, e.g. because no activity is resumed yet, it is polled for as well.
+ */
+final class ViewConditionWaiter
+    implements ViewTreeObserver.OnGlobalLayoutListener, ViewTreeObserver.OnScrollChangedListener {
+  private static final String TAG = ViewConditionWaiter.class.getSimpleName();
+  private static final long POLL_INTERVAL_MILLIS = 10;
+
+  private final UiController uiController;
+  private final ViewFinderFactory viewFinderFactory;
+  private final Matcher<View> viewMatcher;
+  // Picks the root view without waiting, fails with an EspressoException while there is none.
+  private final Provider<View> rootViewProvider;
+  private final ViewAssertion viewAssertion;
+
+  @Nullable private ViewTreeObserver observer;
+  // An Object, since the listener interface is only loadable from API 16.
+  @Nullable private Object drawListener;
+  private boolean changed;
+
+  ViewConditionWaiter(
+      UiController uiController,
+      ViewFinderFactory viewFinderFactory,
+      Matcher<View> viewMatcher,
+      Provider<View> rootViewProvider,
+      ViewAssertion viewAssertion) {
+    this.uiController = checkNotNull(uiController);
+    this.viewFinderFactory = checkNotNull(viewFinderFactory);
+    this.viewMatcher = checkNotNull(viewMatcher);
+    this.rootViewProvider = checkNotNull(rootViewProvider);
+    this.viewAssertion = checkNotNull(viewAssertion);
+  }
+
+  /**
+   * Waits until the assertion holds.
+   *
+   * @param timeoutMillis how long to wait for
+   * @throws RuntimeException or {@link AssertionError}, the last failure of the assertion if it
+   *     did not hold in time, or of picking the root view if none could be picked in time.
+   */
+  void await(long timeoutMillis) {
+    long deadline = SystemClock.uptimeMillis() + timeoutMillis;
+    try {
+      while (true) {
+        changed = false;
+        Throwable failure = evaluate();
+        if (failure == null) {
+          return;
+        }
+        long remainingMillis = deadline - SystemClock.uptimeMillis();
+        if (remainingMillis <= 0) {
+          Log.w(
+              TAG,
+              String.format(
+                  Locale.ROOT,
+                  "'%s' assertion did not hold within %dms",
+                  viewAssertion,
+                  timeoutMillis));
+          if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+          }
+          throw (AssertionError) failure;
+        }
+        waitForChange(remainingMillis);
+      }
+    } finally {
+      stopObserving();
+    }
+  }
+
+  /**
+   * Picks the root view and starts observing it, if it changed. Returns the failure of the
+   * assertion on the view found below it or of picking it, or null if the assertion holds.
+   */
+  @Nullable
+  private Throwable evaluate() {
+    final View rootView;
+    try {
+      rootView = rootViewProvider.get();
+    } catch (RuntimeException e) {
+      if (!(e instanceof EspressoException)) {
+        throw e;
+      }
+      // E.g. NoMatchingRootException or NoActivityResumedException, the root may still show up.
+      stopObserving();
+      return e;
+    }
+    observe(rootView);
+    // Find the view below the picked root, rather than picking it again.
+    ViewFinder viewFinder =
+        viewFinderFactory.create(
+            viewMatcher,
+            new Provider<View>() {
+              @Override
+              public View get() {
+                return rootView;
+              }
+            });
+    View targetView = null;
+    NoMatchingViewException missingViewException = null;
+    try {
+      targetView = viewFinder.getView();
+    } catch (NoMatchingViewException nsve) {
+      missingViewException = nsve;
+    }
+    try {
+      viewAssertion.check(targetView, missingViewException);
+      return null;
+    } catch (RuntimeException | AssertionError e) {
+      return e;
+    }
+  }
+
+  private void waitForChange(long remainingMillis) {
+    if (observer == null) {
+      // No root view to observe, nothing wakes the main thread up. Try to pick one again soon.
+      uiController.loopMainThreadForAtLeast(Math.min(POLL_INTERVAL_MILLIS, remainingMillis));
+      return;
+    }
+    long deadline = SystemClock.uptimeMillis() + remainingMillis;
+    while (!changed && remainingMillis > 0) {
+      if (uiController instanceof WakeableUiController) {
+        ((WakeableUiController) uiController).loopMainThreadUntilWokenUp(remainingMillis);
+      } else {
+        uiController.loopMainThreadForAtLeast(Math.min(POLL_INTERVAL_MILLIS, remainingMillis));
+      }
+      remainingMillis = deadline - SystemClock.uptimeMillis();
+    }
+  }
+
+  private void observe(View rootView) {
+    ViewTreeObserver rootObserver = rootView.getViewTreeObserver();
+    if (rootObserver == observer) {
+      return;
+    }
+    stopObserving();
+    observer = rootObserver;
+    observer.addOnGlobalLayoutListener(this);
+    observer.addOnScrollChangedListener(this);
+    if (Build.VERSION.SDK_INT >= 16) {
+      OnDraw onDraw = new OnDraw();
+      observer.addOnDrawListener(onDraw);
+      drawListener = onDraw;
+    }
+  }
+
+  @SuppressWarnings("deprecation") // removeOnGlobalLayoutListener requires API 16
+  private void stopObserving() {
+    if (observer != null && observer.isAlive()) {
+      observer.removeGlobalOnLayoutListener(this);
+      observer.removeOnScrollChangedListener(this);
+      if (drawListener != null) {
+        observer.removeOnDrawListener((OnDraw) drawListener);
+      }
+    }
+    observer = null;
+    drawListener = null;
+  }
+
+  private void onChange() {
+    if (!changed) {
+      changed = true;
+      if (uiController instanceof WakeableUiController) {
+        ((WakeableUiController) uiController).wakeUp();
+      }
+    }
+  }
+
+  @Override
+  public void onGlobalLayout() {
+    onChange();
+  }
+
+  @Override
+  public void onScrollChanged() {
+    onChange();
+  }
+
+  @RequiresApi(16)
+  private final class OnDraw implements ViewTreeObserver.OnDrawListener {
+    @Override
+    public void onDraw() {
+      onChange();
+    }
+  }
+}
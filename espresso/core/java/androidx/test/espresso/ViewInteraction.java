@@ -16,8 +16,6 @@
 
 package androidx.test.espresso;
 
-import static androidx.test.espresso.matcher.ViewMatchers.isAssignableFrom;
-import static androidx.test.espresso.matcher.ViewMatchers.isDescendantOfA;
 import static androidx.test.internal.util.Checks.checkNotNull;
 import static androidx.test.internal.util.LogUtil.logDebugWithProcess;
 
@@ -25,12 +23,12 @@ import android.os.IBinder;
 import android.os.RemoteException;
 import android.util.Log;
 import android.view.View;
-import android.widget.AdapterView;
-import androidx.test.espresso.action.ScrollToAction;
+import androidx.annotation.Nullable;
 import androidx.test.espresso.base.InterruptableUiController;
 import androidx.test.espresso.base.MainThread;
+import androidx.test.espresso.base.RootViewWithoutWaiting;
+import androidx.test.espresso.base.ViewFinderFactory;
 import androidx.test.espresso.internal.data.TestFlowVisualizer;
-import androidx.test.espresso.internal.data.model.ActionData;
 import androidx.test.espresso.matcher.RootMatchers;
 import androidx.test.espresso.remote.Bindable;
 import androidx.test.espresso.remote.IInteractionExecutionStatus;
@@ -56,9 +54,9 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import org.hamcrest.Matcher;
 import org.hamcrest.Matchers;
-import org.hamcrest.StringDescription;
 
 /**
  * Provides the primary interface for test authors to perform actions or asserts on views.
@@ -84,6 +82,9 @@ public final class ViewInteraction {
   private final ListeningExecutorService remoteExecutor;
   private final TestFlowVisualizer testFlowVisualizer;
   private final Tracing tracer;
+  private final ViewFinderFactory viewFinderFactory;
+  private final Provider<View> rootViewProvider;
+  private final ViewActionPerformer actionPerformer;
   // test thread only
   private boolean hasRootMatcher = false;
 
@@ -100,7 +101,9 @@ public final class ViewInteraction {
       ListeningExecutorService remoteExecutor,
       ControlledLooper controlledLooper,
       TestFlowVisualizer testFlowVisualizer,
-      Tracing tracer) {
+      Tracing tracer,
+      ViewFinderFactory viewFinderFactory,
+      @RootViewWithoutWaiting Provider<View> rootViewProvider) {
     this.viewFinder = checkNotNull(viewFinder);
     this.uiController = (InterruptableUiController) checkNotNull(uiController);
     this.failureHandler = checkNotNull(failureHandler);
@@ -113,6 +116,9 @@ public final class ViewInteraction {
     this.controlledLooper = checkNotNull(controlledLooper);
     this.testFlowVisualizer = checkNotNull(testFlowVisualizer);
     this.tracer = tracer;
+    this.viewFinderFactory = checkNotNull(viewFinderFactory);
+    this.rootViewProvider = checkNotNull(rootViewProvider);
+    this.actionPerformer = new ViewActionPerformer(uiController, testFlowVisualizer, tracer);
   }
 
   /**
@@ -197,20 +203,19 @@ public final class ViewInteraction {
           }
         };
 
-    List<ListenableFuture<Void>> interactions = new ArrayList<>();
-    interactions.add(postAsynchronouslyOnUiThread(performInteraction));
-    if (!remoteInteraction.isRemoteProcess()) {
-      // Only the original process should submit remote interactionsList;
-      interactions.add(
-          remoteExecutor.submit(
-              remoteInteraction.createRemotePerformCallable(
-                  rootMatcherRef.get(),
-                  viewMatcher,
-                  getIBindersFromViewActions(va, innerViewAction),
-                  innerViewAction)));
-    }
+    Provider<Callable<Void>> remotePerformInteraction =
+        new Provider<Callable<Void>>() {
+          @Override
+          public Callable<Void> get() {
+            return remoteInteraction.createRemotePerformCallable(
+                rootMatcherRef.get(),
+                viewMatcher,
+                getIBindersFromViewActions(va, innerViewAction),
+                innerViewAction);
+          }
+        };
 
-    waitForAndHandleInteractionResults(interactions);
+    runInteraction(performInteraction, remotePerformInteraction);
   }
 
   /**
@@ -254,7 +259,6 @@ public final class ViewInteraction {
   private void doPerform(
       final SingleExecutionViewAction viewAction, int actionIndex, boolean testFlowEnabled) {
     checkNotNull(viewAction);
-    final Matcher<? extends View> constraints = checkNotNull(viewAction.getConstraints());
     uiController.loopMainThreadUntilIdle();
     View targetView = viewFinder.getView();
     Log.i(
@@ -264,43 +268,13 @@ public final class ViewInteraction {
             "Performing '%s' action on view %s",
             viewAction.getDescription(),
             viewMatcher));
-    if (!constraints.matches(targetView)) {
-      // TODO: update this to describeMismatch once hamcrest 1.4 is available
-      StringDescription stringDescription =
-          new StringDescription(
-              new StringBuilder(
-                  "Action will not be performed because the target view "
-                      + "does not match one or more of the following constraints:\n"));
-      constraints.describeTo(stringDescription);
-      stringDescription
-          .appendText("\nTarget view: ")
-          .appendValue(HumanReadables.describe(targetView));
-
-      if (viewAction.getInnerViewAction() instanceof ScrollToAction
-          && isDescendantOfA(isAssignableFrom(AdapterView.class)).matches(targetView)) {
-        stringDescription.appendText(
-            "\nFurther Info: ScrollToAction on a view inside an AdapterView will not work. "
-                + "Use Espresso.onData to load the view.");
-      }
-      throw new PerformException.Builder()
-          .withActionDescription(viewAction.getDescription())
-          .withViewDescription(viewMatcher.toString())
-          .withCause(new RuntimeException(stringDescription.toString()))
-          .build();
-    } else {
-      ActionData actionData = new ActionData(actionIndex, viewAction.viewAction);
-      if (testFlowEnabled) {
-        testFlowVisualizer.beforeActionRecordData(actionData, targetView);
-      }
-      String spanName =
-          TracingUtil.getSpanName("Espresso", "doPerform", HumanReadables.describe(targetView));
-      try (Span ignored = tracer.beginSpan(spanName)) {
-        viewAction.perform(uiController, targetView);
-      }
-      if (testFlowEnabled) {
-        testFlowVisualizer.afterActionRecordData(actionData);
-      }
-    }
+    actionPerformer.perform(
+        viewAction,
+        viewAction.getInnerViewAction(),
+        viewMatcher,
+        targetView,
+        actionIndex,
+        testFlowEnabled);
   }
 
   /**
@@ -351,21 +325,95 @@ public final class ViewInteraction {
           }
         };
 
+    Provider<Callable<Void>> remoteCheckInteraction =
+        new Provider<Callable<Void>>() {
+          @Override
+          public Callable<Void> get() {
+            return remoteInteraction.createRemoteCheckCallable(
+                rootMatcherRef.get(),
+                viewMatcher,
+                getIBindersFromViewAssertions(singleExecutionViewAssertion, viewAssert),
+                viewAssert);
+          }
+        };
+
+    runInteraction(checkInteraction, remoteCheckInteraction);
+    return this;
+  }
+
+  /**
+   * Waits until the given {@link ViewAssertion} holds for the view selected by the current view
+   * matcher. This replaces retrying {@link #check(ViewAssertion)} in a loop.
+   *
+   * <p>Rather than polling, the assertion is checked again only after the root view was laid out,
+   * drawn or scrolled. If it does not hold within the timeout of {@link
+   * IdlingPolicies#getViewConditionPolicy()}, its last failure is reported.
+   *
+   * <p>The assertion is only checked in the current process.
+   *
+   * @param viewAssert the assertion to wait for.
+   * @return this interaction for further perform/verification calls.
+   * @throws RuntimeException when being invoked on the main thread.
+   */
+  public ViewInteraction waitUntil(final ViewAssertion viewAssert) {
+    checkNotNull(viewAssert);
+
+    Callable<Void> waitInteraction =
+        new Callable<Void>() {
+          @Override
+          public Void call() {
+            String spanName =
+                TracingUtil.getSpanName(
+                    "Espresso",
+                    "waitUntil",
+                    TracingUtil.getClassName(viewAssert, /* defaultName= */ "ViewAssertion"),
+                    viewMatcher);
+            try (Span ignored = tracer.beginSpan(spanName)) {
+              uiController.loopMainThreadUntilIdle();
+              Log.i(
+                  TAG,
+                  String.format(
+                      Locale.ROOT,
+                      "Waiting until '%s' assertion holds on view %s",
+                      viewAssert,
+                      viewMatcher));
+              IdlingPolicy policy = IdlingPolicies.getViewConditionPolicy();
+              new ViewConditionWaiter(
+                      uiController, viewFinderFactory, viewMatcher, rootViewProvider, viewAssert)
+                  .await(policy.getIdleTimeoutUnit().toMillis(policy.getIdleTimeout()));
+              return null;
+            }
+          }
+        };
+
+    List<ListenableFuture<Void>> interactions = new ArrayList<>();
+    interactions.add(postAsynchronouslyOnUiThread(waitInteraction));
+    waitForAndHandleInteractionResults(interactions, null);
+    return this;
+  }
+
+  /**
+   * Runs the interaction on the main thread and, if there are Espresso instances in other
+   * processes, on those as well.
+   *
+   * <p>Without remote instances the remote interaction isn't created at all, unless no activity is
+   * resumed in this process. The activity may then be in a process whose Espresso instance has yet
+   * to register.
+   */
+  private void runInteraction(
+      Callable<Void> localInteraction, Provider<Callable<Void>> remoteInteractionProvider) {
     List<ListenableFuture<Void>> interactions = new ArrayList<>();
-    interactions.add(postAsynchronouslyOnUiThread(checkInteraction));
+    interactions.add(postAsynchronouslyOnUiThread(localInteraction));
+    // Only the original process should submit remote interactions
+    Provider<Callable<Void>> lateRemoteInteraction = null;
     if (!remoteInteraction.isRemoteProcess()) {
-      // Only the original process should submit remote interactionsList;
-      interactions.add(
-          remoteExecutor.submit(
-              remoteInteraction.createRemoteCheckCallable(
-                  rootMatcherRef.get(),
-                  viewMatcher,
-                  getIBindersFromViewAssertions(singleExecutionViewAssertion, viewAssert),
-                  viewAssert)));
+      if (remoteInteraction.hasRemoteInstances()) {
+        interactions.add(remoteExecutor.submit(remoteInteractionProvider.get()));
+      } else {
+        lateRemoteInteraction = remoteInteractionProvider;
+      }
     }
-
-    waitForAndHandleInteractionResults(interactions);
-    return this;
+    waitForAndHandleInteractionResults(interactions, lateRemoteInteraction);
   }
 
   private ListenableFuture<Void> postAsynchronouslyOnUiThread(Callable<Void> interaction) {
@@ -376,11 +424,23 @@ public final class ViewInteraction {
     return mainThreadInteraction;
   }
 
-  private void waitForAndHandleInteractionResults(List<ListenableFuture<Void>> interactions) {
+  private void waitForAndHandleInteractionResults(
+      List<ListenableFuture<Void>> interactions,
+      @Nullable Provider<Callable<Void>> lateRemoteInteraction) {
     try {
       controlledLooper.drainMainThreadUntilIdle();
-      // Blocking call
-      InteractionResultsHandler.gatherAnyResult(interactions);
+      try {
+        // Blocking call
+        InteractionResultsHandler.gatherAnyResult(interactions);
+      } catch (NoActivityResumedException e) {
+        if (lateRemoteInteraction == null) {
+          throw e;
+        }
+        // Give a remote instance the same chance to register and run it as if it had been
+        // submitted up front. The local failure is reported if none does.
+        interactions.add(remoteExecutor.submit(lateRemoteInteraction.get()));
+        InteractionResultsHandler.gatherAnyResult(interactions);
+      }
     } catch (RuntimeException ee) {
       failureHandler.handle(ee, viewMatcher);
     } catch (Error error) {
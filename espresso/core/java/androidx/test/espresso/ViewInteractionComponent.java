@@ -24,4 +24,6 @@ import dagger.Subcomponent;
 @Subcomponent(modules = ViewInteractionModule.class)
 public interface ViewInteractionComponent {
   ViewInteraction viewInteraction();
+
+  InteractionBatch interactionBatch();
 }
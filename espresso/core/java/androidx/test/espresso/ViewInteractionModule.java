@@ -23,6 +23,7 @@ import androidx.annotation.RestrictTo;
 import androidx.annotation.RestrictTo.Scope;
 import androidx.test.espresso.base.PlatformTestStorageModule;
 import androidx.test.espresso.base.RootViewPicker;
+import androidx.test.espresso.base.RootViewWithoutWaiting;
 import androidx.test.espresso.base.ViewFinderImpl;
 import androidx.test.espresso.internal.data.TestFlowVisualizer;
 import androidx.test.espresso.matcher.RootMatchers;
@@ -83,6 +84,12 @@ class ViewInteractionModule {
     return rootViewPicker.get();
   }
 
+  @Provides
+  @RootViewWithoutWaiting
+  View provideRootViewWithoutWaiting(RootViewPicker rootViewPicker) {
+    return rootViewPicker.getWithoutWaiting();
+  }
+
   @Provides
   TestFlowVisualizer provideTestFlowVisualizer(PlatformTestStorage platformTestStorage) {
     return TestFlowVisualizer.getInstance(platformTestStorage);
@@ -35,6 +35,7 @@ import androidx.test.espresso.InjectEventSecurityException;
 import androidx.test.espresso.PerformException;
 import androidx.test.espresso.UiController;
 import androidx.test.espresso.ViewAction;
+import androidx.test.espresso.base.BulkTextInjectingUiController;
 import androidx.test.espresso.remote.annotation.RemoteMsgConstructor;
 import androidx.test.espresso.remote.annotation.RemoteMsgField;
 import androidx.test.espresso.util.HumanReadables;
@@ -132,7 +133,7 @@ public final class TypeTextAction implements ViewAction {
     }
 
     try {
-      if (!uiController.injectString(stringToBeTyped)) {
+      if (!injectString(uiController, stringToBeTyped)) {
         Log.e(TAG, "Failed to type text: " + stringToBeTyped);
         throw new PerformException.Builder()
             .withActionDescription(this.getDescription())
@@ -155,6 +156,15 @@ public final class TypeTextAction implements ViewAction {
     return String.format(Locale.ROOT, "type text(%s)", stringToBeTyped);
   }
 
+  private static boolean injectString(UiController uiController, String str)
+      throws InjectEventSecurityException {
+    // Only waits for the app to idle before and after the whole string, rather than per key.
+    if (uiController instanceof BulkTextInjectingUiController) {
+      return ((BulkTextInjectingUiController) uiController).injectStringInBulk(str);
+    }
+    return uiController.injectString(str);
+  }
+
   private static GeneralClickAction defaultClickAction() {
     return new GeneralClickAction(
         Tap.SINGLE,
@@ -20,6 +20,8 @@ import android.content.Context;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
+import android.view.WindowManager;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.RestrictTo.Scope;
 import androidx.test.espresso.FailureHandler;
@@ -55,6 +57,7 @@ import javax.inject.Singleton;
 @RestrictTo(Scope.LIBRARY)
 @Module(includes = {PlatformTestStorageModule.class})
 public class BaseLayerModule {
+  private static final String TAG = BaseLayerModule.class.getSimpleName();
 
   @Provides
   public ActivityLifecycleMonitor provideLifecycleMonitor() {
@@ -103,9 +106,8 @@ public class BaseLayerModule {
   public IdleNotifier<IdleNotificationCallback> provideDynamicNotifer(
       IdlingResourceRegistry dynamicRegistry) {
     // Since a dynamic notifier will be created for each Espresso interaction this is a good time
-    // to sync the IdlingRegistry with IdlingResourceRegistry.
-    dynamicRegistry.sync(
-        IdlingRegistry.getInstance().getResources(), IdlingRegistry.getInstance().getLoopers());
+    // to sync the IdlingRegistry with IdlingResourceRegistry. This is a no-op if nothing changed.
+    dynamicRegistry.sync(IdlingRegistry.getInstance());
     return dynamicRegistry.asIdleNotifier();
   }
 
@@ -116,6 +118,71 @@ public class BaseLayerModule {
     return new AsyncTaskPoolMonitor(extractor.getAsyncTaskThreadPool()).asIdleNotifier();
   }
 
+  @Provides
+  @Singleton
+  MainLooperIdleDetection provideMainLooperIdleDetection(PlatformTestStorage testStorage) {
+    try {
+      if (testStorage.getInputArgs().containsKey(MainLooperIdleDetection.IDLE_DETECTION_ARG)) {
+        return MainLooperIdleDetection.fromArgument(
+            testStorage.getInputArg(MainLooperIdleDetection.IDLE_DETECTION_ARG));
+      }
+    } catch (RuntimeException e) {
+      // Test storage isn't available in every environment (e.g. Robolectric); use the default.
+      Log.w(TAG, "Failed to read " + MainLooperIdleDetection.IDLE_DETECTION_ARG, e);
+    }
+    return MainLooperIdleDetection.fromArgument(null);
+  }
+
+  @Provides
+  IdleWaitStats provideIdleWaitStats() {
+    return IdleWaitStats.getInstance();
+  }
+
+  @Provides
+  ViewMatcherProfiler provideViewMatcherProfiler() {
+    return ViewMatcherProfiler.getInstance();
+  }
+
+  @Provides
+  @Singleton
+  MotionEventInjectionScheduler provideMotionEventInjectionScheduler(
+      EventInjector eventInjector,
+      @TargetContext Context context,
+      PlatformTestStorage testStorage) {
+    String batchPerFrameArg = MotionEventInjectionScheduler.BATCH_PER_FRAME_ARG;
+    boolean batchPerFrame = false;
+    try {
+      if (testStorage.getInputArgs().containsKey(batchPerFrameArg)) {
+        batchPerFrame = Boolean.parseBoolean(testStorage.getInputArg(batchPerFrameArg));
+      }
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to read " + batchPerFrameArg, e);
+    }
+    if (!batchPerFrame) {
+      return new MotionEventInjectionScheduler(eventInjector);
+    }
+    WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+    float refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+    return new MotionEventInjectionScheduler(
+        eventInjector, MotionEventInjectionScheduler.batchWindowForRefreshRate(refreshRate));
+  }
+
+  @Provides
+  @Singleton
+  ViewHierarchyIndex provideViewHierarchyIndex(PlatformTestStorage testStorage) {
+    boolean enabled = false;
+    try {
+      if (testStorage.getInputArgs().containsKey(ViewHierarchyIndex.VIEW_HIERARCHY_INDEX_ARG)) {
+        enabled =
+            Boolean.parseBoolean(
+                testStorage.getInputArg(ViewHierarchyIndex.VIEW_HIERARCHY_INDEX_ARG));
+      }
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to read " + ViewHierarchyIndex.VIEW_HIERARCHY_INDEX_ARG, e);
+    }
+    return new ViewHierarchyIndex(enabled);
+  }
+
   @Provides
   public ActiveRootLister provideActiveRootLister(RootsOracle rootsOracle) {
     return rootsOracle;
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import androidx.test.espresso.InjectEventSecurityException;
+import androidx.test.espresso.UiController;
+
+/**
+ * Similar to {@link UiController} but with one additional method that types a whole string without
+ * waiting for the application to idle between keys.
+ *
+ * <p>This interface used for Espresso internals and shouldn't be called by external users.
+ *
+ * @hide
+ */
+@RestrictTo(Scope.LIBRARY)
+public interface BulkTextInjectingUiController extends UiController {
+
+  /**
+   * Types a string like {@link #injectString(String)}, but only waits for the application to idle
+   * before the first and after the last key event.
+   *
+   * <p>If an event of the stream is dropped, the remaining events are typed one by one as {@link
+   * #injectString(String)} does.
+   *
+   * @return {@code true} if all events were injected successfully, {@code false} otherwise
+   * @throws InjectEventSecurityException if the events are delivered to a window that is not owned
+   *     by the application under test
+   */
+  boolean injectStringInBulk(String str) throws InjectEventSecurityException;
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fixed-bucket histograms of the time Espresso spent waiting on each of its idle conditions and on
+ * individual busy {@link androidx.test.espresso.IdlingResource}s.
+ *
+ * <p>Recording is a map lookup and a few counter updates, so it is always on. The collected data is
+ * written out by {@link IdleWaitStatsListener}.
+ */
+final class IdleWaitStats {
+
+  /** Key for the time spent draining the main looper after all other conditions were met. */
+  static final String MAIN_LOOPER_HAS_IDLED = "MAIN_LOOPER_HAS_IDLED";
+
+  private static final String IDLING_RESOURCE_PREFIX = "IdlingResource:";
+  private static final String IDLING_RESOURCE_WAKE_UP_PREFIX = "IdlingResourceWakeUp:";
+
+  // Inclusive upper bounds of the histogram buckets, in milliseconds. Waits longer than the last
+  // bound are counted in an extra overflow bucket.
+  private static final long[] BUCKET_BOUNDS_MS = {
+    0, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000
+  };
+
+  private static final IdleWaitStats instance = new IdleWaitStats();
+
+  private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+  static IdleWaitStats getInstance() {
+    return instance;
+  }
+
+  /**
+   * Records a wait.
+   *
+   * @param name the idle condition or stats key that was waited on
+   * @param durationMs how long the wait took
+   * @param iterations how many main looper messages were dispatched during the wait
+   */
+  synchronized void record(String name, long durationMs, int iterations) {
+    Histogram histogram = histograms.get(name);
+    if (null == histogram) {
+      histogram = new Histogram();
+      histograms.put(name, histogram);
+    }
+    histogram.record(durationMs, iterations);
+  }
+
+  /** Records how long Espresso waited for the named {@code IdlingResource} to become idle. */
+  void recordIdlingResource(String resourceName, long durationMs) {
+    record(idlingResourceKey(resourceName), durationMs, 0);
+  }
+
+  /**
+   * Returns the key {@link #recordIdlingResource} records under, for callers that record the same
+   * resource repeatedly and want to build the key once.
+   */
+  static String idlingResourceKey(String resourceName) {
+    return IDLING_RESOURCE_PREFIX + resourceName;
+  }
+
+  /**
+   * Returns the key to record how long it took Espresso to notice that the named {@code
+   * IdlingResource} became idle under. The number of times it was polled while busy is recorded as
+   * iterations.
+   */
+  static String idlingResourceWakeUpKey(String resourceName) {
+    return IDLING_RESOURCE_WAKE_UP_PREFIX + resourceName;
+  }
+
+  synchronized boolean isEmpty() {
+    return histograms.isEmpty();
+  }
+
+  synchronized void reset() {
+    histograms.clear();
+  }
+
+  /** Writes all histograms as comma separated values, one line per recorded key. */
+  synchronized void writeTo(PrintStream out) {
+    checkNotNull(out);
+    out.print("name,count,total_ms,max_ms,iterations");
+    for (long bound : BUCKET_BOUNDS_MS) {
+      out.print(",le_" + bound + "ms");
+    }
+    out.println(",gt_" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms");
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      Histogram histogram = entry.getValue();
+      out.print(
+          String.format(
+              Locale.ROOT,
+              "%s,%d,%d,%d,%d",
+              entry.getKey().replace(',', ' '),
+              histogram.count,
+              histogram.totalMs,
+              histogram.maxMs,
+              histogram.iterations));
+      for (long bucket : histogram.buckets) {
+        out.print("," + bucket);
+      }
+      out.println();
+    }
+  }
+
+  private static final class Histogram {
+    private final long[] buckets = new long[BUCKET_BOUNDS_MS.length + 1];
+    private long count;
+    private long totalMs;
+    private long maxMs;
+    private long iterations;
+
+    void record(long durationMs, int iterationCount) {
+      int bucket = 0;
+      while (bucket < BUCKET_BOUNDS_MS.length && durationMs > BUCKET_BOUNDS_MS[bucket]) {
+        bucket++;
+      }
+      buckets[bucket]++;
+      count++;
+      totalMs += durationMs;
+      maxMs = Math.max(maxMs, durationMs);
+      iterations += iterationCount;
+    }
+  }
+}
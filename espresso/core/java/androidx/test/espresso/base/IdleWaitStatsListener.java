@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import androidx.test.platform.io.PlatformTestStorage;
+import androidx.test.platform.io.PlatformTestStorageRegistry;
+import java.io.PrintStream;
+
+/**
+ * A JUnit RunListener that writes the idle wait histograms collected during each test case to a
+ * {@code idle-wait-stats-<class>#<method>.csv} test output file.
+ *
+ * <p>Enable by passing {@code -e listener androidx.test.espresso.base.IdleWaitStatsListener} to
+ * the instrumentation.
+ *
+ * @hide
+ */
+@RestrictTo(Scope.LIBRARY)
+public class IdleWaitStatsListener extends PerTestCsvListener {
+  private final IdleWaitStats stats;
+
+  public IdleWaitStatsListener() {
+    this(IdleWaitStats.getInstance(), PlatformTestStorageRegistry.getInstance());
+  }
+
+  IdleWaitStatsListener(IdleWaitStats stats, PlatformTestStorage testStorage) {
+    super("idle-wait-stats", testStorage);
+    this.stats = stats;
+  }
+
+  @Override
+  boolean isEmpty() {
+    return stats.isEmpty();
+  }
+
+  @Override
+  void reset() {
+    stats.reset();
+  }
+
+  @Override
+  void writeTo(PrintStream out) {
+    stats.writeTo(out);
+  }
+}
@@ -23,10 +23,12 @@ import static androidx.test.internal.util.Checks.checkState;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.test.espresso.IdlingPolicies;
 import androidx.test.espresso.IdlingPolicy;
+import androidx.test.espresso.IdlingRegistry;
 import androidx.test.espresso.IdlingResource;
 import androidx.test.espresso.IdlingResource.ResourceCallback;
 import androidx.test.espresso.util.TracingUtil;
@@ -40,10 +42,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -59,8 +59,23 @@ public final class IdlingResourceRegistry {
   private static final int TIMEOUT_OCCURRED = 2;
   private static final int IDLE_WARNING_REACHED = 3;
   private static final int POSSIBLE_RACE_CONDITION_DETECTED = 4;
+  private static final int RESOURCE_STATE_CHANGED = 5;
+  private static final int POLL_BUSY_RESOURCES = 6;
+  private static final int RESOURCE_ADDED = 7;
+  // Tags all messages which are only needed while a callback is registered.
   private static final Object TIMEOUT_MESSAGE_TAG = new Object();
 
+  // Busy resources are polled in case they do not call onTransitionToIdle. The poll delay starts
+  // low and doubles up to a maximum while the resource stays busy.
+  private static final long FIRST_POLL_DELAY_MS = 16;
+  private static final long MAX_POLL_DELAY_MS = 1000;
+  // Resources that were seen going idle without calling back are polled more eagerly.
+  private static final long FIRST_POLL_DELAY_NO_CALLBACK_MS = 1;
+  private static final long MAX_POLL_DELAY_NO_CALLBACK_MS = 100;
+  // A resource may report idle shortly before its onTransitionToIdle() arrives. It is only
+  // considered to not call back once this many polls in a row found it idle without a callback.
+  private static final int IDLE_POLLS_BEFORE_NO_CALLBACK = 3;
+
   private static final IdleNotificationCallback NO_OP_CALLBACK =
       new IdleNotificationCallback() {
 
@@ -74,13 +89,46 @@ public final class IdlingResourceRegistry {
         public void resourcesHaveTimedOut(List<String> busys) {}
       };
 
-  // IdlingStates should only be accessed on main thread
-  private final List<IdlingState> idlingStates = new ArrayList<>();
+  // Read from any thread without locking, only modified while holding registrationLock.
+  private final List<IdlingState> idlingStates = new CopyOnWriteArrayList<>();
+  // only accessed while holding registrationLock.
+  private final Map<String, IdlingState> idlingStatesByName = new HashMap<>();
+  private final Object registrationLock = new Object();
+  // Number of registered resources that went busy and have not transitioned back to idle yet, or
+  // that were not asked whether they are idle on the main thread yet.
+  private final AtomicInteger busyCount = new AtomicInteger();
+  // Counts registrations and unregistrations that did not come from an IdlingRegistry sync.
+  private final AtomicInteger directChangeCount = new AtomicInteger();
+  private final Object syncLock = new Object();
+  // guarded by syncLock, what the resources were last synced with.
+  private IdlingRegistry syncedRegistry;
+  private long syncedVersion;
+  private int syncedDirectChangeCount;
   private final Looper looper;
   private final Handler handler;
   private final Dispatcher dispatcher;
   private final Tracing tracer;
+  private final IdleWaitStats idleWaitStats = IdleWaitStats.getInstance();
   private IdleNotificationCallback idleNotificationCallback = NO_OP_CALLBACK;
+  private final IdleNotifier<IdleNotificationCallback> idleNotifier =
+      new IdleNotifier<IdleNotificationCallback>() {
+        @Override
+        public boolean isIdleNow() {
+          return allResourcesAreIdle();
+        }
+
+        @Override
+        public void cancelCallback() {
+          cancelIdleMonitor();
+        }
+
+        @Override
+        public void registerNotificationCallback(IdleNotificationCallback cb) {
+          notifyWhenAllResourcesAreIdle(cb);
+        }
+      };
+  // on main, uptime at which the current idleNotificationCallback started waiting.
+  private long waitStartedAtMs;
 
   @Inject
   IdlingResourceRegistry(Looper looper, @NonNull Tracing tracer) {
@@ -94,150 +142,227 @@ public final class IdlingResourceRegistry {
     this(looper, Tracing.getInstance());
   }
 
+  /**
+   * Ensures that this idling resource registry is in sync with the given {@link IdlingRegistry}.
+   *
+   * <p>Only the resources and loopers that changed since the last sync are registered or
+   * unregistered, which makes this a no-op if nothing changed. The full contents are synced the
+   * first time, if the changes are not known anymore or if resources were registered or
+   * unregistered with this registry directly. This method is safe to call from any thread.
+   */
+  public void sync(IdlingRegistry idlingRegistry) {
+    checkNotNull(idlingRegistry);
+    synchronized (syncLock) {
+      int directChanges = directChangeCount.get();
+      IdlingRegistry.Changes changes = null;
+      if (idlingRegistry == syncedRegistry && directChanges == syncedDirectChangeCount) {
+        if (idlingRegistry.getVersion() == syncedVersion) {
+          return;
+        }
+        changes = idlingRegistry.getChangesSince(syncedVersion);
+      }
+      if (null == changes) {
+        // Changes made after getting the version are applied again by the next sync.
+        syncedVersion = idlingRegistry.getVersion();
+        syncAll(idlingRegistry.getResources(), idlingRegistry.getLoopers());
+      } else {
+        syncedVersion = changes.getVersion();
+        applyChanges(changes);
+      }
+      syncedRegistry = idlingRegistry;
+      // Direct changes made in the meantime make the next sync a full one.
+      syncedDirectChangeCount = directChanges;
+    }
+  }
+
   /**
    * Ensures that this idling resource registry is in sync with given resources by
-   * registering/un-registering idling resources as needed.
+   * registering/un-registering idling resources as needed. This method is safe to call from any
+   * thread.
    */
   public void sync(final Iterable<IdlingResource> resources, final Iterable<Looper> loopers) {
-    if (Looper.myLooper() != looper) {
-      runSynchronouslyOnMainThread(
-          new Callable<Void>() {
-            @Override
-            public Void call() {
-              sync(resources, loopers);
-              return null;
-            }
-          });
-    } else {
-      Map<String, IdlingResource> resourcesToRegister = new HashMap<>();
+    directChangeCount.incrementAndGet();
+    syncAll(resources, loopers);
+  }
 
-      // Add everything from resources
-      for (IdlingResource resource : resources) {
-        if (resourcesToRegister.containsKey(resource.getName())) {
-          logDuplicateRegistrationError(resource, resourcesToRegister.get(resource.getName()));
-        } else {
-          resourcesToRegister.put(resource.getName(), resource);
-        }
+  private void syncAll(Iterable<IdlingResource> resources, Iterable<Looper> loopers) {
+    Map<String, IdlingResource> resourcesToRegister = new HashMap<>();
+
+    // Add everything from resources
+    for (IdlingResource resource : resources) {
+      if (resourcesToRegister.containsKey(resource.getName())) {
+        logDuplicateRegistrationError(resource, resourcesToRegister.get(resource.getName()));
+      } else {
+        resourcesToRegister.put(resource.getName(), resource);
       }
+    }
 
-      // Convert all Loopers into IdlingResources and add them to the list of resourcesToRegister
-      // in order for them to be considered part of the syncing logic.
-      for (Looper looper : loopers) {
-        IdlingResource resource = LooperIdlingResourceInterrogationHandler.forLooper(looper);
-        if (resourcesToRegister.containsKey(resource.getName())) {
-          logDuplicateRegistrationError(resource, resourcesToRegister.get(resource.getName()));
-        } else {
-          resourcesToRegister.put(resource.getName(), resource);
-        }
+    // Convert all Loopers into IdlingResources and add them to the list of resourcesToRegister
+    // in order for them to be considered part of the syncing logic.
+    for (Looper looper : loopers) {
+      IdlingResource resource = LooperIdlingResourceInterrogationHandler.forLooper(looper);
+      if (resourcesToRegister.containsKey(resource.getName())) {
+        logDuplicateRegistrationError(resource, resourcesToRegister.get(resource.getName()));
+      } else {
+        resourcesToRegister.put(resource.getName(), resource);
       }
+    }
 
-      // Loop through existing resources and figure out which resources should be unregistered.
-      // At the same time figure which resources are already registered and shouldn't be attempted
-      // to register again.
-      List<IdlingResource> resourcesToUnRegister = new ArrayList<>();
-      for (IdlingState oldState : idlingStates) {
-        IdlingResource ir = resourcesToRegister.remove(oldState.resource.getName());
-        if (null == ir) {
-          resourcesToUnRegister.add(oldState.resource);
-        } else if (oldState.resource != ir) {
-          // Same name but NOT the same instance, un-register the current one
-          // and register the new one
-          resourcesToUnRegister.add(oldState.resource);
-          resourcesToRegister.put(ir.getName(), ir);
-        }
+    // Loop through existing resources and figure out which resources should be unregistered.
+    // At the same time figure which resources are already registered and shouldn't be attempted
+    // to register again.
+    List<IdlingResource> resourcesToUnRegister = new ArrayList<>();
+    for (IdlingState oldState : idlingStates) {
+      IdlingResource ir = resourcesToRegister.remove(oldState.resource.getName());
+      if (null == ir) {
+        resourcesToUnRegister.add(oldState.resource);
+      } else if (oldState.resource != ir) {
+        // Same name but NOT the same instance, un-register the current one
+        // and register the new one
+        resourcesToUnRegister.add(oldState.resource);
+        resourcesToRegister.put(ir.getName(), ir);
       }
+    }
 
-      unregisterResources(resourcesToUnRegister);
-      registerResources(Lists.newArrayList(resourcesToRegister.values()));
+    removeResources(resourcesToUnRegister);
+    addResources(Lists.newArrayList(resourcesToRegister.values()));
+  }
+
+  private void applyChanges(IdlingRegistry.Changes changes) {
+    List<IdlingResource> resourcesToUnRegister = new ArrayList<>();
+    for (IdlingResource resource : changes.getUnregisteredResources()) {
+      if (getRegisteredResource(resource.getName()) == resource) {
+        resourcesToUnRegister.add(resource);
+      }
+    }
+    for (Looper looper : changes.getUnregisteredLoopers()) {
+      IdlingResource resource = LooperIdlingResourceInterrogationHandler.forLooper(looper);
+      if (getRegisteredResource(resource.getName()) == resource) {
+        resourcesToUnRegister.add(resource);
+      }
+    }
+
+    Map<String, IdlingResource> changedResources = new HashMap<>();
+    List<IdlingResource> registeredResources = new ArrayList<>(changes.getRegisteredResources());
+    for (Looper looper : changes.getRegisteredLoopers()) {
+      registeredResources.add(LooperIdlingResourceInterrogationHandler.forLooper(looper));
+    }
+    for (IdlingResource resource : registeredResources) {
+      if (changedResources.containsKey(resource.getName())) {
+        logDuplicateRegistrationError(resource, changedResources.get(resource.getName()));
+      } else {
+        changedResources.put(resource.getName(), resource);
+      }
+    }
+
+    List<IdlingResource> resourcesToRegister = new ArrayList<>();
+    for (IdlingResource resource : changedResources.values()) {
+      IdlingResource registered = getRegisteredResource(resource.getName());
+      if (null == registered) {
+        resourcesToRegister.add(resource);
+      } else if (registered != resource) {
+        // Same name but NOT the same instance, un-register the current one
+        // and register the new one
+        resourcesToUnRegister.add(registered);
+        resourcesToRegister.add(resource);
+      }
+    }
+
+    removeResources(resourcesToUnRegister);
+    addResources(resourcesToRegister);
+  }
+
+  private IdlingResource getRegisteredResource(String name) {
+    synchronized (registrationLock) {
+      IdlingState state = idlingStatesByName.get(name);
+      return null == state ? null : state.resource;
     }
   }
 
   /**
    * Registers the given resources. If any of the given resources are already registered, a warning
-   * is logged.
+   * is logged. This method is safe to call from any thread. The resources count as busy until they
+   * were asked whether they are idle, which always happens on the main thread.
    *
    * @return {@code true} if all resources were successfully registered
    */
   public boolean registerResources(final List<? extends IdlingResource> resourceList) {
-    if (Looper.myLooper() != looper) {
-      return runSynchronouslyOnMainThread(
-          new Callable<Boolean>() {
-            @Override
-            public Boolean call() {
-              return registerResources(resourceList);
-            }
-          });
-    } else {
-      boolean allRegisteredSuccessfully = true;
-      for (IdlingResource resource : resourceList) {
-        checkNotNull(resource.getName(), "IdlingResource.getName() should not be null");
-
-        boolean duplicate = false;
-        for (IdlingState oldState : idlingStates) {
-          if (resource.getName().equals(oldState.resource.getName())) {
-            // This does not throw an error to avoid leaving tests that register resource in test
-            // setup in an undeterministic state (we cannot assume that everyone clears vm state
-            // between each test run)
-            logDuplicateRegistrationError(resource, oldState.resource);
-            duplicate = true;
-            break;
-          }
-        }
+    directChangeCount.incrementAndGet();
+    return addResources(resourceList);
+  }
 
-        if (!duplicate) {
-          IdlingState is = new IdlingState(resource, handler);
+  private boolean addResources(List<? extends IdlingResource> resourceList) {
+    boolean allRegisteredSuccessfully = true;
+    for (IdlingResource resource : resourceList) {
+      checkNotNull(resource.getName(), "IdlingResource.getName() should not be null");
+
+      IdlingState is = new IdlingState(resource, handler);
+      IdlingState oldState;
+      synchronized (registrationLock) {
+        oldState = idlingStatesByName.get(resource.getName());
+        if (null == oldState) {
+          // Busy until the main thread registered the callback and asked the resource.
+          busyCount.incrementAndGet();
+          idlingStatesByName.put(resource.getName(), is);
           idlingStates.add(is);
-          is.registerSelf();
+        }
+      }
+
+      if (null == oldState) {
+        // IdlingResource methods are always invoked from the main thread.
+        if (Looper.myLooper() == looper) {
+          dispatcher.handleResourceAdded(is);
         } else {
-          allRegisteredSuccessfully = false;
+          handler.sendMessage(handler.obtainMessage(RESOURCE_ADDED, is));
         }
+      } else {
+        // This does not throw an error to avoid leaving tests that register resource in test
+        // setup in an undeterministic state (we cannot assume that everyone clears vm state
+        // between each test run)
+        logDuplicateRegistrationError(resource, oldState.resource);
+        allRegisteredSuccessfully = false;
       }
-      return allRegisteredSuccessfully;
     }
+    return allRegisteredSuccessfully;
   }
 
   /**
    * Unregisters the given resources. If any of the given resources are not already registered, a
-   * warning is logged.
+   * warning is logged. This method is safe to call from any thread.
    *
    * @return {@code true} if all resources were successfully unregistered
    */
   public boolean unregisterResources(final List<? extends IdlingResource> resourceList) {
-    if (Looper.myLooper() != looper) {
-      return runSynchronouslyOnMainThread(
-          new Callable<Boolean>() {
-            @Override
-            public Boolean call() {
-              return unregisterResources(resourceList);
-            }
-          });
-    } else {
-      boolean allUnregisteredSuccessfully = true;
-      for (IdlingResource resource : resourceList) {
-        boolean found = false;
-        for (int i = 0; i < idlingStates.size(); i++) {
-          if (idlingStates.get(i).resource.getName().equals(resource.getName())) {
-            idlingStates.get(i).closeSpan();
-            idlingStates.remove(i);
-            found = true;
-            break;
-          }
-        }
+    directChangeCount.incrementAndGet();
+    return removeResources(resourceList);
+  }
 
-        if (!found) {
-          allUnregisteredSuccessfully = false;
-          Log.e(
-              TAG,
-              String.format(
-                  Locale.ROOT,
-                  "Attempted to unregister resource that is not registered: "
-                      + "'%s'. Resource list: %s",
-                  resource.getName(),
-                  getResources()));
+  private boolean removeResources(List<? extends IdlingResource> resourceList) {
+    boolean allUnregisteredSuccessfully = true;
+    for (IdlingResource resource : resourceList) {
+      IdlingState oldState;
+      synchronized (registrationLock) {
+        oldState = idlingStatesByName.remove(resource.getName());
+        if (null != oldState) {
+          idlingStates.remove(oldState);
         }
       }
-      return allUnregisteredSuccessfully;
+
+      if (null != oldState) {
+        oldState.unregisterSelf();
+      } else {
+        allUnregisteredSuccessfully = false;
+        Log.e(
+            TAG,
+            String.format(
+                Locale.ROOT,
+                "Attempted to unregister resource that is not registered: "
+                    + "'%s'. Resource list: %s",
+                resource.getName(),
+                getResources()));
+      }
     }
+    return allUnregisteredSuccessfully;
   }
 
   public void registerLooper(Looper looper, boolean considerWaitIdle) {
@@ -255,34 +380,33 @@ public final class IdlingResourceRegistry {
    * @return an ImmutableList of {@link IdlingResource}s.
    */
   public List<IdlingResource> getResources() {
-    if (Looper.myLooper() != looper) {
-      return runSynchronouslyOnMainThread(
-          new Callable<List<IdlingResource>>() {
-            @Override
-            public List<IdlingResource> call() {
-              return getResources();
-            }
-          });
-    } else {
-      ImmutableList.Builder<IdlingResource> irs = ImmutableList.builder();
-      for (IdlingState is : idlingStates) {
-        irs.add(is.resource);
-      }
-      return irs.build();
+    ImmutableList.Builder<IdlingResource> irs = ImmutableList.builder();
+    for (IdlingState is : idlingStates) {
+      irs.add(is.resource);
     }
+    return irs.build();
+  }
+
+  /**
+   * Returns whether none of the registered resources is known to be busy. This method is safe to
+   * call from any thread and does not poll the resources.
+   */
+  boolean allIdle() {
+    return busyCount.get() == 0;
   }
 
   boolean allResourcesAreIdle() {
     checkState(Looper.myLooper() == looper);
-    for (IdlingState is : idlingStates) {
-      if (is.idle) {
-        // ensure resource has not gone busy.
-        is.setIdle(is.resource.isIdleNow());
-      }
-      // TODO(b/214584779): We should not return early here as this call also has the side effect of
-      // updating all the current idle states so we may miss a chance to notice another resource
-      // has gone busy and start a tracing span for it.
-      if (!is.idle) {
+    if (!allIdle()) {
+      // A resource went busy and has not called back yet, no need to poll the others.
+      return false;
+    }
+    // Resources can go busy without telling, so poll them. Index based to avoid allocating an
+    // iterator on every idle sync.
+    for (int i = 0; i < idlingStates.size(); i++) {
+      IdlingState is = idlingStates.get(i);
+      if (!is.resource.isIdleNow()) {
+        is.transitionToBusy();
         return false;
       }
     }
@@ -308,48 +432,20 @@ public final class IdlingResourceRegistry {
       callback.allResourcesIdle();
     } else {
       idleNotificationCallback = callback;
+      waitStartedAtMs = SystemClock.uptimeMillis();
       scheduleTimeoutMessages();
+      schedulePoll();
     }
   }
 
   IdleNotifier<IdleNotificationCallback> asIdleNotifier() {
-    return new IdleNotifier<IdleNotificationCallback>() {
-      @Override
-      public boolean isIdleNow() {
-        return allResourcesAreIdle();
-      }
-
-      @Override
-      public void cancelCallback() {
-        cancelIdleMonitor();
-      }
-
-      @Override
-      public void registerNotificationCallback(IdleNotificationCallback cb) {
-        notifyWhenAllResourcesAreIdle(cb);
-      }
-    };
+    return idleNotifier;
   }
 
   void cancelIdleMonitor() {
     dispatcher.deregister();
   }
 
-  private <T> T runSynchronouslyOnMainThread(Callable<T> task) {
-    FutureTask<T> futureTask = new FutureTask<T>(task);
-    handler.post(futureTask);
-
-    try {
-      return futureTask.get();
-    } catch (CancellationException ce) {
-      throw new RuntimeException(ce);
-    } catch (ExecutionException ee) {
-      throw new RuntimeException(ee);
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
-    }
-  }
-
   private void scheduleTimeoutMessages() {
     IdlingPolicy warning = IdlingPolicies.getDynamicIdlingResourceWarningPolicy();
     Message timeoutWarning = handler.obtainMessage(IDLE_WARNING_REACHED, TIMEOUT_MESSAGE_TAG);
@@ -362,12 +458,54 @@ public final class IdlingResourceRegistry {
         timeoutError, error.getIdleTimeoutUnit().toMillis(error.getIdleTimeout()));
   }
 
+  /** Schedules the next poll of the busy resources, must be invoked from main thread. */
+  private void schedulePoll() {
+    handler.removeMessages(POLL_BUSY_RESOURCES);
+    long nextPollAtMs = Long.MAX_VALUE;
+    for (int i = 0; i < idlingStates.size(); i++) {
+      IdlingState is = idlingStates.get(i);
+      if (is.isBusy()) {
+        nextPollAtMs = Math.min(nextPollAtMs, is.nextPollAtMs);
+      }
+    }
+    if (nextPollAtMs != Long.MAX_VALUE) {
+      handler.sendMessageAtTime(
+          handler.obtainMessage(POLL_BUSY_RESOURCES, TIMEOUT_MESSAGE_TAG), nextPollAtMs);
+    }
+  }
+
+  /**
+   * Returns how often the named resource was polled because it might not call {@link
+   * ResourceCallback#onTransitionToIdle()}, must be invoked from main thread.
+   */
+  int getPollCount(String resourceName) {
+    for (IdlingState is : idlingStates) {
+      if (is.resource.getName().equals(resourceName)) {
+        return is.pollCount;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns whether the named resource is expected to call {@link
+   * ResourceCallback#onTransitionToIdle()}, must be invoked from main thread.
+   */
+  boolean isExpectedToCallBack(String resourceName) {
+    for (IdlingState is : idlingStates) {
+      if (is.resource.getName().equals(resourceName)) {
+        return is.callsBack;
+      }
+    }
+    return true;
+  }
+
   List<String> getBusyResources() {
     List<String> busyResourceNames = Lists.newArrayList();
     List<IdlingState> racyResources = Lists.newArrayList();
 
     for (IdlingState state : idlingStates) {
-      if (!state.idle) {
+      if (state.isBusy()) {
         if (state.resource.isIdleNow()) {
           // We have not been notified of a BUSY -> IDLE transition, but the resource is telling us
           // its that its idle. Either it's a race condition or is this resource buggy.
@@ -390,50 +528,200 @@ public final class IdlingResourceRegistry {
   }
 
   private class IdlingState implements ResourceCallback {
-    // on main
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+    private static final int UNREGISTERED = 2;
+    // Added, but the main thread did not register the callback and ask the resource yet.
+    private static final int ADDED = 3;
+
+    // from anywhere
     final IdlingResource resource;
     // from anywhere
     final Handler handler;
-    // on main
-    private boolean idle;
+    // Built once, resources go busy and idle on every interaction.
+    private final String spanName;
+    private final String waitStatsKey;
+    private final String wakeUpStatsKey;
+    // from anywhere, transitions keep busyCount up to date.
+    private final AtomicInteger state = new AtomicInteger(ADDED);
+    // on main, uptime at which the resource last went busy.
+    private long busySinceMs;
+    // on main, state of the adaptive polling.
+    private boolean callsBack = true;
+    private long averageBusyMs = -1;
+    private long pollDelayMs;
+    private long nextPollAtMs;
+    private long lastPolledAtMs;
+    private int pollsWhileBusy;
+    private int idlePollsWithoutCallback;
+    private int pollCount;
     // on main
     Tracer.Span tracerSpan;
 
     private IdlingState(IdlingResource resource, Handler handler) {
       this.resource = resource;
       this.handler = handler;
+      String name = resource.getName();
+      this.spanName = TracingUtil.getSpanName("IdleResource", name);
+      this.waitStatsKey = IdleWaitStats.idlingResourceKey(name);
+      this.wakeUpStatsKey = IdleWaitStats.idlingResourceWakeUpKey(name);
     }
 
+    /** Must be invoked from main thread, once after the resource was added. */
     private void registerSelf() {
-      // on main, once at initialization.
+      if (state.get() != ADDED) {
+        // Unregistered before the main thread got to it.
+        return;
+      }
       resource.registerIdleTransitionCallback(this);
-      setIdle(resource.isIdleNow());
+      boolean idle = resource.isIdleNow();
+      if (state.compareAndSet(ADDED, idle ? IDLE : BUSY)) {
+        if (idle) {
+          busyCount.decrementAndGet();
+        } else {
+          onStateChanged(BUSY);
+        }
+      }
     }
 
-    private void closeSpan() {
-      // Resource is being unregistered. End the tracing span.
-      if (tracerSpan != null) {
-        tracerSpan.close();
-        tracerSpan = null;
-        if (!idle) {
-          Log.w(TAG, "Closing span for resource not idle: " + resource.getName());
-        }
+    private void unregisterSelf() {
+      int oldState = state.getAndSet(UNREGISTERED);
+      if (oldState == BUSY || oldState == ADDED) {
+        busyCount.decrementAndGet();
+      }
+      if (oldState == BUSY) {
+        Log.w(TAG, "Unregistering resource not idle: " + resource.getName());
+      }
+      updateTracing(UNREGISTERED);
+    }
+
+    boolean isBusy() {
+      return state.get() == BUSY;
+    }
+
+    boolean isRegistered() {
+      return state.get() != UNREGISTERED;
+    }
+
+    /** Marks the resource as busy, from anywhere. */
+    void transitionToBusy() {
+      if (state.compareAndSet(IDLE, BUSY)) {
+        busyCount.incrementAndGet();
+        updateTracing(BUSY);
+      }
+    }
+
+    /** Marks the resource as idle, from anywhere. Returns whether the resource was busy. */
+    private boolean transitionToIdle() {
+      if (state.compareAndSet(BUSY, IDLE)) {
+        busyCount.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+
+    private void updateTracing(int newState) {
+      if (Looper.myLooper() == looper) {
+        onStateChanged(newState);
+      } else {
+        handler.sendMessage(handler.obtainMessage(RESOURCE_STATE_CHANGED, newState, 0, this));
       }
     }
 
     /** Must be invoked from main thread. */
-    public void setIdle(boolean idle) {
-      if (!idle && tracerSpan == null) {
+    private void onStateChanged(int newState) {
+      if (newState == BUSY && tracerSpan == null) {
         // Resource is busy. Start a tracing span if we haven't done so yet.
-        tracerSpan =
-            createUnmanagedTracerSpan(TracingUtil.getSpanName("IdleResource", resource.getName()));
-      } else if (idle && tracerSpan != null) {
-        // Resource is no longer busy. End any current tracing span.
+        tracerSpan = createUnmanagedTracerSpan(spanName);
+        busySinceMs = SystemClock.uptimeMillis();
+        startPolling(busySinceMs);
+      } else if (newState != BUSY && tracerSpan != null) {
+        // Resource is no longer busy or being unregistered. End any current tracing span.
         tracerSpan.close();
         tracerSpan = null;
+        if (newState == IDLE) {
+          long busyMs = SystemClock.uptimeMillis() - busySinceMs;
+          averageBusyMs = averageBusyMs < 0 ? busyMs : (3 * averageBusyMs + busyMs) / 4;
+          if (idleNotificationCallback != NO_OP_CALLBACK) {
+            // Espresso was waiting on this resource, record for how long.
+            idleWaitStats.record(
+                waitStatsKey,
+                SystemClock.uptimeMillis() - Math.max(busySinceMs, waitStartedAtMs),
+                0);
+          }
+        }
       }
+    }
 
-      this.idle = idle;
+    /** Must be invoked from main thread. */
+    private void startPolling(long nowMs) {
+      pollsWhileBusy = 0;
+      idlePollsWithoutCallback = 0;
+      lastPolledAtMs = nowMs;
+      pollDelayMs = callsBack ? FIRST_POLL_DELAY_MS : FIRST_POLL_DELAY_NO_CALLBACK_MS;
+      scheduleNextPoll(nowMs);
+      if (idleNotificationCallback != NO_OP_CALLBACK) {
+        schedulePoll();
+      }
+    }
+
+    /** Must be invoked from main thread. */
+    private void scheduleNextPoll(long nowMs) {
+      long busyForMs = nowMs - busySinceMs;
+      if (!callsBack && averageBusyMs > busyForMs) {
+        // Poll around the time the resource usually goes idle.
+        nextPollAtMs = nowMs + averageBusyMs - busyForMs;
+      } else {
+        nextPollAtMs = nowMs + pollDelayMs;
+        pollDelayMs =
+            Math.min(
+                2 * pollDelayMs, callsBack ? MAX_POLL_DELAY_MS : MAX_POLL_DELAY_NO_CALLBACK_MS);
+      }
+    }
+
+    /** Must be invoked from main thread. Returns whether the resource was found idle. */
+    private boolean poll(long nowMs) {
+      pollCount++;
+      pollsWhileBusy++;
+      if (!resource.isIdleNow()) {
+        lastPolledAtMs = nowMs;
+        idlePollsWithoutCallback = 0;
+        scheduleNextPoll(nowMs);
+        return false;
+      }
+      if (callsBack && ++idlePollsWithoutCallback < IDLE_POLLS_BEFORE_NO_CALLBACK) {
+        // Give the callback, which may already be on its way, a chance to arrive.
+        nextPollAtMs = nowMs + FIRST_POLL_DELAY_MS;
+        return false;
+      }
+      if (transitionToIdle()) {
+        if (callsBack) {
+          callsBack = false;
+          Log.w(
+              TAG,
+              "Resource "
+                  + resource.getName()
+                  + " went idle without calling onTransitionToIdle(), polling it from now on.");
+        }
+        // It went idle at some point since the last poll.
+        recordWakeUp(nowMs - lastPolledAtMs);
+        onStateChanged(IDLE);
+      }
+      return true;
+    }
+
+    /** Must be invoked from main thread when the resource called back. */
+    private void onCalledBack() {
+      // Resources that call back only some of the time are not polled eagerly forever.
+      callsBack = true;
+      idlePollsWithoutCallback = 0;
+    }
+
+    /** Must be invoked from main thread. */
+    private void recordWakeUp(long latencyMs) {
+      if (idleNotificationCallback != NO_OP_CALLBACK) {
+        idleWaitStats.record(wakeUpStatsKey, latencyMs, pollsWhileBusy);
+      }
     }
 
     /**
@@ -448,7 +736,7 @@ public final class IdlingResourceRegistry {
     @Override
     public void onTransitionToIdle() {
       // from app code - unknown thread
-      Message m = handler.obtainMessage(DYNAMIC_RESOURCE_HAS_IDLED);
+      Message m = handler.obtainMessage(DYNAMIC_RESOURCE_HAS_IDLED, transitionToIdle() ? 1 : 0, 0);
       m.obj = this;
       handler.sendMessage(m);
     }
@@ -470,6 +758,15 @@ public final class IdlingResourceRegistry {
         case POSSIBLE_RACE_CONDITION_DETECTED:
           handleRaceCondition(m);
           break;
+        case RESOURCE_STATE_CHANGED:
+          handleStateChanged(m);
+          break;
+        case POLL_BUSY_RESOURCES:
+          handlePoll();
+          break;
+        case RESOURCE_ADDED:
+          handleResourceAdded((IdlingState) m.obj);
+          break;
         default:
           Log.w(TAG, "Unknown message type: " + m);
           return false;
@@ -479,25 +776,30 @@ public final class IdlingResourceRegistry {
 
     private void handleResourceIdled(Message m) {
       IdlingState is = (IdlingState) m.obj;
-      is.setIdle(true);
-      boolean unknownResource = true;
-      boolean allIdle = true;
-      for (IdlingState state : idlingStates) {
-        allIdle = allIdle && state.idle;
-        if (!unknownResource && !allIdle) {
-          // we've made sure that we are actually monitoring this resource - and we've encountered
-          // a different resource that is currently not idle. Lets stop checking the others.
-          break;
-        }
-        if (unknownResource && state == is) {
-          unknownResource = false;
-        }
+      // Even if a poll noticed that it went idle first, the resource does call back.
+      is.onCalledBack();
+      if (m.arg1 == 1) {
+        // The message was sent when the resource called back.
+        is.recordWakeUp(SystemClock.uptimeMillis() - m.getWhen());
+        is.onStateChanged(IdlingState.IDLE);
       }
-      if (unknownResource) {
+      if (!is.isRegistered()) {
         Log.i(TAG, "Ignoring message from unregistered resource: " + is.resource);
         return;
       }
-      if (allIdle) {
+      if (allIdle()) {
+        try {
+          idleNotificationCallback.allResourcesIdle();
+        } finally {
+          deregister();
+        }
+      }
+    }
+
+    private void handleResourceAdded(IdlingState is) {
+      is.registerSelf();
+      if (is.isRegistered() && allIdle() && idleNotificationCallback != NO_OP_CALLBACK) {
+        // Espresso was waiting for the resource to be asked.
         try {
           idleNotificationCallback.allResourcesIdle();
         } finally {
@@ -506,6 +808,29 @@ public final class IdlingResourceRegistry {
       }
     }
 
+    private void handleStateChanged(Message m) {
+      ((IdlingState) m.obj).onStateChanged(m.arg1);
+    }
+
+    private void handlePoll() {
+      long nowMs = SystemClock.uptimeMillis();
+      for (int i = 0; i < idlingStates.size(); i++) {
+        IdlingState is = idlingStates.get(i);
+        if (is.isBusy() && is.nextPollAtMs <= nowMs) {
+          is.poll(nowMs);
+        }
+      }
+      if (allIdle()) {
+        try {
+          idleNotificationCallback.allResourcesIdle();
+        } finally {
+          deregister();
+        }
+      } else {
+        schedulePoll();
+      }
+    }
+
     private void handleTimeoutWarning() {
       List<String> busyResources = getBusyResources();
       if (busyResources == null) {
@@ -543,7 +868,7 @@ public final class IdlingResourceRegistry {
     private void handleRaceCondition(Message m) {
       for (IdlingState is : (List<IdlingState>) m.obj) {
 
-        if (is.idle) {
+        if (!is.isBusy()) {
           // it was a race... i is now idle, everything is fine...
         } else {
           throw new IllegalStateException(
@@ -20,7 +20,10 @@ import static androidx.test.internal.util.Checks.checkNotNull;
 import static androidx.test.internal.util.Checks.checkState;
 import static com.google.common.base.Throwables.throwIfUnchecked;
 
+import android.annotation.SuppressLint;
 import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.os.MessageQueue;
@@ -39,6 +42,8 @@ final class Interrogator {
   private static final Method recycleUncheckedMethod;
 
   private static final int LOOKAHEAD_MILLIS = 15;
+  // Passed explicitly to reflective calls, varargs would allocate an empty array on every call.
+  private static final Object[] NO_ARGS = new Object[0];
   private static final ThreadLocal<Boolean> interrogating =
       new ThreadLocal<Boolean>() {
         @Override
@@ -47,6 +52,14 @@ final class Interrogator {
         }
       };
 
+  private static final ThreadLocal<IdleObserver> idleObserver =
+      new ThreadLocal<IdleObserver>() {
+        @Override
+        public IdleObserver initialValue() {
+          return new IdleObserver();
+        }
+      };
+
   static {
     try {
       messageQueueNextMethod = MessageQueue.class.getDeclaredMethod("next");
@@ -152,39 +165,151 @@ final class Interrogator {
           }
           stillInterested = handler.beforeTaskDispatch();
           handler.setMessage(m);
-          m.getTarget().dispatchMessage(m);
-
-          // ensure looper invariants
-          final long newIdentity = Binder.clearCallingIdentity();
-          // Detect binder id corruption.
-          if (newIdentity != threadIdentity) {
-            Log.wtf(
-                TAG,
-                "Thread identity changed from 0x"
-                    + Long.toHexString(threadIdentity)
-                    + " to 0x"
-                    + Long.toHexString(newIdentity)
-                    + " while dispatching to "
-                    + m.getTarget().getClass().getName()
-                    + " "
-                    + m.getCallback()
-                    + " what="
-                    + m.what);
-          }
+          dispatch(m, threadIdentity);
+        }
+      }
+    } finally {
+      Binder.restoreCallingIdentity(entryIdentity);
+      interrogating.set(Boolean.FALSE);
+    }
+    return handler.get();
+  }
+
+  /**
+   * Returns true if {@link #loopAndObserveIdle} can be used on this platform.
+   *
+   * <p>The idle observer wakes the loop up with an asynchronous message so that it is not held back
+   * by a sync barrier. {@link Message#setAsynchronous(boolean)} is only public from API 22.
+   */
+  static boolean canObserveIdle() {
+    return Build.VERSION.SDK_INT >= 22;
+  }
+
+  /**
+   * Loops the main thread until the interrogation handler is no longer interested, like {@link
+   * #loopAndInterrogate}, but learns about idleness from the queue instead of inspecting it before
+   * every dispatched message.
+   *
+   * <p>A {@link MessageQueue.IdleHandler} is registered for the duration of the loop. Messages are
+   * dispatched back to back without peeking at the queue; only once the queue reports that it has
+   * run out of due work is its head inspected (to tell a barrier or a task due soon apart from a
+   * truly idle queue) and the handler consulted. If the handler wants to stop, the pending {@link
+   * MessageQueue#next()} call is woken up by an asynchronous marker message.
+   *
+   * @param handler an interrogation handler that controls whether to continue looping or not.
+   */
+  static <R> R loopAndObserveIdle(InterrogationHandler<R> handler) {
+    checkSanity();
+    checkState(canObserveIdle(), "Idle observation requires API 22 or above.");
+    interrogating.set(Boolean.TRUE);
+    MessageQueue q = Looper.myQueue();
+    IdleObserver observer = idleObserver.get();
+    observer.begin(q, handler);
+    final long entryIdentity = Binder.clearCallingIdentity();
+    try {
+      final long threadIdentity = Binder.clearCallingIdentity();
+      while (true) {
+        Message m = getNextMessage();
+        if (null == m) {
+          handler.quitting();
+          return handler.get();
+        }
+        if (observer.isWakeUp(m)) {
           recycle(m);
+          if (observer.stopRequested()) {
+            break;
+          }
+          continue;
+        }
+        boolean stillInterested = handler.beforeTaskDispatch();
+        handler.setMessage(m);
+        dispatch(m, threadIdentity);
+        if (!stillInterested) {
+          break;
         }
       }
     } finally {
+      observer.end(q);
       Binder.restoreCallingIdentity(entryIdentity);
       interrogating.set(Boolean.FALSE);
     }
     return handler.get();
   }
 
+  private static void dispatch(Message m, long threadIdentity) {
+    m.getTarget().dispatchMessage(m);
+
+    // ensure looper invariants
+    final long newIdentity = Binder.clearCallingIdentity();
+    // Detect binder id corruption.
+    if (newIdentity != threadIdentity) {
+      Log.wtf(
+          TAG,
+          "Thread identity changed from 0x"
+              + Long.toHexString(threadIdentity)
+              + " to 0x"
+              + Long.toHexString(newIdentity)
+              + " while dispatching to "
+              + m.getTarget().getClass().getName()
+              + " "
+              + m.getCallback()
+              + " what="
+              + m.what);
+    }
+    recycle(m);
+  }
+
+  /**
+   * Consults the interrogation handler whenever the observed queue goes idle, and wakes up the
+   * interrogation loop once the handler has lost interest.
+   */
+  private static final class IdleObserver implements MessageQueue.IdleHandler {
+    private static final int WAKE_UP = 1;
+
+    private final Handler wakeUpHandler = new Handler(Looper.myLooper());
+    private MessageQueue queue;
+    private QueueInterrogationHandler<?> handler;
+    private boolean stopRequested;
+
+    void begin(MessageQueue queue, QueueInterrogationHandler<?> handler) {
+      this.queue = queue;
+      this.handler = handler;
+      this.stopRequested = false;
+      queue.addIdleHandler(this);
+    }
+
+    void end(MessageQueue queue) {
+      queue.removeIdleHandler(this);
+      wakeUpHandler.removeMessages(WAKE_UP);
+      this.queue = null;
+      this.handler = null;
+    }
+
+    boolean isWakeUp(Message m) {
+      return m.getTarget() == wakeUpHandler && m.what == WAKE_UP;
+    }
+
+    boolean stopRequested() {
+      return stopRequested;
+    }
+
+    @SuppressLint("NewApi") // guarded by canObserveIdle()
+    @Override
+    public boolean queueIdle() {
+      if (null != handler && !stopRequested && !interrogateQueueState(queue, handler)) {
+        stopRequested = true;
+        Message wakeUp = Message.obtain(wakeUpHandler, WAKE_UP);
+        wakeUp.setAsynchronous(true);
+        wakeUpHandler.sendMessageAtFrontOfQueue(wakeUp);
+      }
+      return true;
+    }
+  }
+
   private static void recycle(Message m) {
     if (recycleUncheckedMethod != null) {
       try {
-        recycleUncheckedMethod.invoke(m);
+        recycleUncheckedMethod.invoke(m, NO_ARGS);
       } catch (IllegalAccessException | IllegalArgumentException | SecurityException e) {
         throwIfUnchecked(e);
         throw new RuntimeException(e);
@@ -203,7 +328,7 @@ final class Interrogator {
 
   private static Message getNextMessage() {
     try {
-      return (Message) messageQueueNextMethod.invoke(Looper.myQueue());
+      return (Message) messageQueueNextMethod.invoke(Looper.myQueue(), NO_ARGS);
     } catch (IllegalAccessException
         | IllegalArgumentException
         | InvocationTargetException
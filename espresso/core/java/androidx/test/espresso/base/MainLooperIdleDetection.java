@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.test.espresso.base.Interrogator.InterrogationHandler;
+import java.util.Locale;
+
+/**
+ * Engines that {@link UiControllerImpl} can use to loop the main thread until its idle conditions
+ * are met.
+ *
+ * <p>The engine can be selected with the {@code espresso_idle_detection} instrumentation argument,
+ * e.g. {@code -e espresso_idle_detection event_driven}.
+ */
+enum MainLooperIdleDetection {
+  /** Inspects the head of the message queue through reflection before every dispatched message. */
+  REFLECTIVE {
+    @Override
+    <R> R loopAndInterrogate(InterrogationHandler<R> handler) {
+      return Interrogator.loopAndInterrogate(handler);
+    }
+  },
+
+  /**
+   * Dispatches messages without inspecting the queue and only interrogates it once the queue
+   * reports that it went idle. Falls back to {@link #REFLECTIVE} on platforms where this is not
+   * supported.
+   */
+  EVENT_DRIVEN {
+    @Override
+    <R> R loopAndInterrogate(InterrogationHandler<R> handler) {
+      return Interrogator.loopAndObserveIdle(handler);
+    }
+  };
+
+  private static final String TAG = MainLooperIdleDetection.class.getSimpleName();
+
+  /** Name of the instrumentation argument used to select the engine. */
+  static final String IDLE_DETECTION_ARG = "espresso_idle_detection";
+
+  /**
+   * Loops the current looper and informs the handler at interesting points in the exec state.
+   *
+   * @see Interrogator#loopAndInterrogate(InterrogationHandler)
+   */
+  abstract <R> R loopAndInterrogate(InterrogationHandler<R> handler);
+
+  /**
+   * Returns the engine named by the given argument value, or {@link #REFLECTIVE} if the value is
+   * missing, unknown or names an engine that isn't supported on this platform.
+   */
+  static MainLooperIdleDetection fromArgument(@Nullable String value) {
+    if (null == value || value.isEmpty()) {
+      return REFLECTIVE;
+    }
+    MainLooperIdleDetection detection;
+    try {
+      detection = valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "Unknown " + IDLE_DETECTION_ARG + " value: " + value + ", using " + REFLECTIVE);
+      return REFLECTIVE;
+    }
+    if (EVENT_DRIVEN == detection && !Interrogator.canObserveIdle()) {
+      Log.w(TAG, EVENT_DRIVEN + " idle detection is not supported on this API level.");
+      return REFLECTIVE;
+    }
+    return detection;
+  }
+}
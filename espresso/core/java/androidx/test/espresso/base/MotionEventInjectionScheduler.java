@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.internal.util.Checks.checkArgument;
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Injects sequences of {@link MotionEvent}s at the times they are meant to happen.
+ *
+ * <p>The events of a gesture are grouped into batches. All events whose target time falls within
+ * the same batch window are injected back to back at the target time of the last of them, and no
+ * thread is held while waiting for the next batch: each batch schedules the next one on an
+ * executor that is shared by all schedulers. By default the batch window is a millisecond, which
+ * is the resolution of {@link MotionEvent#getEventTime()}. With a window of one display frame, at
+ * most one batch is injected per frame interval. The windows start at the first event of each
+ * batch, they are not phased to the display's vsync.
+ *
+ * <p>For every gesture, the difference between the target and the actual injection time of each
+ * event is reported in a {@link TimingReport}.
+ */
+final class MotionEventInjectionScheduler {
+  private static final String TAG = MotionEventInjectionScheduler.class.getSimpleName();
+
+  /**
+   * Name of the instrumentation argument that batches the injected events per display frame
+   * interval, e.g. {@code -e espresso_batch_motion_events_per_frame true}.
+   */
+  static final String BATCH_PER_FRAME_ARG = "espresso_batch_motion_events_per_frame";
+
+  static final long DEFAULT_BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final EventInjector eventInjector;
+  private final ScheduledExecutorService executor;
+  private final long batchWindowNanos;
+  private volatile TimingReport lastTimingReport;
+
+  MotionEventInjectionScheduler(EventInjector eventInjector) {
+    this(eventInjector, DEFAULT_BATCH_WINDOW_NANOS);
+  }
+
+  MotionEventInjectionScheduler(EventInjector eventInjector, long batchWindowNanos) {
+    this(eventInjector, SharedExecutorHolder.EXECUTOR, batchWindowNanos);
+  }
+
+  @VisibleForTesting
+  MotionEventInjectionScheduler(
+      EventInjector eventInjector, ScheduledExecutorService executor, long batchWindowNanos) {
+    checkArgument(batchWindowNanos > 0, "batchWindowNanos must be positive");
+    this.eventInjector = checkNotNull(eventInjector);
+    this.executor = checkNotNull(executor);
+    this.batchWindowNanos = batchWindowNanos;
+  }
+
+  /**
+   * Returns a batch window of one frame interval of a display with the given refresh rate, or the
+   * default window if the refresh rate is unknown.
+   */
+  static long batchWindowForRefreshRate(float refreshRateHz) {
+    if (refreshRateHz <= 0 || Float.isNaN(refreshRateHz) || Float.isInfinite(refreshRateHz)) {
+      return DEFAULT_BATCH_WINDOW_NANOS;
+    }
+    long frameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRateHz);
+    return Math.max(DEFAULT_BATCH_WINDOW_NANOS, frameIntervalNanos);
+  }
+
+  /**
+   * Schedules the injection of the given gesture, relative to now.
+   *
+   * <p>All events but the last are injected asynchronously, the last one is injected synchronously
+   * so that the returned future only completes once the whole gesture was dispatched.
+   *
+   * @param events the events to inject, ordered by {@link MotionEvent#getEventTime()}
+   * @return a future for whether all events were injected successfully
+   */
+  ListenableFuture<Boolean> schedule(List<MotionEvent> events) {
+    checkArgument(!events.isEmpty(), "Expecting non-empty events to inject");
+    GestureInjection injection = new GestureInjection(events, System.nanoTime());
+    executor.execute(injection);
+    return injection.result;
+  }
+
+  /** Returns the timing report of the last completed gesture, or null if there is none yet. */
+  @Nullable
+  TimingReport getLastTimingReport() {
+    return lastTimingReport;
+  }
+
+  /**
+   * Holds the executor all schedulers inject on. Batches are short and never block, so one daemon
+   * thread per process is enough, and schedulers created per {@link UiControllerImpl} do not leak
+   * threads.
+   */
+  private static final class SharedExecutorHolder {
+    static final ScheduledExecutorService EXECUTOR =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("Espresso Motion Event #%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  /** How far the injection of the events of a gesture was off from their target times. */
+  static final class TimingReport {
+    final int eventCount;
+    final int batchCount;
+    final long meanErrorNanos;
+    final long maxErrorNanos;
+
+    TimingReport(int eventCount, int batchCount, long meanErrorNanos, long maxErrorNanos) {
+      this.eventCount = eventCount;
+      this.batchCount = batchCount;
+      this.meanErrorNanos = meanErrorNanos;
+      this.maxErrorNanos = maxErrorNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.ROOT,
+          "Injected %d motion events in %d batches, timing error mean=%dus max=%dus",
+          eventCount,
+          batchCount,
+          TimeUnit.NANOSECONDS.toMicros(meanErrorNanos),
+          TimeUnit.NANOSECONDS.toMicros(maxErrorNanos));
+    }
+  }
+
+  /** Injects one batch of a gesture per run and schedules itself for the next batch. */
+  private final class GestureInjection implements Runnable {
+    private final List<MotionEvent> events;
+    private final long startNanos;
+    private final long downTimeMs;
+    private final SettableFuture<Boolean> result = SettableFuture.create();
+    private int next;
+    private int batchCount;
+    private boolean success = true;
+    private long totalErrorNanos;
+    private long maxErrorNanos;
+
+    GestureInjection(List<MotionEvent> events, long startNanos) {
+      this.events = events;
+      this.startNanos = startNanos;
+      this.downTimeMs = events.get(0).getEventTime();
+    }
+
+    private long targetNanos(int index) {
+      return startNanos
+          + TimeUnit.MILLISECONDS.toNanos(events.get(index).getEventTime() - downTimeMs);
+    }
+
+    @Override
+    public void run() {
+      try {
+        // The batch ends with the last event due within one window of the first one.
+        long windowEndNanos = targetNanos(next) + batchWindowNanos;
+        int batchEnd = next + 1;
+        while (batchEnd < events.size() && targetNanos(batchEnd) < windowEndNanos) {
+          batchEnd++;
+        }
+        // Scheduled executors may wake up slightly early, never inject ahead of time.
+        long remainingNanos = targetNanos(batchEnd - 1) - System.nanoTime();
+        if (remainingNanos > 0) {
+          executor.schedule(this, remainingNanos, TimeUnit.NANOSECONDS);
+          return;
+        }
+        batchCount++;
+        for (; next < batchEnd; next++) {
+          long errorNanos = Math.max(0, System.nanoTime() - targetNanos(next));
+          totalErrorNanos += errorNanos;
+          maxErrorNanos = Math.max(maxErrorNanos, errorNanos);
+          MotionEvent event = events.get(next);
+          if (next < events.size() - 1) {
+            success &= eventInjector.injectMotionEventAsync(event);
+          } else {
+            success &= eventInjector.injectMotionEvent(event);
+          }
+        }
+        if (next < events.size()) {
+          long delayNanos = targetNanos(next) - System.nanoTime();
+          executor.schedule(this, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+        } else {
+          lastTimingReport =
+              new TimingReport(
+                  events.size(), batchCount, totalErrorNanos / events.size(), maxErrorNanos);
+          if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, lastTimingReport.toString());
+          }
+          result.set(success);
+        }
+      } catch (Throwable t) {
+        result.setException(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.util.Log;
+import androidx.test.platform.io.PlatformTestStorage;
+import java.io.IOException;
+import java.io.PrintStream;
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * A JUnit RunListener that collects statistics during each test case and writes them to a {@code
+ * <prefix>-<class>#<method>.csv} test output file.
+ *
+ * <p>Anything recorded outside of a test, e.g. in a {@code @BeforeClass} method, is dropped.
+ */
+abstract class PerTestCsvListener extends RunListener {
+  private final String tag = getClass().getSimpleName();
+  private final String fileNamePrefix;
+  private final PlatformTestStorage testStorage;
+
+  PerTestCsvListener(String fileNamePrefix, PlatformTestStorage testStorage) {
+    this.fileNamePrefix = checkNotNull(fileNamePrefix);
+    this.testStorage = checkNotNull(testStorage);
+  }
+
+  /** Returns whether nothing was recorded since the last {@link #reset()}. */
+  abstract boolean isEmpty();
+
+  /** Drops everything recorded so far. */
+  abstract void reset();
+
+  /** Writes everything recorded since the last {@link #reset()} as comma separated values. */
+  abstract void writeTo(PrintStream out);
+
+  /**
+   * Invoked with the name of a finished test case before its statistics are written, e.g. to log
+   * a summary.
+   */
+  void onTestFinished(String testName) {}
+
+  @Override
+  public void testStarted(Description description) {
+    reset();
+  }
+
+  @Override
+  public void testFinished(Description description) {
+    if (isEmpty()) {
+      return;
+    }
+    String testClassName =
+        description.getTestClass() != null ? description.getTestClass().getSimpleName() : "None";
+    String methodName = description.getMethodName() != null ? description.getMethodName() : "None";
+    String testName = testClassName + "#" + methodName;
+    onTestFinished(testName);
+    String fileName = fileNamePrefix + "-" + testName + ".csv";
+    try (PrintStream out = new PrintStream(testStorage.openOutputFile(fileName))) {
+      writeTo(out);
+    } catch (IOException | RuntimeException e) {
+      // Log and ignore, the statistics are purely informational.
+      Log.w(tag, "Failed to write " + fileName, e);
+    } finally {
+      reset();
+    }
+  }
+}
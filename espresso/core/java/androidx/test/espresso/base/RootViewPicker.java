@@ -21,9 +21,14 @@ import static androidx.test.internal.util.Checks.checkState;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.Build;
 import android.os.Looper;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
 import androidx.test.espresso.EspressoException;
 import androidx.test.espresso.NoActivityResumedException;
 import androidx.test.espresso.NoMatchingRootException;
@@ -32,6 +37,7 @@ import androidx.test.espresso.UiController;
 import androidx.test.espresso.internal.inject.TargetContext;
 import androidx.test.internal.platform.os.ControlledLooper;
 import androidx.test.internal.util.LogUtil;
+import androidx.test.runner.lifecycle.ActivityLifecycleCallback;
 import androidx.test.runner.lifecycle.ActivityLifecycleMonitor;
 import androidx.test.runner.lifecycle.Stage;
 import com.google.common.collect.ImmutableList;
@@ -50,6 +56,10 @@ import org.hamcrest.Matcher;
  * Provides the root View of the top-most Window, with which the user can interact. View is
  * guaranteed to be in a stable state - i.e. not pending any updates from the application.
  *
+ * <p>With a {@link WakeableUiController}, waiting for activities and roots ends as soon as
+ * activity lifecycle, window focus or layout callbacks report a change, the wait times below are
+ * then only upper bounds for each wait.
+ *
  * <p>This provider can only be accessed from the main thread.
  */
 @RootViewPickerScope
@@ -68,6 +78,16 @@ public final class RootViewPicker implements Provider<View> {
   private final ControlledLooper controlledLooper;
   private final Context appContext;
 
+  // Held while waiting, the lifecycle monitor only keeps weak references to its callbacks.
+  private final ActivityLifecycleCallback wakeUpOnActivityResumed =
+      (activity, stage) -> {
+        if (stage == Stage.RESUMED) {
+          wakeUp();
+        }
+      };
+  private final ActivityLifecycleCallback wakeUpOnActivityLifecycleChange =
+      (activity, stage) -> wakeUp();
+
   @Inject
   RootViewPicker(
       UiController uiController,
@@ -97,6 +117,41 @@ public final class RootViewPicker implements Provider<View> {
     return pickRootView();
   }
 
+  /**
+   * Returns the root view like {@link #get()}, but fails right away instead of waiting for an
+   * activity to be resumed or for a root to show up and get ready. For callers that wait on their
+   * own deadline.
+   *
+   * @throws NoActivityResumedException if an activity is needed but none is resumed
+   * @throws NoMatchingRootException if no root matches the root matcher
+   * @hide
+   */
+  @RestrictTo(Scope.LIBRARY)
+  public View getWithoutWaiting() {
+    checkState(Looper.getMainLooper().equals(Looper.myLooper()), "must be called on main thread.");
+    if (needsActivity.get()
+        && activityLifecycleMonitor.getActivitiesInStage(Stage.RESUMED).isEmpty()) {
+      throw new NoActivityResumedException("No activities in stage RESUMED.");
+    }
+    RootResults rootResults = rootResultFetcher.fetch();
+    if (RootResults.State.ROOTS_PICKED != rootResults.getState()) {
+      throw NoMatchingRootException.create(rootResults.rootSelector, rootResults.allRoots);
+    }
+    Root pickedRoot = rootResults.getPickedRoot();
+    if (!pickedRoot.isReady()) {
+      controlledLooper.simulateWindowFocus(pickedRoot.getDecorView());
+      if (!pickedRoot.isReady()) {
+        throw new RootViewWithoutFocusException(
+            String.format(
+                Locale.ROOT,
+                "The root of the view hierarchy does not have window focus or requests layout."
+                    + " Root:\n%s",
+                pickedRoot));
+      }
+    }
+    return pickedRoot.getDecorView();
+  }
+
   /**
    * Waits for a root to be ready. Ready here means the UI is no longer in flux if layout of the
    * root view is not being requested and the root view has window focus or is focusable.
@@ -104,13 +159,23 @@ public final class RootViewPicker implements Provider<View> {
   private Root waitForRootToBeReady(Root pickedRoot) {
     long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10) /* 10 seconds */;
     BackOff rootReadyBackoff = new RootReadyBackoff();
-    while (System.currentTimeMillis() <= timeout) {
-      if (pickedRoot.isReady()) {
-        return pickedRoot;
-      } else {
-        controlledLooper.simulateWindowFocus(pickedRoot.getDecorView());
-        uiController.loopMainThreadForAtLeast(rootReadyBackoff.getNextBackoffInMillis());
+    if (pickedRoot.isReady()) {
+      return pickedRoot;
+    }
+    ViewTreeObserver observer = pickedRoot.getDecorView().getViewTreeObserver();
+    WakeUpOnWindowChange wakeUpOnWindowChange = new WakeUpOnWindowChange();
+    wakeUpOnWindowChange.register(observer);
+    try {
+      while (System.currentTimeMillis() <= timeout) {
+        if (pickedRoot.isReady()) {
+          return pickedRoot;
+        } else {
+          controlledLooper.simulateWindowFocus(pickedRoot.getDecorView());
+          loopMainThreadUntilWokenUp(rootReadyBackoff.getNextBackoffInMillis());
+        }
       }
+    } finally {
+      wakeUpOnWindowChange.unregister(observer);
     }
 
     throw new RootViewWithoutFocusException(
@@ -126,22 +191,32 @@ public final class RootViewPicker implements Provider<View> {
   private Root pickARoot() {
     long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60) /* 60 seconds */;
     RootResults rootResults = rootResultFetcher.fetch();
+    if (RootResults.State.ROOTS_PICKED == rootResults.getState()) {
+      return rootResults.getPickedRoot();
+    }
     BackOff noActiveRootsBackoff = new NoActiveRootsBackoff();
     BackOff noMatchingRootBackoff = new NoMatchingRootBackoff();
-    while (System.currentTimeMillis() <= timeout) {
-      switch (rootResults.getState()) {
-        case ROOTS_PICKED:
-          return rootResults.getPickedRoot();
-        case NO_ROOTS_PRESENT:
-          // no active roots yet, but should appear soon.
-          uiController.loopMainThreadForAtLeast(noActiveRootsBackoff.getNextBackoffInMillis());
-          break;
-        case NO_ROOTS_PICKED:
-          // a root which satisfies the matcher should show up eventually.
-          uiController.loopMainThreadForAtLeast(noMatchingRootBackoff.getNextBackoffInMillis());
-          break;
+    // New activity windows are added around lifecycle changes, there is no notification for other
+    // windows like dialogs and popups, which are found by the backoff.
+    activityLifecycleMonitor.addLifecycleCallback(wakeUpOnActivityLifecycleChange);
+    try {
+      while (System.currentTimeMillis() <= timeout) {
+        switch (rootResults.getState()) {
+          case ROOTS_PICKED:
+            return rootResults.getPickedRoot();
+          case NO_ROOTS_PRESENT:
+            // no active roots yet, but should appear soon.
+            loopMainThreadUntilWokenUp(noActiveRootsBackoff.getNextBackoffInMillis());
+            break;
+          case NO_ROOTS_PICKED:
+            // a root which satisfies the matcher should show up eventually.
+            loopMainThreadUntilWokenUp(noMatchingRootBackoff.getNextBackoffInMillis());
+            break;
+        }
+        rootResults = rootResultFetcher.fetch();
       }
-      rootResults = rootResultFetcher.fetch();
+    } finally {
+      activityLifecycleMonitor.removeLifecycleCallback(wakeUpOnActivityLifecycleChange);
     }
 
     if (RootResults.State.ROOTS_PICKED == rootResults.getState()) {
@@ -165,16 +240,21 @@ public final class RootViewPicker implements Provider<View> {
     if (resumedActivities.isEmpty()) {
       List<Activity> activities = getAllActiveActivities();
       if (activities.isEmpty()) {
-        for (long waitTime : CREATED_WAIT_TIMES) {
-          // wait for Activities to be scheduled by the platform before assuming there are none
-          // and failing the test.
-          Log.w(TAG, "No activities found - waiting: " + waitTime + "ms for one to appear.");
-          uiController.loopMainThreadForAtLeast(waitTime);
-          activities = getAllActiveActivities();
-          if (!activities.isEmpty()) {
-            // found at least one activity in the pipeline
-            break;
+        activityLifecycleMonitor.addLifecycleCallback(wakeUpOnActivityLifecycleChange);
+        try {
+          for (long waitTime : CREATED_WAIT_TIMES) {
+            // wait for Activities to be scheduled by the platform before assuming there are none
+            // and failing the test.
+            Log.w(TAG, "No activities found - waiting: " + waitTime + "ms for one to appear.");
+            loopMainThreadUntilWokenUp(waitTime);
+            activities = getAllActiveActivities();
+            if (!activities.isEmpty()) {
+              // found at least one activity in the pipeline
+              break;
+            }
           }
+        } finally {
+          activityLifecycleMonitor.removeLifecycleCallback(wakeUpOnActivityLifecycleChange);
         }
       }
       if (activities.isEmpty()) {
@@ -184,14 +264,20 @@ public final class RootViewPicker implements Provider<View> {
       }
       // well at least there are some activities in the pipeline - lets see if they resume.
 
-      for (long waitTime : RESUMED_WAIT_TIMES) {
-        Log.w(
-            TAG, "No activity currently resumed - waiting: " + waitTime + "ms for one to appear.");
-        uiController.loopMainThreadForAtLeast(waitTime);
-        resumedActivities = activityLifecycleMonitor.getActivitiesInStage(Stage.RESUMED);
-        if (!resumedActivities.isEmpty()) {
-          return; // one of the pending activities has resumed
+      activityLifecycleMonitor.addLifecycleCallback(wakeUpOnActivityResumed);
+      try {
+        for (long waitTime : RESUMED_WAIT_TIMES) {
+          Log.w(
+              TAG,
+              "No activity currently resumed - waiting: " + waitTime + "ms for one to appear.");
+          loopMainThreadUntilWokenUp(waitTime);
+          resumedActivities = activityLifecycleMonitor.getActivitiesInStage(Stage.RESUMED);
+          if (!resumedActivities.isEmpty()) {
+            return; // one of the pending activities has resumed
+          }
         }
+      } finally {
+        activityLifecycleMonitor.removeLifecycleCallback(wakeUpOnActivityResumed);
       }
       throw new NoActivityResumedException(
           "No activities in stage RESUMED. Did you forget to "
@@ -204,6 +290,68 @@ public final class RootViewPicker implements Provider<View> {
         currentActivity, uiController, appContext);
   }
 
+  /**
+   * Loops the main thread for at most the given time, or only until {@link #wakeUp()} if the
+   * controller supports it.
+   */
+  private void loopMainThreadUntilWokenUp(long millisDelay) {
+    if (uiController instanceof WakeableUiController) {
+      ((WakeableUiController) uiController).loopMainThreadUntilWokenUp(millisDelay);
+    } else {
+      uiController.loopMainThreadForAtLeast(millisDelay);
+    }
+  }
+
+  private void wakeUp() {
+    if (uiController instanceof WakeableUiController) {
+      ((WakeableUiController) uiController).wakeUp();
+    }
+  }
+
+  /** Wakes up the main thread when a root was laid out or, from API 18, gained window focus. */
+  private final class WakeUpOnWindowChange implements ViewTreeObserver.OnGlobalLayoutListener {
+    // An Object, since the listener interface is only loadable from API 18.
+    private Object focusListener;
+
+    void register(ViewTreeObserver observer) {
+      if (!observer.isAlive()) {
+        return;
+      }
+      observer.addOnGlobalLayoutListener(this);
+      if (Build.VERSION.SDK_INT >= 18) {
+        WakeUpOnWindowFocus wakeUpOnWindowFocus = new WakeUpOnWindowFocus();
+        observer.addOnWindowFocusChangeListener(wakeUpOnWindowFocus);
+        focusListener = wakeUpOnWindowFocus;
+      }
+    }
+
+    @SuppressWarnings("deprecation") // removeOnGlobalLayoutListener requires API 16
+    void unregister(ViewTreeObserver observer) {
+      if (!observer.isAlive()) {
+        return;
+      }
+      observer.removeGlobalOnLayoutListener(this);
+      if (focusListener != null) {
+        observer.removeOnWindowFocusChangeListener((WakeUpOnWindowFocus) focusListener);
+      }
+    }
+
+    @Override
+    public void onGlobalLayout() {
+      wakeUp();
+    }
+  }
+
+  @RequiresApi(18)
+  private final class WakeUpOnWindowFocus implements ViewTreeObserver.OnWindowFocusChangeListener {
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+      if (hasFocus) {
+        wakeUp();
+      }
+    }
+  }
+
   /** Returns the list of all non-destroyed activities. */
   private List<Activity> getAllActiveActivities() {
     List<Activity> activities = Lists.newArrayList();
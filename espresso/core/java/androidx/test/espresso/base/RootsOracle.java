@@ -23,15 +23,19 @@ import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.view.WindowManager.LayoutParams;
+import androidx.annotation.Nullable;
 import androidx.test.espresso.Root;
 import com.google.common.collect.Lists;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 /**
  * Provides access to all root views in an application.
@@ -44,8 +48,13 @@ import javax.inject.Inject;
  * handle a list of size 0 by assuming getWindow().getDecorView() on the currently resumed activity
  * is the sole root - this assumption will be correct often enough.
  *
+ * <p>The roots are cached until the window manager's lists of root views or of their layout params
+ * change, which is checked by comparing references on every call. The cache only weakly references
+ * the root views, so that it does not keep the windows of destroyed activities alive.
+ *
  * <p>Obviously, you need to be on the main thread to use this.
  */
+@Singleton
 final class RootsOracle implements ActiveRootLister {
 
   private static final String TAG = RootsOracle.class.getSimpleName();
@@ -62,6 +71,12 @@ final class RootsOracle implements ActiveRootLister {
   private Field viewsField;
   private Field paramsField;
 
+  // The root views and layout params the cached roots were built from, and the roots. Roots
+  // reference their root view, so they are only weakly referenced as well.
+  private final List<WeakReference<View>> cachedViews = new ArrayList<>();
+  private final List<LayoutParams> cachedParams = new ArrayList<>();
+  private final List<WeakReference<Root>> cachedRoots = new ArrayList<>();
+
   @Inject
   RootsOracle(Looper mainLooper) {
     this.mainLooper = mainLooper;
@@ -125,18 +140,69 @@ final class RootsOracle implements ActiveRootLister {
       return Lists.newArrayList();
     }
 
-    List<Root> roots = Lists.newArrayList();
+    List<Root> roots = getCachedRoots(views, params);
+    if (roots != null) {
+      return roots;
+    }
+    roots = new ArrayList<>(views.size());
+    cachedViews.clear();
+    cachedParams.clear();
+    cachedRoots.clear();
     for (int i = views.size() - 1; i > -1; i--) {
-      roots.add(
+      Root root =
           new Root.Builder()
               .withDecorView(views.get(i))
               .withWindowLayoutParams(params.get(i))
-              .build());
+              .build();
+      roots.add(root);
+      cachedRoots.add(new WeakReference<>(root));
+    }
+    for (View view : views) {
+      cachedViews.add(new WeakReference<>(view));
     }
+    cachedParams.addAll(params);
+    return roots;
+  }
 
+  /**
+   * Returns a new list of the cached roots if they were built from exactly these views and params
+   * and none of them was collected, null otherwise.
+   */
+  @Nullable
+  private List<Root> getCachedRoots(List<View> views, List<LayoutParams> params) {
+    if (!isCacheOf(views, params)) {
+      return null;
+    }
+    List<Root> roots = new ArrayList<>(cachedRoots.size());
+    for (WeakReference<Root> rootRef : cachedRoots) {
+      Root root = rootRef.get();
+      if (root == null) {
+        return null;
+      }
+      roots.add(root);
+    }
     return roots;
   }
 
+  /** Returns whether the cached roots were built from exactly these views and params. */
+  private boolean isCacheOf(List<View> views, List<LayoutParams> params) {
+    if (views.size() != cachedViews.size() || params.size() != cachedParams.size()) {
+      return false;
+    }
+    for (int i = 0; i < views.size(); i++) {
+      if (views.get(i) != cachedViews.get(i).get()) {
+        return false;
+      }
+    }
+    // Updating the layout of a window replaces its params.
+    for (int i = 0; i < params.size(); i++) {
+      if (params.get(i) != cachedParams.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private void initialize() {
     initialized = true;
     String accessClass =
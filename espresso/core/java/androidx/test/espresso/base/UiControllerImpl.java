@@ -37,14 +37,18 @@ import androidx.test.espresso.IdlingPolicy;
 import androidx.test.espresso.InjectEventSecurityException;
 import androidx.test.espresso.UiController;
 import androidx.test.espresso.base.IdlingResourceRegistry.IdleNotificationCallback;
+import androidx.test.espresso.util.TracingUtil;
+import androidx.test.platform.tracing.Tracer.Span;
+import androidx.test.platform.tracing.Tracing;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.BitSet;
 import java.util.EnumSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Callable;
@@ -60,9 +64,14 @@ import javax.inject.Singleton;
 /** Implementation of {@link UiController}. */
 @Singleton
 final class UiControllerImpl
-    implements InterruptableUiController, Handler.Callback, IdlingUiController {
+    implements InterruptableUiController,
+        Handler.Callback,
+        IdlingUiController,
+        BulkTextInjectingUiController,
+        WakeableUiController {
 
   private static final String TAG = UiControllerImpl.class.getSimpleName();
+  private static final int NOT_REGISTERED = -1;
 
   private static final Callable<Void> NO_OP =
       new Callable<Void>() {
@@ -81,6 +90,11 @@ final class UiControllerImpl
     MOTION_INJECTION_HAS_COMPLETED,
     DYNAMIC_TASKS_HAVE_IDLED;
 
+    // values() clones the array on every call, keep a copy around for the idle sync path.
+    private static final IdleCondition[] VALUES = values();
+
+    private final String spanName = TracingUtil.getSpanName("IdleCondition", name());
+
     /** Checks whether this condition has been signaled. */
     public boolean isSignaled(BitSet conditionSet) {
       return conditionSet.get(ordinal());
@@ -102,7 +116,7 @@ final class UiControllerImpl
      */
     public static boolean handleMessage(
         Message message, BitSet conditionSet, int currentGeneration) {
-      IdleCondition[] allConditions = values();
+      IdleCondition[] allConditions = VALUES;
       if (message.what < 0 || message.what >= allConditions.length) {
         return false;
       } else {
@@ -151,16 +165,64 @@ final class UiControllerImpl
   private final Looper mainLooper;
   private final IdlingResourceRegistry idlingResourceRegistry;
   private final Handler controllerHandler;
+  // Token of the message ending loopMainThreadUntilWokenUp, removed when woken up earlier.
+  private final Object wakeUpToken = new Object();
 
   // only updated on main thread.
   private MainThreadInterrogation interrogation;
   private int generation = 0;
+  private boolean awaitingWakeUp;
   private IdleNotifier<Runnable> asyncIdle;
   private IdleNotifier<Runnable> compatIdle;
   private Provider<IdleNotifier<IdleNotificationCallback>> dynamicIdleProvider;
+  private final MainLooperIdleDetection idleDetection;
+  private final IdleWaitStats idleWaitStats;
+  private final Tracing tracer;
+  private final MotionEventInjectionScheduler motionEventScheduler;
+  // uptime and interrogation iteration at which each condition was last signaled, by ordinal.
+  private final long[] conditionSignaledAtMs = new long[IdleCondition.values().length];
+  private final int[] conditionSignaledAtIteration = new int[IdleCondition.values().length];
+  private final Span[] conditionSpans = new Span[IdleCondition.values().length];
+
+  // Preallocated state for the idle sync path, only used on main thread.
+  private final EnumSet<IdleCondition> idleConditionChecks = EnumSet.noneOf(IdleCondition.class);
+  private final EnumSet<IdleCondition>[] singleConditions = createSingleConditionSets();
+  // Generation the dynamic idle callback is registered for, or NOT_REGISTERED. The registry invokes
+  // and cancels the callback on the main thread, so a stale callback can never see a newer value.
+  private int dynamicIdleGeneration = NOT_REGISTERED;
+  private final IdleNotificationCallback dynamicIdleCallback =
+      new IdleNotificationCallback() {
+        @Override
+        public void resourcesStillBusyWarning(List<String> busyResourceNames) {
+          IdlingPolicies.getDynamicIdlingResourceWarningPolicy()
+              .handleTimeout(busyResourceNames, "IdlingResources are still busy!");
+        }
+
+        @Override
+        public void resourcesHaveTimedOut(List<String> busyResourceNames) {
+          IdlingPolicies.getDynamicIdlingResourceErrorPolicy()
+              .handleTimeout(busyResourceNames, "IdlingResources have timed out!");
+          signalDynamicIdle();
+        }
+
+        @Override
+        public void allResourcesIdle() {
+          signalDynamicIdle();
+        }
+
+        private void signalDynamicIdle() {
+          int myGeneration = dynamicIdleGeneration;
+          dynamicIdleGeneration = NOT_REGISTERED;
+          if (myGeneration != NOT_REGISTERED) {
+            controllerHandler.sendMessage(
+                IdleCondition.DYNAMIC_TASKS_HAVE_IDLED.createSignal(
+                    controllerHandler, myGeneration));
+          }
+        }
+      };
+  private final MainThreadInterrogation mainThreadInterrogation;
 
   @VisibleForTesting
-  @Inject
   UiControllerImpl(
       EventInjector eventInjector,
       @SdkAsyncTask IdleNotifier<Runnable> asyncIdle,
@@ -168,13 +230,44 @@ final class UiControllerImpl
       Provider<IdleNotifier<IdleNotificationCallback>> dynamicIdle,
       Looper mainLooper,
       IdlingResourceRegistry idlingResourceRegistry) {
+    this(
+        eventInjector,
+        asyncIdle,
+        compatIdle,
+        dynamicIdle,
+        mainLooper,
+        idlingResourceRegistry,
+        MainLooperIdleDetection.REFLECTIVE,
+        IdleWaitStats.getInstance(),
+        Tracing.getInstance(),
+        new MotionEventInjectionScheduler(eventInjector));
+  }
+
+  @VisibleForTesting
+  @Inject
+  UiControllerImpl(
+      EventInjector eventInjector,
+      @SdkAsyncTask IdleNotifier<Runnable> asyncIdle,
+      @CompatAsyncTask IdleNotifier<Runnable> compatIdle,
+      Provider<IdleNotifier<IdleNotificationCallback>> dynamicIdle,
+      Looper mainLooper,
+      IdlingResourceRegistry idlingResourceRegistry,
+      MainLooperIdleDetection idleDetection,
+      IdleWaitStats idleWaitStats,
+      Tracing tracer,
+      MotionEventInjectionScheduler motionEventScheduler) {
     this.eventInjector = checkNotNull(eventInjector);
     this.asyncIdle = checkNotNull(asyncIdle);
     this.compatIdle = checkNotNull(compatIdle);
     this.conditionSet = IdleCondition.createConditionSet();
+    this.mainThreadInterrogation = new MainThreadInterrogation(conditionSet);
     this.dynamicIdleProvider = checkNotNull(dynamicIdle);
     this.mainLooper = checkNotNull(mainLooper);
     this.idlingResourceRegistry = checkNotNull(idlingResourceRegistry);
+    this.idleDetection = checkNotNull(idleDetection);
+    this.idleWaitStats = checkNotNull(idleWaitStats);
+    this.tracer = checkNotNull(tracer);
+    this.motionEventScheduler = checkNotNull(motionEventScheduler);
     controllerHandler = new Handler(mainLooper, this);
   }
 
@@ -259,39 +352,16 @@ final class UiControllerImpl
     checkNotNull(events);
     checkState(!Iterables.isEmpty(events), "Expecting non-empty events to inject");
     checkState(Looper.myLooper() == mainLooper, "Expecting to be on main thread!");
-    final Iterator<MotionEvent> mei = events.iterator();
-    final long downTime = Iterables.getFirst(events, null).getEventTime();
-    final long shift = SystemClock.uptimeMillis() - downTime;
-    FutureTask<Boolean> injectTask =
-        new SignalingTask<>(
-            new Callable<Boolean>() {
-              @Override
-              public Boolean call() throws Exception {
-                boolean success = true;
-                while (mei.hasNext()) {
-                  MotionEvent me = mei.next();
-                  long desiredTime = me.getEventTime() + shift;
-                  long timeUntilDesired = desiredTime - SystemClock.uptimeMillis();
-                  if (timeUntilDesired > 10) {
-                    // This must NOT run in main thread, so it's fine to sleep
-                    SystemClock.sleep(timeUntilDesired);
-                  }
-                  if (mei.hasNext()) {
-                    success &= eventInjector.injectMotionEventAsync(me);
-                  } else {
-                    success &= eventInjector.injectMotionEvent(me);
-                  }
-                }
-                return success;
-              }
-            },
-            IdleCondition.MOTION_INJECTION_HAS_COMPLETED,
-            generation);
-    Future<?> possiblyIgnoredError = keyEventExecutor.submit(injectTask);
+    ListenableFuture<Boolean> injectFuture =
+        motionEventScheduler.schedule(Lists.newArrayList(events));
+    injectFuture.addListener(
+        new SignalingTask<Void>(NO_OP, IdleCondition.MOTION_INJECTION_HAS_COMPLETED, generation),
+        MoreExecutors.directExecutor());
     loopUntil(IdleCondition.MOTION_INJECTION_HAS_COMPLETED, dynamicIdleProvider.get());
     try {
-      checkState(injectTask.isDone(), "MotionEvents injection was signaled - but it wasnt done.");
-      return injectTask.get();
+      checkState(
+          injectFuture.isDone(), "MotionEvents injection was signaled - but it wasnt done.");
+      return injectFuture.get();
     } catch (ExecutionException ee) {
       if (ee.getCause() instanceof InjectEventSecurityException) {
         throw (InjectEventSecurityException) ee.getCause();
@@ -319,7 +389,82 @@ final class UiControllerImpl
       return true;
     }
 
-    boolean eventInjected = false;
+    KeyEvent[] events = getKeyEvents(str);
+    Log.d(TAG, String.format(Locale.ROOT, "Injecting string: \"%s\"", str));
+    return injectKeyEventsOneByOne(events, 0);
+  }
+
+  @Override
+  public boolean injectStringInBulk(String str) throws InjectEventSecurityException {
+    checkNotNull(str);
+    checkState(Looper.myLooper() == mainLooper, "Expecting to be on main thread!");
+
+    // No-op if string is empty.
+    if (str.isEmpty()) {
+      Log.w(TAG, "Supplied string is empty resulting in no-op (nothing is typed).");
+      return true;
+    }
+
+    final KeyEvent[] events = getKeyEvents(str);
+    Log.d(TAG, String.format(Locale.ROOT, "Injecting string in bulk: \"%s\"", str));
+    loopMainThreadUntilIdle();
+
+    // Injects the events back to back and returns the index of the first dropped one.
+    FutureTask<Integer> injectTask =
+        new SignalingTask<Integer>(
+            new Callable<Integer>() {
+              @Override
+              public Integer call() throws Exception {
+                for (int i = 0; i < events.length; i++) {
+                  // Key events that are too old are rejected, see injectKeyEventsOneByOne.
+                  KeyEvent event =
+                      KeyEvent.changeTimeRepeat(events[i], SystemClock.uptimeMillis(), 0);
+                  if (!eventInjector.injectKeyEvent(event)) {
+                    return i;
+                  }
+                }
+                return events.length;
+              }
+            },
+            IdleCondition.KEY_INJECT_HAS_COMPLETED,
+            generation);
+
+    @SuppressWarnings("unused") // go/futurereturn-lsc
+    Future<?> possiblyIgnoredError = keyEventExecutor.submit(injectTask);
+
+    loopUntil(IdleCondition.KEY_INJECT_HAS_COMPLETED, dynamicIdleProvider.get());
+
+    int injected;
+    try {
+      checkState(injectTask.isDone(), "Key injection was signaled - but it wasnt done.");
+      injected = injectTask.get();
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof InjectEventSecurityException) {
+        throw (InjectEventSecurityException) ee.getCause();
+      } else {
+        throw new RuntimeException(ee.getCause());
+      }
+    } catch (InterruptedException neverHappens) {
+      // we only call get() after done() is signaled.
+      // we should never block.
+      throw new RuntimeException("impossible.", neverHappens);
+    }
+
+    if (injected < events.length) {
+      Log.w(
+          TAG,
+          String.format(
+              Locale.ROOT,
+              "Key event %d of %d was dropped, typing the rest of the string key by key.",
+              injected + 1,
+              events.length));
+      return injectKeyEventsOneByOne(events, injected);
+    }
+    loopMainThreadUntilIdle();
+    return true;
+  }
+
+  private KeyEvent[] getKeyEvents(String str) {
     KeyCharacterMap keyCharacterMap = getKeyCharacterMap();
 
     // TODO(b/80130875): Investigate why not use (as suggested in javadoc of
@@ -336,10 +481,14 @@ final class UiControllerImpl
                   + " replaceText action to set the text directly in the EditText field.",
               str));
     }
+    return events;
+  }
 
-    Log.d(TAG, String.format(Locale.ROOT, "Injecting string: \"%s\"", str));
-
-    for (KeyEvent event : events) {
+  private boolean injectKeyEventsOneByOne(KeyEvent[] events, int from)
+      throws InjectEventSecurityException {
+    boolean eventInjected = false;
+    for (int i = from; i < events.length; i++) {
+      KeyEvent event = events[i];
       checkNotNull(
           event,
           String.format(
@@ -400,43 +549,27 @@ final class UiControllerImpl
     checkState(Looper.myLooper() == mainLooper, "Expecting to be on main thread!");
     IdleNotifier<IdleNotificationCallback> dynamicIdle = dynamicIdleProvider.get();
     do {
-      EnumSet<IdleCondition> condChecks = EnumSet.noneOf(IdleCondition.class);
+      // This loop runs for every interaction, so it avoids allocating anything when the app is idle
+      // or only waits on idling resources: the condition set and the dynamic callback are reused.
+      // Busy task pools get a signal bound to the current generation, as they may run it from a
+      // pool thread after the callback was cancelled.
+      EnumSet<IdleCondition> condChecks = idleConditionChecks;
+      condChecks.clear();
       if (!asyncIdle.isIdleNow()) {
         asyncIdle.registerNotificationCallback(
-            new SignalingTask<Void>(NO_OP, IdleCondition.ASYNC_TASKS_HAVE_IDLED, generation));
-
+            new IdleSignal(IdleCondition.ASYNC_TASKS_HAVE_IDLED, generation));
         condChecks.add(IdleCondition.ASYNC_TASKS_HAVE_IDLED);
       }
 
       if (!compatIdle.isIdleNow()) {
         compatIdle.registerNotificationCallback(
-            new SignalingTask<Void>(NO_OP, IdleCondition.COMPAT_TASKS_HAVE_IDLED, generation));
+            new IdleSignal(IdleCondition.COMPAT_TASKS_HAVE_IDLED, generation));
         condChecks.add(IdleCondition.COMPAT_TASKS_HAVE_IDLED);
       }
 
       if (!dynamicIdle.isIdleNow()) {
-        final IdlingPolicy warning = IdlingPolicies.getDynamicIdlingResourceWarningPolicy();
-        final IdlingPolicy error = IdlingPolicies.getDynamicIdlingResourceErrorPolicy();
-        final SignalingTask<Void> idleSignal =
-            new SignalingTask<Void>(NO_OP, IdleCondition.DYNAMIC_TASKS_HAVE_IDLED, generation);
-        dynamicIdle.registerNotificationCallback(
-            new IdleNotificationCallback() {
-              @Override
-              public void resourcesStillBusyWarning(List<String> busyResourceNames) {
-                warning.handleTimeout(busyResourceNames, "IdlingResources are still busy!");
-              }
-
-              @Override
-              public void resourcesHaveTimedOut(List<String> busyResourceNames) {
-                error.handleTimeout(busyResourceNames, "IdlingResources have timed out!");
-                controllerHandler.post(idleSignal);
-              }
-
-              @Override
-              public void allResourcesIdle() {
-                controllerHandler.post(idleSignal);
-              }
-            });
+        dynamicIdleGeneration = generation;
+        dynamicIdle.registerNotificationCallback(dynamicIdleCallback);
         condChecks.add(IdleCondition.DYNAMIC_TASKS_HAVE_IDLED);
       }
 
@@ -446,6 +579,7 @@ final class UiControllerImpl
         asyncIdle.cancelCallback();
         compatIdle.cancelCallback();
         dynamicIdle.cancelCallback();
+        dynamicIdleGeneration = NOT_REGISTERED;
       }
     } while (!asyncIdle.isIdleNow() || !compatIdle.isIdleNow() || !dynamicIdle.isIdleNow());
   }
@@ -464,19 +598,109 @@ final class UiControllerImpl
     loopMainThreadUntilIdle();
   }
 
+  @Override
+  public void loopMainThreadUntilWokenUp(long millisDelay) {
+    checkState(Looper.myLooper() == mainLooper, "Expecting to be on main thread!");
+    checkState(!IdleCondition.DELAY_HAS_PAST.isSignaled(conditionSet), "recursion detected!");
+    checkArgument(millisDelay > 0);
+
+    controllerHandler.postAtTime(
+        new SignalingTask<>(NO_OP, IdleCondition.DELAY_HAS_PAST, generation),
+        wakeUpToken,
+        SystemClock.uptimeMillis() + millisDelay);
+    awaitingWakeUp = true;
+    try {
+      loopUntil(IdleCondition.DELAY_HAS_PAST, dynamicIdleProvider.get());
+    } finally {
+      awaitingWakeUp = false;
+      controllerHandler.removeCallbacksAndMessages(wakeUpToken);
+    }
+    loopMainThreadUntilIdle();
+  }
+
+  @Override
+  public void wakeUp() {
+    checkState(Looper.myLooper() == mainLooper, "Expecting to be on main thread!");
+    if (awaitingWakeUp) {
+      // Signals the delay of the current generation as passed, at most once per wait.
+      awaitingWakeUp = false;
+      controllerHandler.sendMessage(
+          IdleCondition.DELAY_HAS_PAST.createSignal(controllerHandler, generation));
+    }
+  }
+
   @Override
   public boolean handleMessage(Message msg) {
     if (!IdleCondition.handleMessage(msg, conditionSet, generation)) {
       Log.i(TAG, "Unknown message type: " + msg);
       return false;
     } else {
+      if (msg.arg1 == generation) {
+        onConditionSignaled(msg.what);
+      }
       return true;
     }
   }
 
+  private void onConditionSignaled(int ordinal) {
+    conditionSignaledAtMs[ordinal] = SystemClock.uptimeMillis();
+    conditionSignaledAtIteration[ordinal] = interrogation != null ? interrogation.execCount : 0;
+    if (conditionSpans[ordinal] != null) {
+      conditionSpans[ordinal].close();
+      conditionSpans[ordinal] = null;
+    }
+  }
+
+  /**
+   * Starts a tracing span for each of the given conditions. The spans are closed as soon as the
+   * condition is signaled, or at the latest when {@link #loopUntil} returns.
+   */
+  @SuppressWarnings("MustBeClosedChecker")
+  private void beginConditionSpans(EnumSet<IdleCondition> conditions) {
+    for (IdleCondition condition : IdleCondition.VALUES) {
+      if (conditions.contains(condition)) {
+        conditionSpans[condition.ordinal()] = tracer.beginSpan(condition.spanName);
+      }
+    }
+  }
+
+  /**
+   * Records how long and for how many main looper iterations each of the given conditions was
+   * waited on, followed by the time spent on draining the main looper after the last of them was
+   * signaled.
+   */
+  private void recordIdleWaits(
+      EnumSet<IdleCondition> conditions, long startMs, long endMs, int iterations) {
+    long lastSignaledAtMs = startMs;
+    int lastSignaledAtIteration = 0;
+    for (IdleCondition condition : IdleCondition.VALUES) {
+      if (!conditions.contains(condition)) {
+        continue;
+      }
+      int ordinal = condition.ordinal();
+      if (conditionSpans[ordinal] != null) {
+        conditionSpans[ordinal].close();
+        conditionSpans[ordinal] = null;
+      }
+      long signaledAtMs = endMs;
+      int signaledAtIteration = iterations;
+      if (condition.isSignaled(conditionSet)) {
+        signaledAtMs = Math.max(startMs, conditionSignaledAtMs[ordinal]);
+        signaledAtIteration = conditionSignaledAtIteration[ordinal];
+      }
+      idleWaitStats.record(condition.name(), signaledAtMs - startMs, signaledAtIteration);
+      lastSignaledAtMs = Math.max(lastSignaledAtMs, signaledAtMs);
+      lastSignaledAtIteration = Math.max(lastSignaledAtIteration, signaledAtIteration);
+    }
+    idleWaitStats.record(
+        IdleWaitStats.MAIN_LOOPER_HAS_IDLED,
+        endMs - lastSignaledAtMs,
+        iterations - lastSignaledAtIteration);
+  }
+
   private void loopUntil(
       IdleCondition condition, IdleNotifier<IdleNotificationCallback> dynamicIdle) {
-    loopUntil(EnumSet.of(condition), dynamicIdle);
+    loopUntil(singleConditions[condition.ordinal()], dynamicIdle);
   }
 
   /**
@@ -512,13 +736,15 @@ final class UiControllerImpl
       EnumSet<IdleCondition> conditions, IdleNotifier<IdleNotificationCallback> dynamicIdle) {
     IdlingPolicy masterIdlePolicy = IdlingPolicies.getMasterIdlingPolicy();
     IdlingPolicy dynamicIdlePolicy = IdlingPolicies.getDynamicIdlingResourceErrorPolicy();
+    long start = SystemClock.uptimeMillis();
     try {
-      long start = SystemClock.uptimeMillis();
       long end =
           start + masterIdlePolicy.getIdleTimeoutUnit().toMillis(masterIdlePolicy.getIdleTimeout());
-      interrogation = new MainThreadInterrogation(conditions, conditionSet, end);
+      interrogation = mainThreadInterrogation;
+      interrogation.reset(conditions, end);
+      beginConditionSpans(conditions);
 
-      InterrogationStatus result = Interrogator.loopAndInterrogate(interrogation);
+      InterrogationStatus result = idleDetection.loopAndInterrogate(interrogation);
       if (InterrogationStatus.COMPLETED == result) {
         // did not time out, all conditions happy.
         return dynamicIdle;
@@ -587,9 +813,16 @@ final class UiControllerImpl
               masterIdlePolicy.getIdleTimeout(),
               masterIdlePolicy.getIdleTimeoutUnit().name()));
     } finally {
+      recordIdleWaits(
+          conditions,
+          start,
+          SystemClock.uptimeMillis(),
+          interrogation != null ? interrogation.execCount : 0);
       generation++;
-      for (IdleCondition condition : conditions) {
-        condition.reset(conditionSet);
+      for (IdleCondition condition : IdleCondition.VALUES) {
+        if (conditions.contains(condition)) {
+          condition.reset(conditionSet);
+        }
       }
       interrogation = null;
     }
@@ -610,39 +843,70 @@ final class UiControllerImpl
         });
   }
 
+  /**
+   * Decides when to stop looping the main thread. A single instance is {@link #reset} and reused
+   * for every {@link #loopUntil} call.
+   */
   private static final class MainThreadInterrogation
       implements Interrogator.InterrogationHandler<InterrogationStatus> {
-    private final EnumSet<IdleCondition> conditions;
     private final BitSet conditionSet;
-    private final long giveUpAtMs;
-    private String lastMessage;
+    private EnumSet<IdleCondition> conditions;
+    private long giveUpAtMs;
+
+    // Parts of the last dispatched message. The message itself is recycled after dispatch and is
+    // only described when a timeout needs to be reported, to avoid a toString() per message.
+    private boolean hasLastMessage;
+    private long lastMessageWhen;
+    private int lastMessageWhat;
+    private Handler lastMessageTarget;
+    private Runnable lastMessageCallback;
 
     private InterrogationStatus status = InterrogationStatus.COMPLETED;
     private int execCount = 0;
 
-    MainThreadInterrogation(
-        EnumSet<IdleCondition> conditions, BitSet conditionSet, long giveUpAtMs) {
-      this.conditions = conditions;
+    MainThreadInterrogation(BitSet conditionSet) {
       this.conditionSet = conditionSet;
+    }
+
+    void reset(EnumSet<IdleCondition> conditions, long giveUpAtMs) {
+      this.conditions = conditions;
       this.giveUpAtMs = giveUpAtMs;
+      status = InterrogationStatus.COMPLETED;
+      execCount = 0;
+      hasLastMessage = false;
+      lastMessageTarget = null;
+      lastMessageCallback = null;
     }
 
     @Override
     public void setMessage(Message m) {
+      hasLastMessage = true;
+      lastMessageWhen = m.getWhen();
+      lastMessageWhat = m.what;
+      lastMessageTarget = m.getTarget();
+      lastMessageCallback = m.getCallback();
+    }
+
+    @Override
+    public String getMessage() {
+      if (!hasLastMessage) {
+        return null;
+      }
       try {
-        lastMessage = m.toString();
+        return String.format(
+            Locale.ROOT,
+            "{ when=%d what=%d target=%s callback=%s }",
+            lastMessageWhen,
+            lastMessageWhat,
+            lastMessageTarget,
+            lastMessageCallback);
       } catch (NullPointerException npe) {
         // toString can fail with an NPE on getClass()
         // This field is just for diagnosing Espresso test failures; suppress the error.
-        lastMessage = "NPE calling message toString(): " + npe;
+        return "NPE calling message toString(): " + npe;
       }
     }
 
-    @Override
-    public String getMessage() {
-      return lastMessage;
-    }
-
     @Override
     public void quitting() {
       /* can not happen  */
@@ -706,8 +970,8 @@ final class UiControllerImpl
       }
       boolean conditionsMet = true;
       boolean shouldLogConditionState = execCount > 0 && execCount % 100 == 0;
-      for (IdleCondition condition : conditions) {
-        if (!condition.isSignaled(conditionSet)) {
+      for (IdleCondition condition : IdleCondition.VALUES) {
+        if (conditions.contains(condition) && !condition.isSignaled(conditionSet)) {
           conditionsMet = false;
           if (shouldLogConditionState) {
             Log.w(TAG, "Waiting for: " + condition.name() + " for " + execCount + " iterations.");
@@ -720,6 +984,35 @@ final class UiControllerImpl
     }
   }
 
+  @SuppressWarnings("unchecked") // generic array creation
+  private static EnumSet<IdleCondition>[] createSingleConditionSets() {
+    EnumSet<IdleCondition>[] sets = new EnumSet[IdleCondition.values().length];
+    for (IdleCondition condition : IdleCondition.values()) {
+      sets[condition.ordinal()] = EnumSet.of(condition);
+    }
+    return sets;
+  }
+
+  /**
+   * A {@link Runnable} that posts a signal message for the generation it was registered in. Signals
+   * for earlier generations are ignored by {@link IdleCondition#handleMessage}.
+   */
+  private final class IdleSignal implements Runnable {
+    private final IdleCondition condition;
+    private final int generation;
+
+    IdleSignal(IdleCondition condition, int generation) {
+      this.condition = checkNotNull(condition);
+      this.generation = generation;
+    }
+
+    @Override
+    public void run() {
+      // may be called from any thread.
+      controllerHandler.sendMessage(condition.createSignal(controllerHandler, generation));
+    }
+  }
+
   /**
    * Encapsulates posting a signal message to update the conditions set after a task has executed.
    */
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.view.View;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import androidx.test.espresso.ViewFinder;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.hamcrest.Matcher;
+
+/**
+ * Creates {@link ViewFinder}s for view matchers that aren't known when the Espresso graph is built.
+ *
+ * @hide
+ */
+@RestrictTo(Scope.LIBRARY)
+public class ViewFinderFactory {
+  private final ViewHierarchyIndex hierarchyIndex;
+  private final ViewMatcherProfiler profiler;
+
+  @Inject
+  ViewFinderFactory(ViewHierarchyIndex hierarchyIndex, ViewMatcherProfiler profiler) {
+    this.hierarchyIndex = checkNotNull(hierarchyIndex);
+    this.profiler = checkNotNull(profiler);
+  }
+
+  /** Returns a {@link ViewFinder} for the views matching viewMatcher below the provided root. */
+  public ViewFinder create(Matcher<View> viewMatcher, Provider<View> rootViewProvider) {
+    return new ViewFinderImpl(
+        checkNotNull(viewMatcher), checkNotNull(rootViewProvider), hierarchyIndex, profiler);
+  }
+}
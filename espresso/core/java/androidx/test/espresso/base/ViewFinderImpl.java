@@ -23,16 +23,17 @@ import static androidx.test.internal.util.Checks.checkState;
 import android.os.Looper;
 import android.view.View;
 import android.widget.AdapterView;
+import androidx.annotation.Nullable;
 import androidx.test.espresso.AmbiguousViewMatcherException;
 import androidx.test.espresso.NoMatchingViewException;
 import androidx.test.espresso.ViewFinder;
+import androidx.test.espresso.base.ViewMatcherProfiler.LookupProfile;
+import androidx.test.espresso.matcher.MatcherMemo;
 import androidx.test.espresso.matcher.ViewMatchers;
+import androidx.test.espresso.util.TreeIterables.ViewVisitor;
 import com.google.common.base.Joiner;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import javax.inject.Inject;
@@ -40,51 +41,81 @@ import javax.inject.Provider;
 import org.hamcrest.Matcher;
 
 /** Implementation of {@link ViewFinder}. */
-// TODO: in the future we may want to collect stats here about the size of the view
-// hierarchy, average matcher execution time, warn when matchers take too long to execute, etc.
 public final class ViewFinderImpl implements ViewFinder {
 
   private final Matcher<View> viewMatcher;
   private final Provider<View> rootViewProvider;
+  private final ViewHierarchyIndex hierarchyIndex;
+  private final ViewMatcherProfiler profiler;
 
   @Inject
-  ViewFinderImpl(Matcher<View> viewMatcher, Provider<View> rootViewProvider) {
+  ViewFinderImpl(
+      Matcher<View> viewMatcher,
+      Provider<View> rootViewProvider,
+      ViewHierarchyIndex hierarchyIndex,
+      ViewMatcherProfiler profiler) {
     this.viewMatcher = viewMatcher;
     this.rootViewProvider = rootViewProvider;
+    this.hierarchyIndex = checkNotNull(hierarchyIndex);
+    this.profiler = checkNotNull(profiler);
+  }
+
+  ViewFinderImpl(Matcher<View> viewMatcher, Provider<View> rootViewProvider) {
+    this(
+        viewMatcher,
+        rootViewProvider,
+        new ViewHierarchyIndex(false),
+        ViewMatcherProfiler.getInstance());
   }
 
   @Override
   public View getView() throws AmbiguousViewMatcherException, NoMatchingViewException {
     checkMainThread();
-    final Predicate<View> matcherPredicate =
-        new MatcherPredicateAdapter<View>(checkNotNull(viewMatcher));
+    boolean memoizing = MatcherMemo.start();
+    try {
+      return findView();
+    } finally {
+      if (memoizing) {
+        MatcherMemo.stop();
+      }
+    }
+  }
 
-    View root = rootViewProvider.get();
-    Iterator<View> matchedViewIterator =
-        Iterables.filter(breadthFirstViewTraversal(root), matcherPredicate).iterator();
+  private View findView() {
+    MatchingViews matchingViews = new MatchingViews(checkNotNull(viewMatcher));
 
-    View matchedView = null;
+    View root = rootViewProvider.get();
+    LookupProfile profile = profiler.startLookup(matchingViews.plan);
+    matchingViews.profile = profile;
+    boolean visitedAllViews = findMatchingViews(root, matchingViews);
+    if (profile != null) {
+      int hierarchySize =
+          visitedAllViews ? matchingViews.visitedCount : hierarchyIndex.getViewCount(root);
+      profiler.finishLookup(profile, viewMatcher, hierarchySize);
+    }
 
-    while (matchedViewIterator.hasNext()) {
-      if (matchedView != null) {
-        // Ambiguous!
-        throw new AmbiguousViewMatcherException.Builder()
-            .withViewMatcher(viewMatcher)
-            .withRootView(root)
-            .withView1(matchedView)
-            .withView2(matchedViewIterator.next())
-            .withOtherAmbiguousViews(Iterators.toArray(matchedViewIterator, View.class))
-            .build();
-      } else {
-        matchedView = matchedViewIterator.next();
-      }
+    View matchedView = matchingViews.first;
+    if (!matchingViews.others.isEmpty()) {
+      // Ambiguous!
+      List<View> others = matchingViews.others;
+      throw new AmbiguousViewMatcherException.Builder()
+          .withViewMatcher(viewMatcher)
+          .withRootView(root)
+          .withView1(matchedView)
+          .withView2(others.get(0))
+          .withOtherAmbiguousViews(others.subList(1, others.size()).toArray(new View[0]))
+          .build();
     }
     if (null == matchedView) {
-      final Predicate<View> adapterViewPredicate =
-          new MatcherPredicateAdapter<View>(ViewMatchers.isAssignableFrom(AdapterView.class));
-      List<View> adapterViews =
-          Lists.newArrayList(
-              Iterables.filter(breadthFirstViewTraversal(root), adapterViewPredicate).iterator());
+      List<View> adapterViews;
+      if (visitedAllViews) {
+        adapterViews = matchingViews.adapterViews;
+      } else {
+        MatchingViews matchingAdapterViews =
+            new MatchingViews(ViewMatchers.isAssignableFrom(AdapterView.class));
+        findMatchingViews(root, matchingAdapterViews);
+        adapterViews = matchingAdapterViews.toList();
+      }
       if (adapterViews.isEmpty()) {
         throw new NoMatchingViewException.Builder()
             .withViewMatcher(viewMatcher)
@@ -110,6 +141,23 @@ public final class ViewFinderImpl implements ViewFinder {
     }
   }
 
+  /**
+   * Collects the views under root matching the matcher of matchingViews.
+   *
+   * @return whether every view was visited rather than only candidates from the index
+   */
+  private boolean findMatchingViews(View root, MatchingViews matchingViews) {
+    List<View> candidates = hierarchyIndex.getCandidates(root, matchingViews.matcher);
+    if (candidates == null) {
+      breadthFirstViewTraversal(root, matchingViews);
+      return true;
+    }
+    for (int i = 0; i < candidates.size(); i++) {
+      matchingViews.visit(candidates.get(i));
+    }
+    return false;
+  }
+
   private void checkMainThread() {
     checkState(
         Thread.currentThread().equals(Looper.getMainLooper().getThread()),
@@ -117,16 +165,53 @@ public final class ViewFinderImpl implements ViewFinder {
         Thread.currentThread().getName());
   }
 
-  private static class MatcherPredicateAdapter<T> implements Predicate<T> {
-    private final Matcher<? super T> matcher;
+  /**
+   * Collects the views matching a matcher, allocating only once there is more than one. Also
+   * collects the visited AdapterViews, to hint at {@code onData} when no view matches.
+   */
+  private static final class MatchingViews implements ViewVisitor {
+    private final Matcher<? super View> matcher;
+    private final Matcher<? super View> plan;
+    @Nullable private LookupProfile profile;
+    private View first;
+    private List<View> others = Collections.emptyList();
+    private List<View> adapterViews = Collections.emptyList();
+    private int visitedCount;
 
-    private MatcherPredicateAdapter(Matcher<? super T> matcher) {
+    private MatchingViews(Matcher<? super View> matcher) {
       this.matcher = checkNotNull(matcher);
+      this.plan = ViewMatcherPlanner.plan(matcher);
     }
 
     @Override
-    public boolean apply(T input) {
-      return matcher.matches(input);
+    public boolean visit(View view) {
+      visitedCount++;
+      if (view instanceof AdapterView) {
+        if (adapterViews.isEmpty()) {
+          adapterViews = new ArrayList<>();
+        }
+        adapterViews.add(view);
+      }
+      if (profile == null ? plan.matches(view) : profile.matches(view)) {
+        if (first == null) {
+          first = view;
+        } else {
+          if (others.isEmpty()) {
+            others = new ArrayList<>();
+          }
+          others.add(view);
+        }
+      }
+      return true;
+    }
+
+    List<View> toList() {
+      List<View> views = new ArrayList<>(others.size() + 1);
+      if (first != null) {
+        views.add(first);
+        views.addAll(others);
+      }
+      return views;
     }
   }
 }
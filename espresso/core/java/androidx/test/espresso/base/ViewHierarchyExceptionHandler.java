@@ -26,8 +26,10 @@ import androidx.test.espresso.base.DefaultFailureHandler.TypedFailureHandler;
 import androidx.test.espresso.util.HumanReadables;
 import androidx.test.platform.io.PlatformTestStorage;
 import androidx.test.services.storage.TestStorageException;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.hamcrest.Matcher;
 
@@ -73,6 +75,9 @@ class ViewHierarchyExceptionHandler<T extends Throwable & RootViewException>
 
     // Truncate exception message to fit within a printable stack frame dump.
     Throwable error = truncater.truncateExceptionMessage(exception, msgLen, viewHierarchyFile);
+    // The message is rendered lazily. This is the exception the test sees, render it now so that it
+    // shows the same hierarchy as the dumped file rather than whatever is left after teardown.
+    error.getMessage();
 
     throwIfUnchecked(error);
     throw new RuntimeException(error);
@@ -94,16 +99,17 @@ class ViewHierarchyExceptionHandler<T extends Throwable & RootViewException>
 
   @Nullable
   private String dumpFullViewHierarchyToFile(T error) {
-    String viewHierarchyMsg =
-        HumanReadables.getViewHierarchyErrorMessage(
-            error.getRootView(),
-            /* problemViews= */ null,
-            /* errorHeader= */ "",
-            /* problemViewSuffix= */ null);
-
     String viewHierarchyFile = "view-hierarchy-" + failureCount + ".txt";
-    try {
-      addOutputFile(viewHierarchyFile, viewHierarchyMsg);
+    // Streamed view by view, the full hierarchy of a large screen can take megabytes.
+    try (Writer out =
+        new BufferedWriter(
+            new OutputStreamWriter(testStorage.openOutputFile(viewHierarchyFile), "UTF-8"))) {
+      HumanReadables.writeViewHierarchyErrorMessage(
+          out,
+          error.getRootView(),
+          /* problemViews= */ null,
+          /* errorHeader= */ "",
+          /* problemViewSuffix= */ null);
       Log.w(
           TAG,
           "The complete view hierarchy is available in artifact file '" + viewHierarchyFile + "'.");
@@ -114,10 +120,4 @@ class ViewHierarchyExceptionHandler<T extends Throwable & RootViewException>
       return null;
     }
   }
-
-  private void addOutputFile(String filename, String content) throws IOException {
-    try (OutputStream out = testStorage.openOutputFile(filename)) {
-      out.write(content.getBytes());
-    }
-  }
 }
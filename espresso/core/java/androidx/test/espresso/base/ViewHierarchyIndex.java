@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.espresso.util.TreeIterables.breadthFirstViewTraversal;
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.os.Build;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
+import androidx.annotation.Nullable;
+import androidx.test.espresso.matcher.ViewMatcherIntrospection;
+import androidx.test.espresso.util.TreeIterables.ViewVisitor;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.hamcrest.Matcher;
+
+/**
+ * An index of the views of each root by id, class and text, which is kept until the hierarchy is
+ * laid out or drawn again.
+ *
+ * <p>Lookups on a stable screen, e.g. a check following another check, can then match only the
+ * views that may match instead of traversing the whole hierarchy. The matcher still has to be
+ * verified against each returned candidate.
+ *
+ * <p>The index is opt-in with the {@code espresso_view_hierarchy_index} instrumentation argument,
+ * e.g. {@code -e espresso_view_hierarchy_index true}. Changes to the hierarchy which neither lay
+ * it out nor draw it, e.g. of views in a window that is not visible, are not noticed.
+ *
+ * <p>All methods must be invoked on the main thread.
+ */
+final class ViewHierarchyIndex {
+
+  /** Name of the instrumentation argument that enables the index. */
+  static final String VIEW_HIERARCHY_INDEX_ARG = "espresso_view_hierarchy_index";
+
+  private final boolean enabled;
+  // Snapshots reference their root, they are only kept alive by the listeners they register on the
+  // view tree observer of their root so that neither leaks once the hierarchy is gone.
+  private final Map<View, WeakReference<Snapshot>> snapshots = new WeakHashMap<>();
+
+  ViewHierarchyIndex(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns the views of the hierarchy of the given root that may match the given matcher, in
+   * breadth first order, or null if the index is disabled.
+   */
+  @Nullable
+  List<View> getCandidates(View root, Matcher<?> matcher) {
+    checkNotNull(root);
+    checkNotNull(matcher);
+    if (!enabled) {
+      return null;
+    }
+    WeakReference<Snapshot> snapshotRef = snapshots.get(root);
+    Snapshot snapshot = snapshotRef == null ? null : snapshotRef.get();
+    if (snapshot == null) {
+      snapshot = new Snapshot(root);
+      snapshots.put(root, new WeakReference<>(snapshot));
+    }
+    snapshot.update();
+    return snapshot.getCandidates(matcher);
+  }
+
+  /**
+   * Returns the number of views in the hierarchy of the given root as of the last {@link
+   * #getCandidates} call for it, or 0 if there was none.
+   */
+  int getViewCount(View root) {
+    WeakReference<Snapshot> snapshotRef = snapshots.get(root);
+    Snapshot snapshot = snapshotRef == null ? null : snapshotRef.get();
+    return snapshot == null ? 0 : snapshot.views.size();
+  }
+
+  /** The views of one root, rebuilt after the hierarchy was laid out or drawn. */
+  private static final class Snapshot
+      implements ViewVisitor, ViewTreeObserver.OnGlobalLayoutListener {
+    private final View root;
+    private final List<View> views = new ArrayList<>();
+    private final Map<Integer, List<View>> viewsById = new HashMap<>();
+    private final Map<Class<?>, List<View>> viewsByClass = new HashMap<>();
+    private final Map<String, List<View>> textViewsByText = new HashMap<>();
+    // Those may match by their transformed text, which is not indexed.
+    private final List<View> transformingTextViews = new ArrayList<>();
+    @Nullable private final Object drawListener;
+    private ViewTreeObserver observer;
+    private boolean valid;
+
+    Snapshot(View root) {
+      this.root = root;
+      this.drawListener = Build.VERSION.SDK_INT >= 16 ? new InvalidatingDrawListener(this) : null;
+    }
+
+    @Override
+    public void onGlobalLayout() {
+      valid = false;
+    }
+
+    void update() {
+      ViewTreeObserver currentObserver = root.getViewTreeObserver();
+      if (currentObserver != observer) {
+        // The observer of a view changes when it gets attached, the old one is no longer notified.
+        stopObserving();
+        observer = currentObserver;
+        // The listeners of a detached view's observer are merged into the new one on attach.
+        removeListeners(observer);
+        observer.addOnGlobalLayoutListener(this);
+        if (drawListener != null) {
+          observer.addOnDrawListener((ViewTreeObserver.OnDrawListener) drawListener);
+        }
+        valid = false;
+      }
+      if (valid) {
+        return;
+      }
+      views.clear();
+      viewsById.clear();
+      viewsByClass.clear();
+      textViewsByText.clear();
+      transformingTextViews.clear();
+      breadthFirstViewTraversal(root, this);
+      valid = true;
+    }
+
+    private void stopObserving() {
+      if (observer != null && observer.isAlive()) {
+        removeListeners(observer);
+      }
+      observer = null;
+    }
+
+    @SuppressWarnings("deprecation") // removeOnGlobalLayoutListener requires API 16
+    private void removeListeners(ViewTreeObserver from) {
+      from.removeGlobalOnLayoutListener(this);
+      if (drawListener != null) {
+        from.removeOnDrawListener((ViewTreeObserver.OnDrawListener) drawListener);
+      }
+    }
+
+    @Override
+    public boolean visit(View view) {
+      views.add(view);
+      if (view.getId() != View.NO_ID) {
+        add(viewsById, view.getId(), view);
+      }
+      add(viewsByClass, view.getClass(), view);
+      if (view instanceof TextView) {
+        TextView textView = (TextView) view;
+        add(textViewsByText, String.valueOf(textView.getText()), view);
+        if (textView.getTransformationMethod() != null) {
+          transformingTextViews.add(view);
+        }
+      }
+      return true;
+    }
+
+    List<View> getCandidates(Matcher<?> matcher) {
+      Integer id = ViewMatcherIntrospection.getRequiredId(matcher);
+      if (id != null) {
+        return orEmpty(viewsById.get(id));
+      }
+      String text = ViewMatcherIntrospection.getRequiredText(matcher);
+      if (text != null && transformingTextViews.isEmpty()) {
+        return orEmpty(textViewsByText.get(text));
+      }
+      Class<?> clazz = ViewMatcherIntrospection.getRequiredClass(matcher);
+      if (clazz != null) {
+        return getAssignableTo(clazz);
+      }
+      return views;
+    }
+
+    private List<View> getAssignableTo(Class<?> clazz) {
+      List<View> assignable = Collections.emptyList();
+      int assignableClassCount = 0;
+      for (Map.Entry<Class<?>, List<View>> entry : viewsByClass.entrySet()) {
+        if (clazz.isAssignableFrom(entry.getKey())) {
+          assignable = entry.getValue();
+          assignableClassCount++;
+        }
+      }
+      if (assignableClassCount <= 1) {
+        return assignable;
+      }
+      // Views of several classes, keep them in traversal order.
+      assignable = new ArrayList<>();
+      for (View view : views) {
+        if (clazz.isAssignableFrom(view.getClass())) {
+          assignable.add(view);
+        }
+      }
+      return assignable;
+    }
+
+    private static <K> void add(Map<K, List<View>> index, K key, View view) {
+      List<View> indexed = index.get(key);
+      if (indexed == null) {
+        indexed = new ArrayList<>(1);
+        index.put(key, indexed);
+      }
+      indexed.add(view);
+    }
+
+    private static List<View> orEmpty(@Nullable List<View> views) {
+      return views == null ? Collections.<View>emptyList() : views;
+    }
+  }
+
+  /** Invalidates a snapshot whenever its hierarchy is drawn, only available on API 16+. */
+  private static final class InvalidatingDrawListener implements ViewTreeObserver.OnDrawListener {
+    private final Snapshot snapshot;
+
+    InvalidatingDrawListener(Snapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public void onDraw() {
+      snapshot.valid = false;
+    }
+  }
+}
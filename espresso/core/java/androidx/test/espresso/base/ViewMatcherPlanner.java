@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.espresso.matcher.ViewMatcherIntrospection.UNRANKED;
+import static androidx.test.espresso.matcher.ViewMatcherIntrospection.getConjuncts;
+import static androidx.test.espresso.matcher.ViewMatcherIntrospection.getEvaluationRank;
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.view.View;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+
+/**
+ * Plans the evaluation of view matchers that are conjunctions, so that cheap and selective
+ * conjuncts like {@code withId} reject views before expensive ones like {@code isDisplayed} run.
+ *
+ * <p>Nested {@code allOf} matchers are flattened. The conjuncts between two unranked conjuncts,
+ * see {@link androidx.test.espresso.matcher.ViewMatcherIntrospection#getEvaluationRank}, are
+ * ordered by rank. Unranked conjuncts, which may have side effects, keep their position and are
+ * evaluated on exactly the same views as with the original matcher.
+ *
+ * <p>A plan matches the same views as its matcher and describes itself and its mismatches like
+ * it.
+ */
+final class ViewMatcherPlanner {
+
+  private static final Comparator<Matcher<?>> BY_RANK =
+      (left, right) -> Integer.compare(getEvaluationRank(left), getEvaluationRank(right));
+
+  private ViewMatcherPlanner() {}
+
+  /** Returns a plan for the matcher, or the matcher itself if it is evaluated as planned. */
+  static Matcher<? super View> plan(Matcher<? super View> matcher) {
+    checkNotNull(matcher);
+    if (getConjuncts(matcher) == null) {
+      return matcher;
+    }
+    List<Matcher<?>> conjuncts = new ArrayList<>();
+    flatten(matcher, conjuncts);
+
+    List<Matcher<?>> ordered = new ArrayList<>(conjuncts.size());
+    int segmentStart = 0;
+    for (int i = 0; i <= conjuncts.size(); i++) {
+      if (i == conjuncts.size() || getEvaluationRank(conjuncts.get(i)) == UNRANKED) {
+        List<Matcher<?>> segment = new ArrayList<>(conjuncts.subList(segmentStart, i));
+        // A stable sort, equally ranked conjuncts keep their order.
+        Collections.sort(segment, BY_RANK);
+        ordered.addAll(segment);
+        if (i < conjuncts.size()) {
+          ordered.add(conjuncts.get(i));
+        }
+        segmentStart = i + 1;
+      }
+    }
+    if (ordered.equals(conjuncts)) {
+      return matcher;
+    }
+    return new PlannedConjunction(matcher, ordered);
+  }
+
+  /** Returns the conjuncts of a plan in the order they are evaluated. */
+  static List<Matcher<?>> getConjunctsInOrder(Matcher<? super View> plan) {
+    if (plan instanceof PlannedConjunction) {
+      return ((PlannedConjunction) plan).conjuncts;
+    }
+    List<Matcher<?>> conjuncts = new ArrayList<>();
+    flatten(plan, conjuncts);
+    return conjuncts;
+  }
+
+  private static void flatten(Matcher<?> matcher, List<Matcher<?>> conjuncts) {
+    Iterable<Matcher<?>> nested = getConjuncts(matcher);
+    if (nested == null) {
+      conjuncts.add(matcher);
+    } else {
+      for (Matcher<?> conjunct : nested) {
+        flatten(conjunct, conjuncts);
+      }
+    }
+  }
+
+  /** Evaluates the conjuncts of a matcher in planned order. */
+  static final class PlannedConjunction extends BaseMatcher<View> {
+    private final Matcher<? super View> matcher;
+    final List<Matcher<?>> conjuncts;
+
+    private PlannedConjunction(Matcher<? super View> matcher, List<Matcher<?>> conjuncts) {
+      this.matcher = matcher;
+      this.conjuncts = conjuncts;
+    }
+
+    @Override
+    public boolean matches(Object item) {
+      for (int i = 0; i < conjuncts.size(); i++) {
+        if (!conjuncts.get(i).matches(item)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void describeTo(Description description) {
+      matcher.describeTo(description);
+    }
+
+    @Override
+    public void describeMismatch(Object item, Description description) {
+      matcher.describeMismatch(item, description);
+    }
+  }
+}
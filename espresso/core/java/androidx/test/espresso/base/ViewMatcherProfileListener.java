@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import android.util.Log;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import androidx.test.platform.io.PlatformTestStorage;
+import androidx.test.platform.io.PlatformTestStorageRegistry;
+import java.io.PrintStream;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+
+/**
+ * A JUnit RunListener that profiles the view lookups of each test case, writes the statistics to a
+ * {@code view-matcher-profile-<class>#<method>.csv} test output file and logs the slowest
+ * matchers.
+ *
+ * <p>Enable by passing {@code -e listener androidx.test.espresso.base.ViewMatcherProfileListener}
+ * to the instrumentation. Matchers whose evaluations took {@code -e
+ * espresso_slow_matcher_threshold_ms <ms>} or longer in a test are logged, 100ms by default.
+ * Profiling is enabled for the duration of the test run only.
+ *
+ * @hide
+ */
+@RestrictTo(Scope.LIBRARY)
+public class ViewMatcherProfileListener extends PerTestCsvListener {
+  private static final String TAG = ViewMatcherProfileListener.class.getSimpleName();
+
+  static final String SLOW_MATCHER_THRESHOLD_ARG = "espresso_slow_matcher_threshold_ms";
+  private static final long DEFAULT_SLOW_MATCHER_THRESHOLD_MS = 100;
+  private static final int MAX_LOGGED_SLOW_MATCHERS = 5;
+
+  private final ViewMatcherProfiler profiler;
+  private final long slowMatcherThresholdMs;
+
+  public ViewMatcherProfileListener() {
+    this(ViewMatcherProfiler.getInstance(), PlatformTestStorageRegistry.getInstance());
+  }
+
+  ViewMatcherProfileListener(ViewMatcherProfiler profiler, PlatformTestStorage testStorage) {
+    super("view-matcher-profile", testStorage);
+    this.profiler = profiler;
+    this.slowMatcherThresholdMs = readSlowMatcherThresholdMs(testStorage);
+  }
+
+  private static long readSlowMatcherThresholdMs(PlatformTestStorage testStorage) {
+    try {
+      if (testStorage.getInputArgs().containsKey(SLOW_MATCHER_THRESHOLD_ARG)) {
+        return Long.parseLong(testStorage.getInputArg(SLOW_MATCHER_THRESHOLD_ARG));
+      }
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to read " + SLOW_MATCHER_THRESHOLD_ARG, e);
+    }
+    return DEFAULT_SLOW_MATCHER_THRESHOLD_MS;
+  }
+
+  @Override
+  public void testRunStarted(Description description) {
+    profiler.setEnabled(true);
+  }
+
+  @Override
+  public void testRunFinished(Result result) {
+    // The profiler is process wide, do not keep paying for it after the run.
+    profiler.setEnabled(false);
+    profiler.reset();
+  }
+
+  @Override
+  boolean isEmpty() {
+    return profiler.isEmpty();
+  }
+
+  @Override
+  void reset() {
+    profiler.reset();
+  }
+
+  @Override
+  void onTestFinished(String testName) {
+    for (String slowMatcher :
+        profiler.getSlowMatchers(slowMatcherThresholdMs, MAX_LOGGED_SLOW_MATCHERS)) {
+      Log.w(TAG, "Slow view matcher in " + testName + ": " + slowMatcher);
+    }
+  }
+
+  @Override
+  void writeTo(PrintStream out) {
+    profiler.writeTo(out);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.internal.util.Checks.checkNotNull;
+
+import android.view.View;
+import androidx.annotation.Nullable;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+
+/**
+ * Per-test statistics on view lookups: the size of the searched hierarchies, the number of views
+ * matched against, and how often and how long each view matcher was evaluated, keyed by matcher
+ * description.
+ *
+ * <p>Profiling is off unless enabled by {@link ViewMatcherProfileListener}, when off a lookup only
+ * pays for reading a volatile field. The collected data is written out by the listener.
+ */
+final class ViewMatcherProfiler {
+
+  private static final ViewMatcherProfiler instance = new ViewMatcherProfiler();
+
+  private volatile boolean enabled;
+
+  // By matcher description, the lookups done with that matcher.
+  private final Map<String, Stats> lookups = new LinkedHashMap<>();
+  // By matcher description, the evaluations of that matcher, including of conjuncts of lookups.
+  private final Map<String, Stats> matchers = new LinkedHashMap<>();
+
+  static ViewMatcherProfiler getInstance() {
+    return instance;
+  }
+
+  void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Starts profiling a lookup with the given planned matcher.
+   *
+   * @return the profile to evaluate the matcher with, or null if profiling is disabled
+   */
+  @Nullable
+  LookupProfile startLookup(Matcher<? super View> plan) {
+    return enabled ? new LookupProfile(ViewMatcherPlanner.getConjunctsInOrder(plan)) : null;
+  }
+
+  /**
+   * Records a finished lookup of the given matcher in a hierarchy of the given size. The size is
+   * counted by the lookup itself, so that profiling does not traverse the hierarchy again.
+   */
+  void finishLookup(LookupProfile profile, Matcher<?> matcher, int hierarchySize) {
+    long durationNs = System.nanoTime() - profile.startNs;
+    String[] conjunctDescriptions = new String[profile.conjuncts.size()];
+    for (int i = 0; i < conjunctDescriptions.length; i++) {
+      conjunctDescriptions[i] = StringDescription.toString(profile.conjuncts.get(i));
+    }
+    String description = StringDescription.toString(matcher);
+
+    synchronized (this) {
+      getOrCreate(lookups, description)
+          .record(1, durationNs, hierarchySize, profile.nodesVisited);
+      for (int i = 0; i < conjunctDescriptions.length; i++) {
+        getOrCreate(matchers, conjunctDescriptions[i])
+            .record(profile.invocations[i], profile.durationsNs[i], 0, 0);
+      }
+    }
+  }
+
+  synchronized boolean isEmpty() {
+    return lookups.isEmpty();
+  }
+
+  synchronized void reset() {
+    lookups.clear();
+    matchers.clear();
+  }
+
+  /**
+   * Returns descriptions of the matchers whose evaluations took at least the given total time,
+   * slowest first.
+   */
+  synchronized List<String> getSlowMatchers(long thresholdMs, int limit) {
+    List<Map.Entry<String, Stats>> slow = new ArrayList<>();
+    for (Map.Entry<String, Stats> entry : matchers.entrySet()) {
+      if (entry.getValue().totalNs >= thresholdMs * 1_000_000) {
+        slow.add(entry);
+      }
+    }
+    Collections.sort(
+        slow, (left, right) -> Long.compare(right.getValue().totalNs, left.getValue().totalNs));
+    List<String> descriptions = new ArrayList<>();
+    for (int i = 0; i < slow.size() && i < limit; i++) {
+      Stats stats = slow.get(i).getValue();
+      descriptions.add(
+          String.format(
+              Locale.ROOT,
+              "%dms in %d evaluations: %s",
+              stats.totalNs / 1_000_000,
+              stats.count,
+              slow.get(i).getKey()));
+    }
+    return descriptions;
+  }
+
+  /**
+   * Writes all statistics as comma separated values, one line per lookup matcher and one per
+   * evaluated matcher. The maximum duration is that of the slowest lookup.
+   */
+  synchronized void writeTo(PrintStream out) {
+    checkNotNull(out);
+    out.println("type,description,count,total_ns,max_ns,hierarchy_views,visited_views");
+    writeTo(out, "lookup", lookups);
+    writeTo(out, "matcher", matchers);
+  }
+
+  private static void writeTo(PrintStream out, String type, Map<String, Stats> statsByDescription) {
+    for (Map.Entry<String, Stats> entry : statsByDescription.entrySet()) {
+      Stats stats = entry.getValue();
+      out.println(
+          String.format(
+              Locale.ROOT,
+              "%s,%s,%d,%d,%d,%d,%d",
+              type,
+              entry.getKey().replace(',', ' ').replace('\n', ' '),
+              stats.count,
+              stats.totalNs,
+              stats.maxNs,
+              stats.hierarchyViews,
+              stats.visitedViews));
+    }
+  }
+
+  private static Stats getOrCreate(Map<String, Stats> statsByDescription, String description) {
+    Stats stats = statsByDescription.get(description);
+    if (null == stats) {
+      stats = new Stats();
+      statsByDescription.put(description, stats);
+    }
+    return stats;
+  }
+
+  /** Evaluates the conjuncts of a matcher one by one during a lookup, timing each of them. */
+  static final class LookupProfile {
+    private final List<Matcher<?>> conjuncts;
+    private final long[] invocations;
+    private final long[] durationsNs;
+    private final long startNs = System.nanoTime();
+    private int nodesVisited;
+
+    private LookupProfile(List<Matcher<?>> conjuncts) {
+      this.conjuncts = conjuncts;
+      this.invocations = new long[conjuncts.size()];
+      this.durationsNs = new long[conjuncts.size()];
+    }
+
+    boolean matches(View view) {
+      nodesVisited++;
+      for (int i = 0; i < conjuncts.size(); i++) {
+        long start = System.nanoTime();
+        boolean matches = conjuncts.get(i).matches(view);
+        durationsNs[i] += System.nanoTime() - start;
+        invocations[i]++;
+        if (!matches) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class Stats {
+    private long count;
+    private long totalNs;
+    private long maxNs;
+    private long hierarchyViews;
+    private long visitedViews;
+
+    void record(long count, long durationNs, int hierarchyViews, int visitedViews) {
+      this.count += count;
+      totalNs += durationNs;
+      maxNs = Math.max(maxNs, durationNs);
+      this.hierarchyViews += hierarchyViews;
+      this.visitedViews += visitedViews;
+    }
+  }
+}
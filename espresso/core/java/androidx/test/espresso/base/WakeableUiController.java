@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import androidx.test.espresso.UiController;
+
+/**
+ * Similar to {@link UiController} but can loop the main thread until an awaited event happens,
+ * rather than for a fixed amount of time.
+ *
+ * <p>This interface used for Espresso internals and shouldn't be called by external users.
+ *
+ * @hide
+ */
+@RestrictTo(Scope.LIBRARY)
+public interface WakeableUiController extends UiController {
+
+  /**
+   * Loops the main thread until {@link #wakeUp()} is called or the given time has passed,
+   * whichever comes first, and then until it is idle.
+   *
+   * @param millisDelay the maximum time to loop for before looping until idle
+   */
+  void loopMainThreadUntilWokenUp(long millisDelay);
+
+  /**
+   * Ends the current {@link #loopMainThreadUntilWokenUp(long)} early, typically from a callback
+   * for the awaited event. Does nothing if the main thread is not looped for a wake up.
+   *
+   * <p>Must be called on the main thread.
+   */
+  void wakeUp();
+}
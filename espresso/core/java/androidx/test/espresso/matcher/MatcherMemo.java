@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.matcher;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Rect;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.WindowManager;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.hamcrest.Matcher;
+
+/**
+ * Memoises results of view matchers for the duration of one view lookup, during which the view
+ * hierarchy does not change.
+ *
+ * <p>Structural matchers like {@link ViewMatchers#hasDescendant} evaluate their nested matcher on
+ * other views than the one being matched. Matching them against every view of a hierarchy would
+ * evaluate the nested matcher on each view many times, with the memo each view is evaluated once.
+ *
+ * <p>Resource strings and names, and the screen geometry, are resolved once per lookup rather than
+ * once per view.
+ *
+ * <p>Outside of a lookup, nothing is memoised.
+ *
+ * @hide
+ */
+@RestrictTo(Scope.LIBRARY)
+public final class MatcherMemo {
+  static final int RESOURCE_STRING = 0;
+  static final int RESOURCE_NAME = 1;
+  static final int RESOURCE_ENTRY_NAME = 2;
+
+  private static final ThreadLocal<MatcherMemo> current = new ThreadLocal<>();
+
+  // By matcher, whether it matches each item.
+  private final Map<Object, Map<Object, Boolean>> matchResults = new IdentityHashMap<>();
+  // By structural matcher, what it derived for each view.
+  private final Map<Object, Map<Object, Boolean>> derivedResults = new IdentityHashMap<>();
+  // Resolved resource strings and names, null for the ones that were not found.
+  private final Map<ResourceKey, String> resourceStrings = new HashMap<>();
+  // By context, the screen without status bar and action bar.
+  private final Map<Context, Rect> screens = new IdentityHashMap<>();
+  private final Rect scratchRect = new Rect();
+
+  private MatcherMemo() {}
+
+  /**
+   * Starts memoising on the current thread.
+   *
+   * @return true if memoising started, false if it was already started by an enclosing lookup
+   */
+  public static boolean start() {
+    if (current.get() != null) {
+      return false;
+    }
+    current.set(new MatcherMemo());
+    return true;
+  }
+
+  /** Stops memoising on the current thread and forgets all results. */
+  public static void stop() {
+    current.remove();
+  }
+
+  /** Returns whether the matcher matches the item, evaluating it once per item while memoising. */
+  static boolean matches(Matcher<?> matcher, @Nullable Object item) {
+    MatcherMemo memo = current.get();
+    if (memo == null) {
+      return matcher.matches(item);
+    }
+    Map<Object, Boolean> results = getOrCreate(memo.matchResults, matcher);
+    Boolean result = results.get(item);
+    if (result == null) {
+      result = matcher.matches(item);
+      results.put(item, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the results the given structural matcher derived per view, or null if not memoising.
+   */
+  @Nullable
+  static Map<Object, Boolean> getDerivedResults(Object matcher) {
+    MatcherMemo memo = current.get();
+    return memo == null ? null : getOrCreate(memo.derivedResults, matcher);
+  }
+
+  /**
+   * Returns the string, resource name or resource entry name of the resource id, or null if the
+   * resources don't contain it. Resolved once per lookup while memoising.
+   *
+   * @param kind one of {@link #RESOURCE_STRING}, {@link #RESOURCE_NAME} or {@link
+   *     #RESOURCE_ENTRY_NAME}
+   */
+  @Nullable
+  static String getResourceString(Resources res, int kind, int id) {
+    MatcherMemo memo = current.get();
+    if (memo == null) {
+      return resolveResourceString(res, kind, id);
+    }
+    ResourceKey key = new ResourceKey(res, kind, id);
+    if (memo.resourceStrings.containsKey(key)) {
+      return memo.resourceStrings.get(key);
+    }
+    String value = resolveResourceString(res, kind, id);
+    memo.resourceStrings.put(key, value);
+    return value;
+  }
+
+  @Nullable
+  private static String resolveResourceString(Resources res, int kind, int id) {
+    try {
+      switch (kind) {
+        case RESOURCE_STRING:
+          return res.getString(id);
+        case RESOURCE_NAME:
+          return res.getResourceName(id);
+        case RESOURCE_ENTRY_NAME:
+          return res.getResourceEntryName(id);
+        default:
+          throw new IllegalArgumentException("Unknown kind: " + kind);
+      }
+    } catch (Resources.NotFoundException e) {
+      // the context could be unaware of the resource id.
+      return null;
+    }
+  }
+
+  /**
+   * Returns the bounds of the screen of the context without status bar and action bar. Computed
+   * once per lookup while memoising, callers must not modify the result.
+   */
+  static Rect getScreenWithoutStatusBarActionBar(Context context) {
+    MatcherMemo memo = current.get();
+    if (memo == null) {
+      return computeScreenWithoutStatusBarActionBar(context);
+    }
+    Rect screen = memo.screens.get(context);
+    if (screen == null) {
+      screen = computeScreenWithoutStatusBarActionBar(context);
+      memo.screens.put(context, screen);
+    }
+    return screen;
+  }
+
+  private static Rect computeScreenWithoutStatusBarActionBar(Context context) {
+    DisplayMetrics m = new DisplayMetrics();
+    ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
+        .getDefaultDisplay()
+        .getMetrics(m);
+
+    // Get status bar height
+    int resourceId =
+        context.getResources().getIdentifier("status_bar_height", "dimen", "android");
+    int statusBarHeight =
+        (resourceId > 0) ? context.getResources().getDimensionPixelSize(resourceId) : 0;
+
+    // Get action bar height
+    TypedValue tv = new TypedValue();
+    int actionBarHeight =
+        context.getTheme().resolveAttribute(android.R.attr.actionBarSize, tv, true)
+            ? TypedValue.complexToDimensionPixelSize(
+                tv.data, context.getResources().getDisplayMetrics())
+            : 0;
+
+    return new Rect(0, 0, m.widthPixels, m.heightPixels - (statusBarHeight + actionBarHeight));
+  }
+
+  /**
+   * Returns a rect to pass to methods like {@link android.view.View#getGlobalVisibleRect}. While
+   * memoising, the same rect is returned every time, so it must not be used after matching a
+   * nested matcher.
+   */
+  static Rect obtainScratchRect() {
+    MatcherMemo memo = current.get();
+    return memo == null ? new Rect() : memo.scratchRect;
+  }
+
+  private static Map<Object, Boolean> getOrCreate(
+      Map<Object, Map<Object, Boolean>> resultsByMatcher, Object matcher) {
+    Map<Object, Boolean> results = resultsByMatcher.get(matcher);
+    if (results == null) {
+      results = new IdentityHashMap<>();
+      resultsByMatcher.put(matcher, results);
+    }
+    return results;
+  }
+
+  private static final class ResourceKey {
+    private final Resources res;
+    private final int kind;
+    private final int id;
+
+    ResourceKey(Resources res, int kind, int id) {
+      this.res = res;
+      this.kind = kind;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ResourceKey)) {
+        return false;
+      }
+      ResourceKey other = (ResourceKey) o;
+      return res == other.res && kind == other.kind && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(res) * 31 + kind) * 31 + id;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.matcher;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import java.lang.reflect.Field;
+import org.hamcrest.Matcher;
+import org.hamcrest.core.AllOf;
+
+/**
+ * Finds properties that every view matched by a view matcher must have, e.g. the id of {@code
+ * allOf(withId(R.id.button), isDisplayed())}, so that only views with that property need to be
+ * matched.
+ *
+ * <p>Only matchers created by {@link ViewMatchers} and hamcrest's {@code allOf} are understood,
+ * for any other matcher nothing is known.
+ *
+ * @hide
+ */
+@RestrictTo(Scope.LIBRARY)
+public final class ViewMatcherIntrospection {
+  private static final String TAG = ViewMatcherIntrospection.class.getSimpleName();
+
+  // AllOf does not expose its matchers, the remote protocol reads the same field.
+  @Nullable
+  private static final Field ALL_OF_MATCHERS = getAccessibleField(AllOf.class, "matchers");
+
+  /** Rank of matchers which may have side effects, or whose cost is unknown. */
+  public static final int UNRANKED = -1;
+
+  private ViewMatcherIntrospection() {}
+
+  /**
+   * Returns how early a conjunct should be evaluated, cheap and selective matchers having a lower
+   * rank, or {@link #UNRANKED}. Ranked matchers can be evaluated in any order.
+   */
+  public static int getEvaluationRank(Matcher<?> matcher) {
+    // Keeps the resources of the last matched view for its description, evaluating it first
+    // means it sees at least the views it would have seen otherwise.
+    if (matcher instanceof ViewMatchers.WithIdMatcher) {
+      return 0;
+    }
+    if (matcher instanceof ViewMatchers.IsAssignableFromMatcher) {
+      return 1;
+    }
+    if (matcher instanceof ViewMatchers.IsEnabledMatcher
+        || matcher instanceof ViewMatchers.IsClickableMatcher
+        || matcher instanceof ViewMatchers.IsFocusableMatcher
+        || matcher instanceof ViewMatchers.IsFocusedMatcher
+        || matcher instanceof ViewMatchers.HasFocusMatcher
+        || matcher instanceof ViewMatchers.IsSelectedMatcher) {
+      return 2;
+    }
+    if (matcher instanceof ViewMatchers.WithClassNameMatcher) {
+      return 3;
+    }
+    if (matcher instanceof ViewMatchers.WithTextMatcher
+        || matcher instanceof ViewMatchers.WithContentDescriptionTextMatcher) {
+      return 4;
+    }
+    // Those walk up the hierarchy, and compute the visible area.
+    if (matcher instanceof ViewMatchers.WithEffectiveVisibilityMatcher) {
+      return 5;
+    }
+    if (matcher instanceof ViewMatchers.IsDisplayedMatcher) {
+      return 6;
+    }
+    if (matcher instanceof ViewMatchers.IsDisplayingAtLeastMatcher) {
+      return 7;
+    }
+    return UNRANKED;
+  }
+
+  /** Returns the id every matching view has, or null if unknown. */
+  @Nullable
+  public static Integer getRequiredId(Matcher<?> matcher) {
+    if (matcher instanceof ViewMatchers.WithIdMatcher) {
+      return ((ViewMatchers.WithIdMatcher) matcher).expectedId;
+    }
+    Iterable<Matcher<?>> conjuncts = getConjuncts(matcher);
+    if (conjuncts != null) {
+      for (Matcher<?> conjunct : conjuncts) {
+        Integer id = getRequiredId(conjunct);
+        if (id != null) {
+          return id;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the text every matching {@link android.widget.TextView} displays either as is or
+   * transformed by its transformation method, or null if unknown.
+   */
+  @Nullable
+  public static String getRequiredText(Matcher<?> matcher) {
+    if (matcher instanceof ViewMatchers.WithTextMatcher) {
+      return ((ViewMatchers.WithTextMatcher) matcher).expectedText;
+    }
+    Iterable<Matcher<?>> conjuncts = getConjuncts(matcher);
+    if (conjuncts != null) {
+      for (Matcher<?> conjunct : conjuncts) {
+        String text = getRequiredText(conjunct);
+        if (text != null) {
+          return text;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Returns a class every matching view is assignable to, or null if unknown. */
+  @Nullable
+  public static Class<?> getRequiredClass(Matcher<?> matcher) {
+    if (matcher instanceof ViewMatchers.IsAssignableFromMatcher) {
+      return ((ViewMatchers.IsAssignableFromMatcher) matcher).clazz;
+    }
+    Iterable<Matcher<?>> conjuncts = getConjuncts(matcher);
+    if (conjuncts != null) {
+      for (Matcher<?> conjunct : conjuncts) {
+        Class<?> clazz = getRequiredClass(conjunct);
+        if (clazz != null) {
+          return clazz;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the matchers which all have to match for the given matcher to match, or null if it is
+   * not a conjunction.
+   */
+  @SuppressWarnings("unchecked") // AllOf only holds matchers.
+  @Nullable
+  public static Iterable<Matcher<?>> getConjuncts(Matcher<?> matcher) {
+    if (ALL_OF_MATCHERS == null || !(matcher instanceof AllOf)) {
+      return null;
+    }
+    try {
+      return (Iterable<Matcher<?>>) ALL_OF_MATCHERS.get(matcher);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Field getAccessibleField(Class<?> clazz, String name) {
+    try {
+      Field field = clazz.getDeclaredField(name);
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException | RuntimeException e) {
+      Log.w(TAG, "Could not access " + clazz.getName() + "." + name, e);
+      return null;
+    }
+  }
+}
@@ -17,7 +17,6 @@
 
 package androidx.test.espresso.matcher;
 
-import static androidx.test.espresso.util.TreeIterables.breadthFirstViewTraversal;
 import static androidx.test.internal.util.Checks.checkArgument;
 import static androidx.test.internal.util.Checks.checkNotNull;
 import static org.hamcrest.Matchers.containsString;
@@ -28,12 +27,9 @@ import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.os.Build;
-import android.util.DisplayMetrics;
-import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
-import android.view.WindowManager;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
 import android.webkit.WebView;
@@ -48,10 +44,8 @@ import androidx.test.annotation.ExperimentalTestApi;
 import androidx.test.espresso.remote.annotation.RemoteMsgConstructor;
 import androidx.test.espresso.remote.annotation.RemoteMsgField;
 import androidx.test.espresso.util.HumanReadables;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
-import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Pattern;
 import junit.framework.AssertionFailedError;
 import org.hamcrest.Description;
@@ -237,7 +231,7 @@ public final class ViewMatchers {
    * @param id the resource id.
    */
   public static Matcher<View> withId(final int id) {
-    return withId(is(id));
+    return new WithIdMatcher(is(id), id);
   }
 
   /**
@@ -307,7 +301,7 @@ public final class ViewMatchers {
    * @param text {@link String} with the text to match
    */
   public static Matcher<View> withText(String text) {
-    return withText(is(text));
+    return new WithTextMatcher(is(text), text);
   }
 
   /**
@@ -693,11 +687,19 @@ public final class ViewMatchers {
     @RemoteMsgField(order = 0)
     Matcher<Integer> viewIdMatcher;
 
+    // The id matched by viewIdMatcher if it only matches one, otherwise null.
+    @Nullable final Integer expectedId;
+
     private Resources resources;
 
     @RemoteMsgConstructor
     private WithIdMatcher(Matcher<Integer> integerMatcher) {
+      this(integerMatcher, null);
+    }
+
+    private WithIdMatcher(Matcher<Integer> integerMatcher, @Nullable Integer expectedId) {
       this.viewIdMatcher = integerMatcher;
+      this.expectedId = expectedId;
     }
 
     @SuppressWarnings("JdkObsolete") // java.util.regex.Matcher requires the use of StringBuffer
@@ -748,10 +750,18 @@ public final class ViewMatchers {
     @RemoteMsgField(order = 0)
     private final Matcher<String> stringMatcher;
 
+    // The text matched by stringMatcher if it only matches one, otherwise null.
+    @Nullable final String expectedText;
+
     @RemoteMsgConstructor
     private WithTextMatcher(Matcher<String> stringMatcher) {
+      this(stringMatcher, null);
+    }
+
+    private WithTextMatcher(Matcher<String> stringMatcher, @Nullable String expectedText) {
       super(TextView.class);
       this.stringMatcher = stringMatcher;
+      this.expectedText = expectedText;
     }
 
     @Override
@@ -866,7 +876,7 @@ public final class ViewMatchers {
 
   static final class IsAssignableFromMatcher extends TypeSafeDiagnosingMatcher<View> {
     @RemoteMsgField(order = 0)
-    private final Class<?> clazz;
+    final Class<?> clazz;
 
     @RemoteMsgConstructor
     private IsAssignableFromMatcher(@NonNull Class<?> clazz) {
@@ -938,7 +948,7 @@ public final class ViewMatchers {
         visibilityMatcher.describeMismatch(view, mismatchDescription);
         return false;
       }
-      if (!view.getGlobalVisibleRect(new Rect())) {
+      if (!view.getGlobalVisibleRect(MatcherMemo.obtainScratchRect())) {
         mismatchDescription.appendText("view.getGlobalVisibleRect() returned empty rectangle");
         return false;
       }
@@ -975,7 +985,7 @@ public final class ViewMatchers {
         return false;
       }
 
-      Rect visibleParts = new Rect();
+      Rect visibleParts = MatcherMemo.obtainScratchRect();
       boolean visibleAtAll = view.getGlobalVisibleRect(visibleParts);
       if (!visibleAtAll) {
         mismatchDescription
@@ -985,7 +995,7 @@ public final class ViewMatchers {
         return false;
       }
 
-      Rect screen = getScreenWithoutStatusBarActionBar(view);
+      Rect screen = MatcherMemo.getScreenWithoutStatusBarActionBar(view.getContext());
 
       float viewHeight = (view.getHeight() > screen.height()) ? screen.height() : view.getHeight();
       float viewWidth = (view.getWidth() > screen.width()) ? screen.width() : view.getWidth();
@@ -1009,29 +1019,6 @@ public final class ViewMatchers {
       }
       return true;
     }
-
-    private Rect getScreenWithoutStatusBarActionBar(View view) {
-      DisplayMetrics m = new DisplayMetrics();
-      ((WindowManager) view.getContext().getSystemService(Context.WINDOW_SERVICE))
-          .getDefaultDisplay()
-          .getMetrics(m);
-
-      // Get status bar height
-      int resourceId =
-          view.getContext().getResources().getIdentifier("status_bar_height", "dimen", "android");
-      int statusBarHeight =
-          (resourceId > 0) ? view.getContext().getResources().getDimensionPixelSize(resourceId) : 0;
-
-      // Get action bar height
-      TypedValue tv = new TypedValue();
-      int actionBarHeight =
-          view.getContext().getTheme().resolveAttribute(android.R.attr.actionBarSize, tv, true)
-              ? TypedValue.complexToDimensionPixelSize(
-                  tv.data, view.getContext().getResources().getDisplayMetrics())
-              : 0;
-
-      return new Rect(0, 0, m.widthPixels, m.heightPixels - (statusBarHeight + actionBarHeight));
-    }
   }
 
   static final class IsEnabledMatcher extends TypeSafeDiagnosingMatcher<View> {
@@ -1237,11 +1224,7 @@ public final class ViewMatchers {
     @Override
     protected boolean matchesSafely(View view, Description mismatchDescription) {
       if (null == this.expectedText) {
-        try {
-          expectedText = view.getResources().getString(resourceId);
-        } catch (Resources.NotFoundException ignored) {
-          // view could be from a context unaware of the resource id.
-        }
+        expectedText = safeGetString(view.getResources(), resourceId);
         resourceName = safeGetResourceEntryName(view.getResources(), resourceId);
       }
       if (expectedText == null) {
@@ -1388,11 +1371,7 @@ public final class ViewMatchers {
     @Override
     protected boolean matchesSafely(TextView textView, Description mismatchDescription) {
       if (null == expectedText) {
-        try {
-          expectedText = textView.getResources().getString(resourceId);
-        } catch (Resources.NotFoundException ignored) {
-          /* view could be from a context unaware of the resource id. */
-        }
+        expectedText = safeGetString(textView.getResources(), resourceId);
         resourceName = safeGetResourceEntryName(textView.getResources(), resourceId);
       }
       CharSequence actualText;
@@ -1514,13 +1493,7 @@ public final class ViewMatchers {
         return false;
       }
 
-      final Predicate<View> matcherPredicate =
-          input -> input != view && descendantMatcher.matches(input);
-
-      Iterator<View> matchedViewIterator =
-          Iterables.filter(breadthFirstViewTraversal(view), matcherPredicate).iterator();
-
-      if (!matchedViewIterator.hasNext()) {
+      if (!hasMatchingDescendant((ViewGroup) view, MatcherMemo.getDerivedResults(this))) {
         mismatchDescription
             .appendText("no descendant matching ")
             .appendDescriptionOf(descendantMatcher)
@@ -1529,6 +1502,29 @@ public final class ViewMatchers {
       }
       return true;
     }
+
+    // A group has a matching descendant if one of its children matches or has one. Memoised, this
+    // evaluates each view once per lookup no matter how many of its ancestors are matched.
+    private boolean hasMatchingDescendant(ViewGroup group, @Nullable Map<Object, Boolean> memo) {
+      if (memo != null) {
+        Boolean known = memo.get(group);
+        if (known != null) {
+          return known;
+        }
+      }
+      boolean found = false;
+      int childCount = group.getChildCount();
+      for (int i = 0; i < childCount && !found; i++) {
+        View child = group.getChildAt(i);
+        found =
+            MatcherMemo.matches(descendantMatcher, child)
+                || (child instanceof ViewGroup && hasMatchingDescendant((ViewGroup) child, memo));
+      }
+      if (memo != null) {
+        memo.put(group, found);
+      }
+      return found;
+    }
   }
 
   @VisibleForTesting
@@ -1576,7 +1572,7 @@ public final class ViewMatchers {
 
     @Override
     protected boolean matchesSafely(View view, Description mismatchDescription) {
-      boolean matches = checkAncestors(view.getParent());
+      boolean matches = checkAncestors(view.getParent(), MatcherMemo.getDerivedResults(this));
       if (!matches) {
         mismatchDescription
             .appendText("none of the ancestors match ")
@@ -1585,14 +1581,24 @@ public final class ViewMatchers {
       return matches;
     }
 
-    private boolean checkAncestors(ViewParent viewParent) {
+    // Memoised per view, siblings and descendants share the result of their common ancestors.
+    private boolean checkAncestors(ViewParent viewParent, @Nullable Map<Object, Boolean> memo) {
       if (!(viewParent instanceof View)) {
         return false;
       }
-      if (ancestorMatcher.matches(viewParent)) {
-        return true;
+      if (memo != null) {
+        Boolean known = memo.get(viewParent);
+        if (known != null) {
+          return known;
+        }
+      }
+      boolean matches =
+          MatcherMemo.matches(ancestorMatcher, viewParent)
+              || checkAncestors(viewParent.getParent(), memo);
+      if (memo != null) {
+        memo.put(viewParent, matches);
       }
-      return checkAncestors(viewParent.getParent());
+      return matches;
     }
   }
 
@@ -1750,7 +1756,8 @@ public final class ViewMatchers {
     @Override
     protected boolean matchesSafely(View view, Description mismatchDescription) {
       final ViewParent parent = view.getParent();
-      if (!parentMatcher.matches(parent)) {
+      // Siblings share the memoised result.
+      if (!MatcherMemo.matches(parentMatcher, parent)) {
         mismatchDescription.appendText("view.getParent() ");
         parentMatcher.describeMismatch(parent, mismatchDescription);
         return false;
@@ -1990,13 +1997,7 @@ public final class ViewMatchers {
     @Override
     protected boolean matchesSafely(Spinner spinner, Description mismatchDescription) {
       if (expectedText == null) {
-        try {
-          expectedText = spinner.getResources().getString(resourceId);
-        } catch (Resources.NotFoundException ignored) {
-          /*
-           * view could be from a context unaware of the resource id.
-           */
-        }
+        expectedText = safeGetString(spinner.getResources(), resourceId);
         resourceName = safeGetResourceEntryName(spinner.getResources(), resourceId);
       }
       if (expectedText == null) {
@@ -2183,11 +2184,9 @@ public final class ViewMatchers {
    * @see Resources#getResourceName(int)
    */
   private static String safeGetResourceName(Resources res, int id) {
-    try {
-      return isViewIdGenerated(id) ? null : res.getResourceName(id);
-    } catch (Resources.NotFoundException e) {
-      return null;
-    }
+    return isViewIdGenerated(id)
+        ? null
+        : MatcherMemo.getResourceString(res, MatcherMemo.RESOURCE_NAME, id);
   }
 
   /**
@@ -2202,11 +2201,20 @@ public final class ViewMatchers {
    * @see Resources#getResourceEntryName(int)
    */
   private static String safeGetResourceEntryName(Resources res, int id) {
-    try {
-      return isViewIdGenerated(id) ? null : res.getResourceEntryName(id);
-    } catch (Resources.NotFoundException e) {
-      return null;
-    }
+    return isViewIdGenerated(id)
+        ? null
+        : MatcherMemo.getResourceString(res, MatcherMemo.RESOURCE_ENTRY_NAME, id);
+  }
+
+  /**
+   * Get the string of a resource id, or {@code null} if not found, e.g. because the view is from a
+   * context unaware of the resource id.
+   *
+   * @see Resources#getString(int)
+   */
+  @Nullable
+  private static String safeGetString(Resources res, int id) {
+    return MatcherMemo.getResourceString(res, MatcherMemo.RESOURCE_STRING, id);
   }
 
   /**
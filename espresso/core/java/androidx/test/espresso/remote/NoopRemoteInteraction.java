@@ -34,6 +34,11 @@ public class NoopRemoteInteraction implements RemoteInteraction {
     return false;
   }
 
+  @Override
+  public boolean hasRemoteInstances() {
+    return false;
+  }
+
   @Override
   public Callable<Void> createRemoteCheckCallable(
       Matcher<Root> rootMatcher,
@@ -36,6 +36,16 @@ public interface RemoteInteraction {
   /** @return {@code true} if the current Espresso instance running in a remote process. */
   boolean isRemoteProcess();
 
+  /**
+   * Returns whether Espresso instances are known to be running in other processes. Interactions
+   * are only sent to remote processes if this returns {@code true}.
+   *
+   * <p>This is called for every interaction, so it must not block.
+   */
+  default boolean hasRemoteInstances() {
+    return true;
+  }
+
   /**
    * Creates a callable to run Espresso check interaction on remote processes
    *
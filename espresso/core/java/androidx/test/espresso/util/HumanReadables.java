@@ -18,6 +18,7 @@ package androidx.test.espresso.util;
 
 import static androidx.test.espresso.util.TreeIterables.depthFirstViewTraversalWithDistance;
 import static androidx.test.internal.util.Checks.checkArgument;
+import static androidx.test.internal.util.Checks.checkNotNull;
 import static java.lang.Math.max;
 
 import android.content.res.Resources;
@@ -32,12 +33,10 @@ import android.view.inputmethod.InputConnection;
 import android.widget.Checkable;
 import android.widget.TextView;
 import androidx.test.espresso.util.TreeIterables.ViewAndDistance;
-import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.MoreObjects.ToStringHelper;
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
 import java.util.regex.Matcher;
@@ -101,38 +100,22 @@ public final class HumanReadables {
       final String problemViewSuffix,
       int maxMsgLen) {
     checkArgument(problemViews == null || problemViewSuffix != null);
-    StringBuilder errorMessage = new StringBuilder(errorHeader);
-    if (problemViewSuffix != null) {
-      errorMessage.append(
-          String.format(
-              Locale.ROOT, "\nProblem views are marked with '%s' below.", problemViewSuffix));
+    String suffix = " [truncated]";
+    StringBuilder errorMessage = new StringBuilder();
+    try {
+      // Views past the limit would be truncated anyway, so they are not described.
+      appendViewHierarchyErrorMessage(
+          errorMessage,
+          rootView,
+          problemViews,
+          errorHeader,
+          problemViewSuffix,
+          maxMsgLen < Integer.MAX_VALUE ? maxMsgLen - suffix.length() : Long.MAX_VALUE);
+    } catch (IOException e) {
+      throw new AssertionError("StringBuilder does not throw", e);
     }
 
-    String viewHierarchyDump =
-        Joiner.on("\n|\n")
-            .join(
-                Iterables.transform(
-                    depthFirstViewTraversalWithDistance(rootView),
-                    new Function<ViewAndDistance, String>() {
-                      @Override
-                      public String apply(ViewAndDistance viewAndDistance) {
-                        String formatString = "+%s%s ";
-                        if (problemViews != null
-                            && problemViews.contains(viewAndDistance.getView())) {
-                          formatString += problemViewSuffix;
-                        }
-                        return String.format(
-                            Locale.ROOT,
-                            formatString,
-                            Strings.padStart(">", viewAndDistance.getDistanceFromRoot() + 1, '-'),
-                            HumanReadables.describe(viewAndDistance.getView()));
-                      }
-                    }));
-
-    errorMessage.append("\n\nView Hierarchy:\n").append(viewHierarchyDump);
-
     if (maxMsgLen < Integer.MAX_VALUE) {
-      String suffix = " [truncated]";
       if (errorMessage.length() + suffix.length() > maxMsgLen) {
         errorMessage.delete(max(0, maxMsgLen - suffix.length()), errorMessage.length());
         errorMessage.append(suffix);
@@ -142,6 +125,82 @@ public final class HumanReadables {
     return errorMessage.toString();
   }
 
+  /**
+   * Writes the same error message as {@link #getViewHierarchyErrorMessage(View, List, String,
+   * String)} to the given output while traversing the view hierarchy, without building the whole
+   * message in memory.
+   *
+   * @param out where to write the message to, e.g. a {@link java.io.Writer} on a test output file.
+   * @param rootView the root of the hierarchy tree to print out.
+   * @param problemViews list of the views that you would like to point out are causing the error
+   *     message or null, if you want to skip this feature.
+   * @param errorHeader the header of the error message (should contain the description of why the
+   *     error is happening).
+   * @param problemViewSuffix the message to append to the view description in the tree printout.
+   *     Required if problemViews is supplied. Otherwise, null is acceptable.
+   * @throws IOException if writing to the output fails.
+   */
+  public static void writeViewHierarchyErrorMessage(
+      Appendable out,
+      View rootView,
+      final List<View> problemViews,
+      final String errorHeader,
+      final String problemViewSuffix)
+      throws IOException {
+    checkNotNull(out);
+    checkArgument(problemViews == null || problemViewSuffix != null);
+    appendViewHierarchyErrorMessage(
+        out, rootView, problemViews, errorHeader, problemViewSuffix, Long.MAX_VALUE);
+  }
+
+  /** Appends the error message, stopping after the view that makes it longer than maxLength. */
+  private static void appendViewHierarchyErrorMessage(
+      Appendable out,
+      View rootView,
+      List<View> problemViews,
+      String errorHeader,
+      String problemViewSuffix,
+      long maxLength)
+      throws IOException {
+    long length = append(out, errorHeader);
+    if (problemViewSuffix != null) {
+      length +=
+          append(
+              out,
+              String.format(
+                  Locale.ROOT, "\nProblem views are marked with '%s' below.", problemViewSuffix));
+    }
+
+    length += append(out, "\n\nView Hierarchy:\n");
+    boolean first = true;
+    for (ViewAndDistance viewAndDistance : depthFirstViewTraversalWithDistance(rootView)) {
+      if (length > maxLength) {
+        return;
+      }
+      if (!first) {
+        length += append(out, "\n|\n");
+      }
+      first = false;
+      String formatString = "+%s%s ";
+      if (problemViews != null && problemViews.contains(viewAndDistance.getView())) {
+        formatString += problemViewSuffix;
+      }
+      length +=
+          append(
+              out,
+              String.format(
+                  Locale.ROOT,
+                  formatString,
+                  Strings.padStart(">", viewAndDistance.getDistanceFromRoot() + 1, '-'),
+                  HumanReadables.describe(viewAndDistance.getView())));
+    }
+  }
+
+  private static int append(Appendable out, String text) throws IOException {
+    out.append(text);
+    return text.length();
+  }
+
   public static String describe(Cursor c) {
     if (c.isBeforeFirst()) {
       return "Cursor positioned before first element.";
@@ -26,11 +26,13 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 
 /**
@@ -79,7 +81,7 @@ public final class TreeIterables {
    * @param root the non-null, root view.
    */
   public static Iterable<View> depthFirstViewTraversal(View root) {
-    return depthFirstTraversal(root, VIEW_TREE_VIEWER);
+    return new ViewTraversalIterable(checkNotNull(root), TraversalStrategy.DEPTH_FIRST);
   }
 
   /**
@@ -90,7 +92,77 @@ public final class TreeIterables {
    * @param root the non-null, root view.
    */
   public static Iterable<View> breadthFirstViewTraversal(View root) {
-    return breadthFirstTraversal(root, VIEW_TREE_VIEWER);
+    return new ViewTraversalIterable(checkNotNull(root), TraversalStrategy.BREADTH_FIRST);
+  }
+
+  /**
+   * Visits the provided view and its children in the same order as {@link
+   * #depthFirstViewTraversal(View)}.
+   *
+   * <p>Unlike iterating, this does not allocate anything per view, which matters for large view
+   * hierarchies. The hierarchy must not be modified while it is being visited.
+   *
+   * @param root the non-null, root view.
+   * @param visitor receives each view, returning false ends the traversal.
+   * @return false if the visitor ended the traversal early.
+   */
+  public static boolean depthFirstViewTraversal(View root, ViewVisitor visitor) {
+    checkNotNull(visitor);
+    ArrayDeque<View> stack = new ArrayDeque<>();
+    stack.push(checkNotNull(root));
+    while (!stack.isEmpty()) {
+      View view = stack.pop();
+      if (!visitor.visit(view)) {
+        return false;
+      }
+      pushChildren(stack, view);
+    }
+    return true;
+  }
+
+  /**
+   * Visits the provided view and its children in the same order as {@link
+   * #breadthFirstViewTraversal(View)}.
+   *
+   * <p>Unlike iterating, this does not allocate anything per view, which matters for large view
+   * hierarchies. The hierarchy must not be modified while it is being visited.
+   *
+   * @param root the non-null, root view.
+   * @param visitor receives each view, returning false ends the traversal.
+   * @return false if the visitor ended the traversal early.
+   */
+  public static boolean breadthFirstViewTraversal(View root, ViewVisitor visitor) {
+    checkNotNull(visitor);
+    ArrayDeque<View> queue = new ArrayDeque<>();
+    queue.add(checkNotNull(root));
+    while (!queue.isEmpty()) {
+      View view = queue.remove();
+      if (!visitor.visit(view)) {
+        return false;
+      }
+      enqueueChildren(queue, view);
+    }
+    return true;
+  }
+
+  /** Pushes the children of the view in reverse, so that its first child is popped next. */
+  private static void pushChildren(ArrayDeque<View> stack, View view) {
+    if (view instanceof ViewGroup) {
+      ViewGroup group = (ViewGroup) view;
+      for (int i = group.getChildCount() - 1; i >= 0; i--) {
+        stack.push(checkNotNull(group.getChildAt(i), "Null items not allowed!"));
+      }
+    }
+  }
+
+  private static void enqueueChildren(ArrayDeque<View> queue, View view) {
+    if (view instanceof ViewGroup) {
+      ViewGroup group = (ViewGroup) view;
+      int childCount = group.getChildCount();
+      for (int i = 0; i < childCount; i++) {
+        queue.add(checkNotNull(group.getChildAt(i), "Null items not allowed!"));
+      }
+    }
   }
 
   /**
@@ -136,7 +208,7 @@ public final class TreeIterables {
 
     @Override
     public Iterator<T> iterator() {
-      final LinkedList<T> nodes = Lists.newLinkedList();
+      final ArrayDeque<T> nodes = new ArrayDeque<>();
       nodes.add(root);
       return new AbstractIterator<T>() {
         @Override
@@ -153,23 +225,60 @@ public final class TreeIterables {
     }
   }
 
+  /** Iterates over a view hierarchy reading the children of each view group directly. */
+  private static class ViewTraversalIterable implements Iterable<View> {
+    private final View root;
+    private final TraversalStrategy traversalStrategy;
+
+    private ViewTraversalIterable(View root, TraversalStrategy traversalStrategy) {
+      this.root = root;
+      this.traversalStrategy = traversalStrategy;
+    }
+
+    @Override
+    public Iterator<View> iterator() {
+      final ArrayDeque<View> views = new ArrayDeque<>();
+      views.add(root);
+      return new AbstractIterator<View>() {
+        @Override
+        public View computeNext() {
+          if (views.isEmpty()) {
+            return endOfData();
+          }
+          View nextView = views.removeFirst();
+          if (traversalStrategy == TraversalStrategy.DEPTH_FIRST) {
+            pushChildren(views, nextView);
+          } else {
+            enqueueChildren(views, nextView);
+          }
+          return nextView;
+        }
+      };
+    }
+  }
+
   private enum TraversalStrategy {
     BREADTH_FIRST() {
       @Override
-      <T> void combineNewChildren(LinkedList<T> nodes, Collection<T> newChildren) {
+      <T> void combineNewChildren(ArrayDeque<T> nodes, Collection<T> newChildren) {
         nodes.addAll(newChildren);
       }
     },
     DEPTH_FIRST() {
       @Override
-      <T> void combineNewChildren(LinkedList<T> nodes, Collection<T> newChildren) {
-        nodes.addAll(0, newChildren);
+      <T> void combineNewChildren(ArrayDeque<T> nodes, Collection<T> newChildren) {
+        // Added in reverse, so that the first child is next.
+        List<T> children =
+            newChildren instanceof List ? (List<T>) newChildren : new ArrayList<T>(newChildren);
+        for (ListIterator<T> it = children.listIterator(children.size()); it.hasPrevious(); ) {
+          nodes.addFirst(it.previous());
+        }
       }
     };
 
-    abstract <T> void combineNewChildren(LinkedList<T> nodes, Collection<T> newChildren);
+    abstract <T> void combineNewChildren(ArrayDeque<T> nodes, Collection<T> newChildren);
 
-    <T> T next(LinkedList<T> nodes) {
+    <T> T next(ArrayDeque<T> nodes) {
       return nodes.removeFirst();
     }
   }
@@ -187,7 +296,7 @@ public final class TreeIterables {
       if (view instanceof ViewGroup) {
         ViewGroup group = (ViewGroup) view;
         int childCount = group.getChildCount();
-        List<View> children = Lists.newArrayList();
+        List<View> children = Lists.newArrayListWithCapacity(childCount);
         for (int i = 0; i < childCount; i++) {
           children.add(group.getChildAt(i));
         }
@@ -256,6 +365,19 @@ public final class TreeIterables {
     Collection<T> children(T instance);
   }
 
+  /**
+   * Receives the views of a traversal, see {@link #breadthFirstViewTraversal(View, ViewVisitor)}.
+   */
+  public interface ViewVisitor {
+
+    /**
+     * Visits a view of the hierarchy.
+     *
+     * @return true to continue the traversal, false to end it.
+     */
+    boolean visit(View view);
+  }
+
   /** Represents the distance a given view is from the root view. */
   public static class ViewAndDistance {
     private final View view;
@@ -347,6 +347,33 @@ public class EspressoTest {
     assertTrue(handled.get());
   }
 
+  @Test
+  public void batch() {
+    onData(allOf(instanceOf(Map.class), hasValue(SendActivity.class.getSimpleName())))
+        .perform(click());
+
+    Espresso.batch()
+        .perform(withId(R.id.enter_data_edit_text), typeText("batched"))
+        .check(withId(R.id.enter_data_edit_text), matches(withText("batched")))
+        .run();
+  }
+
+  @Test
+  public void batch_reportsFailingStep() {
+    InteractionBatchException e =
+        assertThrows(
+            InteractionBatchException.class,
+            () ->
+                Espresso.batch()
+                    .check(isRoot(), matches(isDisplayed()))
+                    .perform(withText("does not exist"), click())
+                    .check(isRoot(), matches(isDisplayed()))
+                    .run());
+
+    assertEquals(1, e.getStepIndex());
+    assertThat(e.getCause(), instanceOf(NoMatchingViewException.class));
+  }
+
   @Test
   public void registerResourceWithNullName() {
     DummyIdlingResource resource = new DummyIdlingResource(null);
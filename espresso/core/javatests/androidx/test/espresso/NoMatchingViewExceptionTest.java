@@ -20,9 +20,13 @@ import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import org.hamcrest.Matcher;
@@ -69,6 +73,28 @@ public class NoMatchingViewExceptionTest {
     assertThat("wrong view matcher description", viewMatcherDescription, equalTo("null"));
   }
 
+  @Test
+  public void messageRenderedOnFirstUse() {
+    int[] describedViews = new int[1];
+    testView =
+        new View(getApplicationContext()) {
+          @Override
+          public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
+            // Called once when the view is described.
+            describedViews[0]++;
+            return null;
+          }
+        };
+    NoMatchingViewException exception = createException();
+    assertThat(describedViews[0], is(0));
+
+    String message = exception.getMessage();
+
+    assertThat(describedViews[0], is(1));
+    assertThat(exception.getMessage(), sameInstance(message));
+    assertThat(describedViews[0], is(1));
+  }
+
   private NoMatchingViewException createException() {
     return new NoMatchingViewException.Builder()
         .withViewMatcher(alwaysFailingMatcher)
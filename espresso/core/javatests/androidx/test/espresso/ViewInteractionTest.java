@@ -32,8 +32,13 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -42,6 +47,7 @@ import android.os.IBinder;
 import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.test.espresso.base.InterruptableUiController;
+import androidx.test.espresso.base.ViewFinderFactory;
 import androidx.test.espresso.internal.data.TestFlowVisualizer;
 import androidx.test.espresso.matcher.RootMatchers;
 import androidx.test.espresso.remote.Bindable;
@@ -61,12 +67,15 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Provider;
 import org.hamcrest.Matcher;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -84,12 +93,14 @@ public class ViewInteractionTest {
   @Mock private IBinder iBinderMock;
   @Mock private Bindable bindableMock;
   @Mock private ControlledLooper mockControlledLooper;
+  @Mock private ViewFinderFactory mockViewFinderFactory;
 
   private FailureHandler failureHandler;
   private Executor testExecutor = MoreExecutors.directExecutor();
   private ActivityLifecycleMonitor realLifecycleMonitor;
   private ViewInteraction testInteraction;
   private View rootView;
+  private Provider<View> rootViewProvider;
   private View targetView;
   private Matcher<View> viewMatcher;
   private Matcher<View> actionConstraint;
@@ -111,6 +122,8 @@ public class ViewInteractionTest {
     initMocks(this);
     realLifecycleMonitor = ActivityLifecycleMonitorRegistry.getInstance();
     rootView = new View(getInstrumentation().getContext());
+    rootViewProvider = () -> rootView;
+    when(mockViewFinderFactory.create(any(), any())).thenReturn(mockViewFinder);
     targetView = new View(getInstrumentation().getContext());
     viewMatcher = is(targetView);
     actionConstraint = notNullValue(View.class);
@@ -227,6 +240,92 @@ public class ViewInteractionTest {
             "+-endSpan: Espresso.check(MockAssert, Matcher Description)"));
   }
 
+  @Test
+  public void waitUntil_checksAgainAfterLayout() {
+    when(mockViewFinder.getView()).thenReturn(targetView);
+    doThrow(new AssertionError("not yet")).doNothing().when(mockAssertion).check(targetView, null);
+    doAnswer(
+            invocation -> {
+              rootView.getViewTreeObserver().dispatchOnGlobalLayout();
+              return null;
+            })
+        .when(mockUiController)
+        .loopMainThreadForAtLeast(anyLong());
+    initWithViewInteraction();
+
+    testInteraction.waitUntil(mockAssertion);
+
+    verify(mockAssertion, times(2)).check(targetView, null);
+    // The view is found below the root picked for each evaluation.
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Provider<View>> pickedRoot = ArgumentCaptor.forClass(Provider.class);
+    verify(mockViewFinderFactory, times(2)).create(eq(viewMatcher), pickedRoot.capture());
+    assertThat(pickedRoot.getValue().get(), is(rootView));
+  }
+
+  @Test
+  public void waitUntil_reportsLastFailureAfterTimeout() {
+    RuntimeException failure = new RuntimeException("never holds");
+    when(mockViewFinder.getView()).thenReturn(targetView);
+    doThrow(failure).when(mockAssertion).check(targetView, null);
+    initWithViewInteraction();
+    IdlingPolicy policy = IdlingPolicies.getViewConditionPolicy();
+    IdlingPolicies.setViewConditionTimeout(50, TimeUnit.MILLISECONDS);
+    try {
+      testInteraction.waitUntil(mockAssertion);
+      fail("Should propagate the failure of the assertion!");
+    } catch (RuntimeException re) {
+      assertThat(re, is(failure));
+    } finally {
+      IdlingPolicies.setViewConditionTimeout(policy.getIdleTimeout(), policy.getIdleTimeoutUnit());
+    }
+
+    // Without layout, draw or scroll, the assertion is not checked again.
+    verify(mockAssertion).check(targetView, null);
+  }
+
+  @Test
+  public void waitUntil_picksRootViewAgainAfterRootFailure() {
+    NoActivityResumedException rootFailure = new NoActivityResumedException("no activity yet");
+    AtomicInteger rootPicks = new AtomicInteger();
+    rootViewProvider =
+        () -> {
+          if (rootPicks.getAndIncrement() == 0) {
+            throw rootFailure;
+          }
+          return rootView;
+        };
+    when(mockViewFinder.getView()).thenReturn(targetView);
+    initWithViewInteraction();
+
+    testInteraction.waitUntil(mockAssertion);
+
+    assertThat(rootPicks.get(), is(2));
+    verify(mockAssertion).check(targetView, null);
+  }
+
+  @Test
+  public void waitUntil_reportsRootFailureAfterTimeout() {
+    NoActivityResumedException rootFailure = new NoActivityResumedException("no activity");
+    rootViewProvider =
+        () -> {
+          throw rootFailure;
+        };
+    initWithViewInteraction();
+    IdlingPolicy policy = IdlingPolicies.getViewConditionPolicy();
+    IdlingPolicies.setViewConditionTimeout(50, TimeUnit.MILLISECONDS);
+    try {
+      testInteraction.waitUntil(mockAssertion);
+      fail("Should propagate the failure to pick a root view!");
+    } catch (NoActivityResumedException e) {
+      assertThat(e, is(rootFailure));
+    } finally {
+      IdlingPolicies.setViewConditionTimeout(policy.getIdleTimeout(), policy.getIdleTimeoutUnit());
+    }
+
+    verify(mockAssertion, never()).check(any(), any());
+  }
+
   @Test
   public void verifyPerformTwiceUpdatesPreviouslyMatched() {
     View firstView = new View(getInstrumentation().getContext());
@@ -390,6 +489,7 @@ public class ViewInteractionTest {
     when(mockViewFinder.getView()).thenReturn(targetView);
     // enable remote interaction
     when(mockRemoteInteraction.isRemoteProcess()).thenReturn(false);
+    when(mockRemoteInteraction.hasRemoteInstances()).thenReturn(true);
     // noinspection unchecked
     when(mockRemoteInteraction.createRemoteCheckCallable(
             ArgumentMatchers.any(),
@@ -435,6 +535,7 @@ public class ViewInteractionTest {
     when(mockViewFinder.getView()).thenThrow(noActivityResumed);
     // enable remote interaction
     when(mockRemoteInteraction.isRemoteProcess()).thenReturn(false);
+    when(mockRemoteInteraction.hasRemoteInstances()).thenReturn(true);
     // noinspection unchecked
     when(mockRemoteInteraction.createRemoteCheckCallable(
             ArgumentMatchers.any(),
@@ -502,6 +603,34 @@ public class ViewInteractionTest {
             "+-endSpan: Espresso.check(MockAssert, Matcher Description)"));
   }
 
+  @Test
+  public void checkWithoutRemoteInstances_runsLocallyOnly() {
+    when(mockViewFinder.getView()).thenReturn(targetView);
+    when(mockRemoteInteraction.isRemoteProcess()).thenReturn(false);
+    when(mockRemoteInteraction.hasRemoteInstances()).thenReturn(false);
+    initWithViewInteraction();
+
+    testInteraction.check(mockAssertion);
+
+    verify(mockAssertion).check(targetView, null);
+    verify(mockRemoteInteraction, never())
+        .createRemoteCheckCallable(
+            ArgumentMatchers.any(), ArgumentMatchers.any(), anyMap(), any(ViewAssertion.class));
+  }
+
+  @Test
+  public void checkWithoutRemoteInstances_triesRemoteIfNoActivityResumed() {
+    initWithRunCheckWithSuccessfulRemoteInteraction();
+    when(mockRemoteInteraction.hasRemoteInstances()).thenReturn(false);
+    initWithViewInteraction();
+
+    testInteraction.check(mockAssertion);
+
+    verify(mockRemoteInteraction)
+        .createRemoteCheckCallable(
+            ArgumentMatchers.any(), ArgumentMatchers.any(), anyMap(), any(ViewAssertion.class));
+  }
+
   @Test
   public void verifyPerformWithMultipleIBinders() {
     initWithRunPerformWithSuccessfulRemoteInteraction();
@@ -596,7 +725,9 @@ public class ViewInteractionTest {
                     new ThreadFactoryBuilder().setNameFormat("Espresso Remote #%d").build())),
             mockControlledLooper,
             TestFlowVisualizer.getInstance(PlatformTestStorageRegistry.getInstance()),
-            Tracing.getInstance());
+            Tracing.getInstance(),
+            mockViewFinderFactory,
+            rootViewProvider);
   }
 
   private void initWithRunPerformWithSuccessfulRemoteInteraction() {
@@ -623,6 +754,7 @@ public class ViewInteractionTest {
 
     // enable remote interaction
     when(mockRemoteInteraction.isRemoteProcess()).thenReturn(false);
+    when(mockRemoteInteraction.hasRemoteInstances()).thenReturn(true);
   }
 
   private static final class BindableViewAction implements ViewAction, Bindable {
@@ -20,6 +20,8 @@ import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.rules.ExpectedException.none;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -29,6 +31,7 @@ import androidx.annotation.NonNull;
 import androidx.test.espresso.InjectEventSecurityException;
 import androidx.test.espresso.PerformException;
 import androidx.test.espresso.UiController;
+import androidx.test.espresso.base.BulkTextInjectingUiController;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import org.hamcrest.CustomTypeSafeMatcher;
@@ -45,6 +48,7 @@ import org.mockito.Mock;
 public class TypeTextActionTest {
   @Rule public ExpectedException expectedException = none();
   @Mock private UiController mockUiController;
+  @Mock private BulkTextInjectingUiController mockBulkUiController;
 
   private View view;
 
@@ -91,6 +95,29 @@ public class TypeTextActionTest {
     typeTextAction.perform(mockUiController, view);
   }
 
+  @Test
+  public void typeTextActionPerform_injectsInBulk() throws InjectEventSecurityException {
+    String stringToBeTyped = "Hello!";
+    typeTextAction = new TypeTextAction(stringToBeTyped);
+    when(mockBulkUiController.injectMotionEvent(isA(MotionEvent.class))).thenReturn(true);
+    when(mockBulkUiController.injectStringInBulk(stringToBeTyped)).thenReturn(true);
+    typeTextAction.perform(mockBulkUiController, view);
+    verify(mockBulkUiController).injectStringInBulk(stringToBeTyped);
+    verify(mockBulkUiController, never()).injectString(stringToBeTyped);
+  }
+
+  @Test
+  public void typeTextActionPerformFailed_inBulk() throws InjectEventSecurityException {
+    String stringToBeTyped = "Hello!";
+    typeTextAction = new TypeTextAction(stringToBeTyped);
+    when(mockBulkUiController.injectMotionEvent(isA(MotionEvent.class))).thenReturn(true);
+    when(mockBulkUiController.injectStringInBulk(stringToBeTyped)).thenReturn(false);
+
+    expectedException.expect(PerformException.class);
+    expectedException.expectCause(not(instanceOfInjectEventSecurityException()));
+    typeTextAction.perform(mockBulkUiController, view);
+  }
+
   @NonNull
   private static CustomTypeSafeMatcher<Throwable> instanceOfInjectEventSecurityException() {
     return new CustomTypeSafeMatcher<Throwable>("instanceof InjectEventSecurityException") {
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link IdleWaitStats}. */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IdleWaitStatsTest {
+
+  private final IdleWaitStats stats = new IdleWaitStats();
+
+  @Test
+  public void emptyByDefault() {
+    assertThat(stats.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void record_bucketsByDuration() {
+    stats.record("DYNAMIC_TASKS_HAVE_IDLED", 0, 1);
+    stats.record("DYNAMIC_TASKS_HAVE_IDLED", 7, 2);
+    stats.record("DYNAMIC_TASKS_HAVE_IDLED", 60000, 3);
+
+    String[] lines = write().split("\n");
+
+    assertThat(lines).hasLength(2);
+    assertThat(lines[0]).startsWith("name,count,total_ms,max_ms,iterations,le_0ms,le_1ms");
+    assertThat(lines[0]).endsWith(",le_10000ms,gt_10000ms");
+    assertThat(lines[1])
+        .isEqualTo("DYNAMIC_TASKS_HAVE_IDLED,3,60007,60000,6,1,0,0,0,1,0,0,0,0,0,0,0,0,0,1");
+  }
+
+  @Test
+  public void recordIdlingResource_prefixesName() {
+    stats.recordIdlingResource("my, resource", 3);
+
+    assertThat(write()).contains("\nIdlingResource:my  resource,1,3,3,0,");
+  }
+
+  @Test
+  public void reset_clearsHistograms() {
+    stats.record(IdleWaitStats.MAIN_LOOPER_HAS_IDLED, 1, 1);
+    stats.reset();
+
+    assertThat(stats.isEmpty()).isTrue();
+  }
+
+  private String write() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(bytes);
+    stats.writeTo(out);
+    out.flush();
+    return bytes.toString();
+  }
+}
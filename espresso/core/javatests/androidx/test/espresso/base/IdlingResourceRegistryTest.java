@@ -26,7 +26,9 @@ import android.os.HandlerThread;
 import android.os.Looper;
 import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.test.espresso.IdlingRegistry;
 import androidx.test.espresso.IdlingResource;
+import androidx.test.espresso.IdlingResource.ResourceCallback;
 import androidx.test.espresso.TestTracer;
 import androidx.test.espresso.base.IdlingResourceRegistry.IdleNotificationCallback;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -115,7 +117,7 @@ public class IdlingResourceRegistryTest {
   }
 
   @Test
-  public void registerDuplicates() {
+  public void registerDuplicates() throws Exception {
     IdlingResource r1 = new OnDemandIdlingResource("r1");
     IdlingResource r1dup = new OnDemandIdlingResource("r1");
     assertTrue(registry.registerResources(Lists.newArrayList(r1)));
@@ -123,6 +125,7 @@ public class IdlingResourceRegistryTest {
     assertFalse(registry.registerResources(Lists.newArrayList(r1dup)));
     assertEquals(1, registry.getResources().size());
 
+    waitForMainThread();
     assertThat(tracer.getSpans()).containsExactly("beginSpan: IdleResource.r1").inOrder();
   }
 
@@ -234,7 +237,7 @@ public class IdlingResourceRegistryTest {
   }
 
   @Test
-  public void registerAndUnregisterReturnValue() {
+  public void registerAndUnregisterReturnValue() throws Exception {
     IdlingResource r1 = new OnDemandIdlingResource("r1");
     IdlingResource r2 = new OnDemandIdlingResource("r2");
 
@@ -244,6 +247,8 @@ public class IdlingResourceRegistryTest {
 
     IdlingResource r3 = new OnDemandIdlingResource("r3");
     assertFalse(registry.registerResources(Lists.newArrayList(r3, r3)));
+    // Resources are asked whether they are idle on the main thread.
+    waitForMainThread();
 
     IdlingResource r4 = new OnDemandIdlingResource("r4");
     assertFalse(registry.unregisterResources(Lists.newArrayList(r4)));
@@ -254,6 +259,7 @@ public class IdlingResourceRegistryTest {
 
     assertFalse(registry.unregisterResources(Lists.newArrayList(r3, r3)));
 
+    waitForMainThread();
     assertThat(tracer.getSpans())
         .containsExactly(
             "beginSpan: IdleResource.r1",
@@ -266,7 +272,7 @@ public class IdlingResourceRegistryTest {
   }
 
   @Test
-  public void getResources() {
+  public void getResources() throws Exception {
     IdlingResource r1 = new OnDemandIdlingResource("r1");
     IdlingResource r2 = new OnDemandIdlingResource("r2");
 
@@ -274,10 +280,13 @@ public class IdlingResourceRegistryTest {
 
     registry.registerResources(Lists.newArrayList(r1, r2));
     assertEquals(2, registry.getResources().size());
+    // Resources are asked whether they are idle on the main thread.
+    waitForMainThread();
 
     registry.unregisterResources(Lists.newArrayList(r1, r2));
     assertEquals(0, registry.getResources().size());
 
+    waitForMainThread();
     assertThat(tracer.getSpans())
         .containsExactly(
             "beginSpan: IdleResource.r1",
@@ -610,6 +619,284 @@ public class IdlingResourceRegistryTest {
     assertTrue(registry.getResources().contains(newReg));
   }
 
+  @Test
+  public void testSync_withIdlingRegistry_appliesChanges() {
+    IdlingRegistry idlingRegistry = IdlingRegistry.getInstance();
+    IdlingResource r1 = new OnDemandIdlingResource("r1");
+    IdlingResource r2 = new OnDemandIdlingResource("r2");
+    try {
+      idlingRegistry.register(r1);
+      registry.sync(idlingRegistry);
+      assertEquals(1, registry.getResources().size());
+      assertTrue(registry.getResources().contains(r1));
+
+      idlingRegistry.register(r2);
+      idlingRegistry.unregister(r1);
+      registry.sync(idlingRegistry);
+      assertEquals(1, registry.getResources().size());
+      assertTrue(registry.getResources().contains(r2));
+    } finally {
+      idlingRegistry.unregister(r1, r2);
+    }
+    registry.sync(idlingRegistry);
+    assertEquals(0, registry.getResources().size());
+  }
+
+  @Test
+  public void testSync_withIdlingRegistry_replacesResourceWithSameName() {
+    IdlingRegistry idlingRegistry = IdlingRegistry.getInstance();
+    IdlingResource r1 = new OnDemandIdlingResource("r1");
+    IdlingResource r1dup = new OnDemandIdlingResource("r1");
+    try {
+      idlingRegistry.register(r1);
+      registry.sync(idlingRegistry);
+
+      idlingRegistry.unregister(r1);
+      idlingRegistry.register(r1dup);
+      registry.sync(idlingRegistry);
+      assertEquals(1, registry.getResources().size());
+      assertTrue(registry.getResources().contains(r1dup));
+    } finally {
+      idlingRegistry.unregister(r1, r1dup);
+      registry.sync(idlingRegistry);
+    }
+  }
+
+  @Test
+  public void testSync_withIdlingRegistry_undoesDirectRegistrations() {
+    IdlingRegistry idlingRegistry = IdlingRegistry.getInstance();
+    IdlingResource r1 = new OnDemandIdlingResource("r1");
+    IdlingResource r2 = new OnDemandIdlingResource("r2");
+    try {
+      idlingRegistry.register(r1);
+      registry.sync(idlingRegistry);
+
+      // Nothing changed in the IdlingRegistry, but the registry itself was modified.
+      registry.registerResources(Lists.newArrayList(r2));
+      registry.sync(idlingRegistry);
+      assertEquals(1, registry.getResources().size());
+      assertTrue(registry.getResources().contains(r1));
+    } finally {
+      idlingRegistry.unregister(r1);
+      registry.sync(idlingRegistry);
+    }
+  }
+
+  @Test
+  public void allIdle_tracksBusyCount() throws Exception {
+    OnDemandIdlingResource r1 = new OnDemandIdlingResource("r1");
+    OnDemandIdlingResource r2 = new OnDemandIdlingResource("r2");
+    assertTrue(registry.allIdle());
+
+    registry.registerResources(Lists.newArrayList(r1, r2));
+    assertFalse(registry.allIdle());
+    waitForMainThread();
+    assertFalse(registry.allIdle());
+
+    r1.forceIdleNow();
+    assertFalse(registry.allIdle());
+
+    r2.forceIdleNow();
+    assertTrue(registry.allIdle());
+
+    // Going busy without a callback is only noticed when the resources are polled.
+    r1.reset();
+    assertTrue(registry.allIdle());
+    FutureTask<Boolean> resourcesIdle = createIdleCheckTask(registry);
+    handler.post(resourcesIdle);
+    assertFalse(resourcesIdle.get());
+    assertFalse(registry.allIdle());
+
+    registry.unregisterResources(Lists.newArrayList(r1));
+    assertTrue(registry.allIdle());
+  }
+
+  @Test
+  public void registerAndUnregister_whileMainThreadIsBlocked() throws Exception {
+    final CountDownLatch mainThreadBlocked = new CountDownLatch(1);
+    final CountDownLatch releaseMainThread = new CountDownLatch(1);
+    handler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            mainThreadBlocked.countDown();
+            try {
+              releaseMainThread.await();
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        });
+    try {
+      assertTrue(mainThreadBlocked.await(5, TimeUnit.SECONDS));
+      IdlingResource r1 = new OnDemandIdlingResource("r1");
+      assertTrue(registry.registerResources(Lists.newArrayList(r1)));
+      assertEquals(1, registry.getResources().size());
+      assertFalse(registry.allIdle());
+      assertTrue(registry.unregisterResources(Lists.newArrayList(r1)));
+      assertEquals(0, registry.getResources().size());
+      assertTrue(registry.allIdle());
+    } finally {
+      releaseMainThread.countDown();
+    }
+
+    waitForMainThread();
+    // Unregistered before the main thread asked it whether it is idle.
+    assertThat(tracer.getSpans()).isEmpty();
+  }
+
+  @Test
+  public void registerResources_fromOtherThread_callsResourceOnMainThread() throws Exception {
+    final AtomicReference<Looper> callbackLooper = new AtomicReference<>();
+    final AtomicReference<Looper> isIdleNowLooper = new AtomicReference<>();
+    IdlingResource r1 =
+        new OnDemandIdlingResource("r1") {
+          @Override
+          public boolean isIdleNow() {
+            isIdleNowLooper.compareAndSet(null, Looper.myLooper());
+            return true;
+          }
+
+          @Override
+          public void registerIdleTransitionCallback(ResourceCallback callback) {
+            callbackLooper.set(Looper.myLooper());
+            super.registerIdleTransitionCallback(callback);
+          }
+        };
+    final CountDownLatch mainThreadBlocked = new CountDownLatch(1);
+    final CountDownLatch releaseMainThread = new CountDownLatch(1);
+    handler.post(
+        () -> {
+          mainThreadBlocked.countDown();
+          try {
+            releaseMainThread.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        });
+    try {
+      assertTrue(mainThreadBlocked.await(5, TimeUnit.SECONDS));
+      assertTrue(registry.registerResources(Lists.newArrayList(r1)));
+      // Not asked yet, so not known to be idle.
+      assertFalse(registry.allIdle());
+      assertThat(callbackLooper.get()).isNull();
+      assertThat(isIdleNowLooper.get()).isNull();
+    } finally {
+      releaseMainThread.countDown();
+    }
+
+    waitForMainThread();
+    assertThat(callbackLooper.get()).isSameInstanceAs(Looper.getMainLooper());
+    assertThat(isIdleNowLooper.get()).isSameInstanceAs(Looper.getMainLooper());
+    assertTrue(registry.allIdle());
+  }
+
+  @Test
+  public void notifyWhenAllResourcesAreIdle_pollsResourceThatDoesNotCallBack() throws Exception {
+    final CountDownLatch allResourcesIdleLatch = new CountDownLatch(1);
+    OnDemandIdlingResource r1 = new OnDemandIdlingResource("r1");
+    registry.registerResources(Lists.newArrayList(r1));
+
+    handler.post(
+        () ->
+            registry.notifyWhenAllResourcesAreIdle(
+                new IdleNotificationCallback() {
+                  @Override
+                  public void resourcesStillBusyWarning(List<String> busyResourceNames) {}
+
+                  @Override
+                  public void resourcesHaveTimedOut(List<String> busyResourceNames) {}
+
+                  @Override
+                  public void allResourcesIdle() {
+                    allResourcesIdleLatch.countDown();
+                  }
+                }));
+
+    assertFalse(allResourcesIdleLatch.await(100, TimeUnit.MILLISECONDS));
+    r1.forceIdleNowWithoutCallback();
+    // Well before the first busy warning.
+    assertTrue(allResourcesIdleLatch.await(2, TimeUnit.SECONDS));
+
+    FutureTask<Integer> pollCount = new FutureTask<>(() -> registry.getPollCount("r1"));
+    handler.post(pollCount);
+    assertThat(pollCount.get(5, TimeUnit.SECONDS)).isGreaterThan(0);
+    assertThat(tracer.getSpans())
+        .containsExactly("beginSpan: IdleResource.r1", "+-endSpan: IdleResource.r1")
+        .inOrder();
+  }
+
+  @Test
+  public void notifyWhenAllResourcesAreIdle_latePollDoesNotStopExpectingCallback()
+      throws Exception {
+    final CountDownLatch allResourcesIdleLatch = new CountDownLatch(1);
+    OnDemandIdlingResource r1 = new OnDemandIdlingResource("r1");
+    registry.registerResources(Lists.newArrayList(r1));
+
+    handler.post(
+        () ->
+            registry.notifyWhenAllResourcesAreIdle(
+                new IdleNotificationCallback() {
+                  @Override
+                  public void resourcesStillBusyWarning(List<String> busyResourceNames) {}
+
+                  @Override
+                  public void resourcesHaveTimedOut(List<String> busyResourceNames) {}
+
+                  @Override
+                  public void allResourcesIdle() {
+                    allResourcesIdleLatch.countDown();
+                  }
+                }));
+
+    // Reports idle a little before calling back, a single poll may see it in between.
+    r1.forceIdleNowWithoutCallback();
+    Thread.sleep(20);
+    r1.forceIdleNow();
+
+    assertTrue(allResourcesIdleLatch.await(1, TimeUnit.SECONDS));
+    FutureTask<Boolean> expectedToCallBack =
+        new FutureTask<>(() -> registry.isExpectedToCallBack("r1"));
+    handler.post(expectedToCallBack);
+    assertTrue(expectedToCallBack.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void notifyWhenAllResourcesAreIdle_doesNotPollWhileIdle() throws Exception {
+    final CountDownLatch allResourcesIdleLatch = new CountDownLatch(1);
+    OnDemandIdlingResource r1 = new OnDemandIdlingResource("r1");
+    r1.forceIdleNow();
+    registry.registerResources(Lists.newArrayList(r1));
+
+    handler.post(
+        () ->
+            registry.notifyWhenAllResourcesAreIdle(
+                new IdleNotificationCallback() {
+                  @Override
+                  public void resourcesStillBusyWarning(List<String> busyResourceNames) {}
+
+                  @Override
+                  public void resourcesHaveTimedOut(List<String> busyResourceNames) {}
+
+                  @Override
+                  public void allResourcesIdle() {
+                    allResourcesIdleLatch.countDown();
+                  }
+                }));
+
+    assertTrue(allResourcesIdleLatch.await(1, TimeUnit.SECONDS));
+    FutureTask<Integer> pollCount = new FutureTask<>(() -> registry.getPollCount("r1"));
+    handler.post(pollCount);
+    assertEquals(0, (int) pollCount.get(5, TimeUnit.SECONDS));
+  }
+
+  /** Waits until the main thread has handled all messages posted so far. */
+  private void waitForMainThread() throws Exception {
+    FutureTask<Void> task = new FutureTask<>(() -> null);
+    handler.post(task);
+    task.get(5, TimeUnit.SECONDS);
+  }
+
   private FutureTask<Boolean> createIdleCheckTask(final IdlingResourceRegistry registry) {
     Callable<Boolean> isIdle =
         new Callable<Boolean>() {
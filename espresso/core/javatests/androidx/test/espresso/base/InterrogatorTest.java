@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link Interrogator} and the {@link MainLooperIdleDetection} engines. */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class InterrogatorTest {
+  private static final String TAG = InterrogatorTest.class.getSimpleName();
+  private static final int MESSAGE_COUNT = 5000;
+  private static final int ROUNDS = 5;
+
+  private HandlerThread looperThread;
+  private Handler handler;
+
+  @Before
+  public void setUp() {
+    looperThread = new HandlerThread(TAG);
+    looperThread.start();
+    handler = new Handler(looperThread.getLooper());
+  }
+
+  @After
+  public void tearDown() {
+    looperThread.quit();
+  }
+
+  @Test
+  public void reflective_drainsQueue() throws Exception {
+    assertThat(drainQueue(MainLooperIdleDetection.REFLECTIVE, MESSAGE_COUNT))
+        .isEqualTo(MESSAGE_COUNT);
+  }
+
+  @Test
+  public void eventDriven_drainsQueue() throws Exception {
+    assumeTrue(Interrogator.canObserveIdle());
+    assertThat(drainQueue(MainLooperIdleDetection.EVENT_DRIVEN, MESSAGE_COUNT))
+        .isEqualTo(MESSAGE_COUNT);
+  }
+
+  @Test
+  public void eventDriven_returnsOnIdleQueue() throws Exception {
+    assumeTrue(Interrogator.canObserveIdle());
+    assertThat(drainQueue(MainLooperIdleDetection.EVENT_DRIVEN, 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void eventDriven_waitsForTaskDueSoon() throws Exception {
+    assumeTrue(Interrogator.canObserveIdle());
+    final AtomicInteger ran = new AtomicInteger();
+    int dispatched =
+        runOnLooper(
+            new Callable<Integer>() {
+              @Override
+              public Integer call() {
+                handler.postDelayed(
+                    new Runnable() {
+                      @Override
+                      public void run() {
+                        ran.incrementAndGet();
+                      }
+                    },
+                    5);
+                return MainLooperIdleDetection.EVENT_DRIVEN.loopAndInterrogate(
+                    new DrainingHandler());
+              }
+            });
+    assertThat(dispatched).isEqualTo(1);
+    assertThat(ran.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void compareLatency() throws Exception {
+    assumeTrue(Interrogator.canObserveIdle());
+    // Warm up both engines before measuring.
+    drainQueue(MainLooperIdleDetection.REFLECTIVE, MESSAGE_COUNT);
+    drainQueue(MainLooperIdleDetection.EVENT_DRIVEN, MESSAGE_COUNT);
+
+    long reflectiveNanos = 0;
+    long eventDrivenNanos = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      drainQueue(MainLooperIdleDetection.REFLECTIVE, MESSAGE_COUNT);
+      reflectiveNanos += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      drainQueue(MainLooperIdleDetection.EVENT_DRIVEN, MESSAGE_COUNT);
+      eventDrivenNanos += System.nanoTime() - start;
+    }
+    Log.i(
+        TAG,
+        String.format(
+            Locale.ROOT,
+            "Looping over %d messages took %dus (%s) vs %dus (%s) on average.",
+            MESSAGE_COUNT,
+            TimeUnit.NANOSECONDS.toMicros(reflectiveNanos / ROUNDS),
+            MainLooperIdleDetection.REFLECTIVE,
+            TimeUnit.NANOSECONDS.toMicros(eventDrivenNanos / ROUNDS),
+            MainLooperIdleDetection.EVENT_DRIVEN));
+  }
+
+  private int drainQueue(final MainLooperIdleDetection detection, final int messageCount)
+      throws Exception {
+    return runOnLooper(
+        new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            for (int i = 0; i < messageCount; i++) {
+              handler.sendEmptyMessage(i);
+            }
+            return detection.loopAndInterrogate(new DrainingHandler());
+          }
+        });
+  }
+
+  private <T> T runOnLooper(Callable<T> callable) throws Exception {
+    FutureTask<T> task = new FutureTask<>(callable);
+    handler.post(task);
+    return task.get(10, TimeUnit.SECONDS);
+  }
+
+  /** Loops until nothing is due on the queue and counts the dispatched messages. */
+  private static class DrainingHandler implements Interrogator.InterrogationHandler<Integer> {
+    private int dispatched;
+    private String lastMessage;
+
+    @Override
+    public boolean queueEmpty() {
+      return false;
+    }
+
+    @Override
+    public boolean taskDueSoon() {
+      return true;
+    }
+
+    @Override
+    public boolean taskDueLong() {
+      return false;
+    }
+
+    @Override
+    public boolean barrierUp() {
+      return true;
+    }
+
+    @Override
+    public boolean beforeTaskDispatch() {
+      dispatched++;
+      return true;
+    }
+
+    @Override
+    public void quitting() {}
+
+    @Override
+    public void setMessage(Message m) {
+      lastMessage = String.valueOf(m.what);
+    }
+
+    @Override
+    public String getMessage() {
+      return lastMessage;
+    }
+
+    @Override
+    public Integer get() {
+      return dispatched;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import androidx.test.espresso.InjectEventSecurityException;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link MotionEventInjectionScheduler}. */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class MotionEventInjectionSchedulerTest {
+
+  private final RecordingInjectionStrategy strategy = new RecordingInjectionStrategy();
+  private final List<MotionEvent> events = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    for (MotionEvent event : events) {
+      event.recycle();
+    }
+  }
+
+  @Test
+  public void injectsAllEventsInOrder_lastOneSync() throws Exception {
+    createEvents(0, 10, 20, 30);
+    MotionEventInjectionScheduler scheduler =
+        new MotionEventInjectionScheduler(new EventInjector(strategy));
+
+    assertThat(scheduler.schedule(events).get(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(strategy.injected).containsExactlyElementsIn(events).inOrder();
+    assertThat(strategy.syncFlags).containsExactly(false, false, false, true).inOrder();
+    MotionEventInjectionScheduler.TimingReport report = scheduler.getLastTimingReport();
+    assertThat(report.eventCount).isEqualTo(4);
+    assertThat(report.batchCount).isEqualTo(4);
+  }
+
+  @Test
+  public void neverInjectsAheadOfTargetTime() throws Exception {
+    createEvents(0, 25, 50);
+    MotionEventInjectionScheduler scheduler =
+        new MotionEventInjectionScheduler(new EventInjector(strategy));
+
+    long start = System.nanoTime();
+    scheduler.schedule(events).get(5, TimeUnit.SECONDS);
+
+    assertThat(strategy.injectedAtNanos.get(1) - start)
+        .isAtLeast(TimeUnit.MILLISECONDS.toNanos(25));
+    assertThat(strategy.injectedAtNanos.get(2) - start)
+        .isAtLeast(TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void batchesEventsWithinWindow() throws Exception {
+    createEvents(0, 5, 10, 20, 25, 30);
+    MotionEventInjectionScheduler scheduler =
+        new MotionEventInjectionScheduler(
+            new EventInjector(strategy), TimeUnit.MILLISECONDS.toNanos(16));
+
+    assertThat(scheduler.schedule(events).get(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(strategy.injected).containsExactlyElementsIn(events).inOrder();
+    assertThat(scheduler.getLastTimingReport().batchCount).isEqualTo(2);
+  }
+
+  @Test
+  public void reportsFailedInjection() throws Exception {
+    createEvents(0, 1);
+    strategy.result = false;
+    MotionEventInjectionScheduler scheduler =
+        new MotionEventInjectionScheduler(new EventInjector(strategy));
+
+    assertThat(scheduler.schedule(events).get(5, TimeUnit.SECONDS)).isFalse();
+  }
+
+  @Test
+  public void propagatesInjectionException() throws Exception {
+    createEvents(0, 1, 2);
+    strategy.failure = new InjectEventSecurityException("denied");
+    MotionEventInjectionScheduler scheduler =
+        new MotionEventInjectionScheduler(new EventInjector(strategy));
+
+    try {
+      scheduler.schedule(events).get(5, TimeUnit.SECONDS);
+      fail("Expected injection to fail");
+    } catch (ExecutionException expected) {
+      assertThat(expected).hasCauseThat().isSameInstanceAs(strategy.failure);
+    }
+    assertThat(strategy.injected).isEmpty();
+  }
+
+  @Test
+  public void batchWindowForRefreshRate() {
+    assertThat(MotionEventInjectionScheduler.batchWindowForRefreshRate(60f))
+        .isEqualTo(16_666_666L);
+    assertThat(MotionEventInjectionScheduler.batchWindowForRefreshRate(0f))
+        .isEqualTo(MotionEventInjectionScheduler.DEFAULT_BATCH_WINDOW_NANOS);
+    assertThat(MotionEventInjectionScheduler.batchWindowForRefreshRate(10_000f))
+        .isEqualTo(MotionEventInjectionScheduler.DEFAULT_BATCH_WINDOW_NANOS);
+  }
+
+  private void createEvents(long... offsetsMs) {
+    long downTime = 1000;
+    for (int i = 0; i < offsetsMs.length; i++) {
+      int action =
+          i == 0
+              ? MotionEvent.ACTION_DOWN
+              : i == offsetsMs.length - 1 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE;
+      events.add(MotionEvent.obtain(downTime, downTime + offsetsMs[i], action, i, i, 0));
+    }
+  }
+
+  private static class RecordingInjectionStrategy implements EventInjectionStrategy {
+    final List<MotionEvent> injected = new ArrayList<>();
+    final List<Boolean> syncFlags = new ArrayList<>();
+    final List<Long> injectedAtNanos = new ArrayList<>();
+    volatile boolean result = true;
+    volatile InjectEventSecurityException failure;
+
+    @Override
+    public boolean injectKeyEvent(KeyEvent keyEvent) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public synchronized boolean injectMotionEvent(MotionEvent motionEvent, boolean sync)
+        throws InjectEventSecurityException {
+      if (failure != null) {
+        throw failure;
+      }
+      injectedAtNanos.add(System.nanoTime());
+      injected.add(motionEvent);
+      syncFlags.add(sync);
+      return result;
+    }
+  }
+}
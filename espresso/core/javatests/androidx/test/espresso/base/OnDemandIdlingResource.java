@@ -22,7 +22,7 @@ import androidx.test.espresso.IdlingResource;
 public class OnDemandIdlingResource implements IdlingResource {
   private final String name;
 
-  private boolean isIdle = false;
+  private volatile boolean isIdle = false;
   private ResourceCallback callback;
 
   public OnDemandIdlingResource(String name) {
@@ -51,6 +51,11 @@ public class OnDemandIdlingResource implements IdlingResource {
     }
   }
 
+  /** Becomes idle without notifying the registered callback. */
+  public void forceIdleNowWithoutCallback() {
+    isIdle = true;
+  }
+
   public void reset() {
     isIdle = false;
   }
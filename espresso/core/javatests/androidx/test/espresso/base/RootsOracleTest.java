@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Looper;
+import android.view.View;
+import android.view.WindowManager;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.espresso.Root;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.ui.app.SendActivity;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link RootsOracle}. */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class RootsOracleTest {
+
+  private final RootsOracle rootsOracle = new RootsOracle(Looper.getMainLooper());
+
+  @Test
+  public void listActiveRoots_reusesRootsWhileWindowsAreUnchanged() {
+    try (ActivityScenario<SendActivity> scenario = ActivityScenario.launch(SendActivity.class)) {
+      scenario.onActivity(
+          activity -> {
+            List<Root> roots = rootsOracle.listActiveRoots();
+            View decorView = activity.getWindow().getDecorView();
+            assertThat(getDecorViews(roots)).contains(decorView);
+
+            List<Root> rootsAgain = rootsOracle.listActiveRoots();
+            assertThat(rootsAgain).isNotSameInstanceAs(roots);
+            assertThat(rootsAgain).hasSize(roots.size());
+            for (int i = 0; i < roots.size(); i++) {
+              assertThat(rootsAgain.get(i)).isSameInstanceAs(roots.get(i));
+            }
+          });
+    }
+  }
+
+  @Test
+  public void listActiveRoots_rebuildsRootsWhenWindowIsAdded() {
+    try (ActivityScenario<SendActivity> scenario = ActivityScenario.launch(SendActivity.class)) {
+      scenario.onActivity(
+          activity -> {
+            int rootCount = rootsOracle.listActiveRoots().size();
+            View panel = new View(activity);
+            activity
+                .getWindowManager()
+                .addView(
+                    panel,
+                    new WindowManager.LayoutParams(
+                        WindowManager.LayoutParams.TYPE_APPLICATION_PANEL));
+            try {
+              List<Root> roots = rootsOracle.listActiveRoots();
+              assertThat(roots).hasSize(rootCount + 1);
+              // The most recently added window comes first.
+              assertThat(roots.get(0).getDecorView()).isSameInstanceAs(panel);
+            } finally {
+              activity.getWindowManager().removeViewImmediate(panel);
+            }
+
+            assertThat(getDecorViews(rootsOracle.listActiveRoots())).doesNotContain(panel);
+          });
+    }
+  }
+
+  private static List<View> getDecorViews(List<Root> roots) {
+    List<View> decorViews = new ArrayList<>(roots.size());
+    for (Root root : roots) {
+      decorViews.add(root.getDecorView());
+    }
+    return decorViews;
+  }
+}
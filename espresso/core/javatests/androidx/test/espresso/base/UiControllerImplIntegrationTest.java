@@ -134,6 +134,34 @@ public class UiControllerImplIntegrationTest {
     }
   }
 
+  @Test
+  public void injectStringInBulk() throws InterruptedException {
+    try (ActivityScenario<SendActivity> activityScenario =
+        ActivityScenario.launch(SendActivity.class)) {
+      // Focus the text field by typing into it first.
+      onView(withId(R.id.send_data_to_call_edit_text)).perform(typeText("a"));
+      getInstrumentation()
+          .runOnMainSync(
+              () -> {
+                try {
+                  assertThat(
+                          ((BulkTextInjectingUiController) uiController)
+                              .injectStringInBulk("This is a string with 32 chars!!"))
+                      .isTrue();
+                } catch (InjectEventSecurityException e) {
+                  throw new RuntimeException(e);
+                }
+              });
+
+      activityScenario.onActivity(
+          activity -> {
+            EditText editText = activity.findViewById(R.id.send_data_to_call_edit_text);
+            assertThat(editText.getText().toString())
+                .isEqualTo("aThis is a string with 32 chars!!");
+          });
+    }
+  }
+
   @Test
   public void testInjectEmptyString() throws InterruptedException {
     try (ActivityScenario<SendActivity> activityScenario =
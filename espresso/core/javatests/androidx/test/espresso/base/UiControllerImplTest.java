@@ -20,12 +20,17 @@ import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 import android.os.Build;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
+import androidx.test.espresso.IdlingResource;
+import androidx.test.espresso.IdlingResource.ResourceCallback;
 import androidx.test.espresso.IdlingResourceTimeoutException;
 import androidx.test.espresso.base.IdlingResourceRegistry.IdleNotificationCallback;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -36,6 +41,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Provider;
 import org.junit.After;
@@ -55,6 +63,7 @@ public class UiControllerImplTest {
   private LooperThread testThread;
   private ThreadPoolExecutor asyncPool;
   private IdlingResourceRegistry idlingResourceRegistry;
+  private EventInjector injector;
 
   private static class LooperThread extends Thread {
     private final CountDownLatch init = new CountDownLatch(1);
@@ -108,7 +117,7 @@ public class UiControllerImplTest {
         new IdlingResourceRegistry(testThread.getLooper(), Tracing.getInstance());
     asyncPool =
         new ThreadPoolExecutor(3, 3, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
-    EventInjector injector = null;
+    injector = null;
     if (Build.VERSION.SDK_INT > 15) {
       InputManagerEventInjectionStrategy strat = new InputManagerEventInjectionStrategy();
       strat.initialize();
@@ -229,6 +238,63 @@ public class UiControllerImplTest {
         latch.await(10, TimeUnit.SECONDS));
   }
 
+  @Test
+  public void loopMainThreadUntilWokenUp_returnsWhenWokenUp() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicLong loopedForMs = new AtomicLong();
+    assertTrue(
+        testThread
+            .getHandler()
+            .post(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    testThread
+                        .getHandler()
+                        .postDelayed(
+                            new Runnable() {
+                              @Override
+                              public void run() {
+                                uiController.get().wakeUp();
+                              }
+                            },
+                            10);
+                    long start = SystemClock.uptimeMillis();
+                    uiController.get().loopMainThreadUntilWokenUp(60000);
+                    loopedForMs.set(SystemClock.uptimeMillis() - start);
+                    latch.countDown();
+                  }
+                }));
+    assertTrue(
+        "Never returned from UiControllerImpl.loopMainThreadUntilWokenUp();",
+        latch.await(10, TimeUnit.SECONDS));
+    assertTrue("Looped for " + loopedForMs.get() + "ms", loopedForMs.get() < 5000);
+  }
+
+  @Test
+  public void wakeUp_beforeLooping_isIgnored() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicLong loopedForMs = new AtomicLong();
+    assertTrue(
+        testThread
+            .getHandler()
+            .post(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    uiController.get().wakeUp();
+                    long start = SystemClock.uptimeMillis();
+                    uiController.get().loopMainThreadUntilWokenUp(200);
+                    loopedForMs.set(SystemClock.uptimeMillis() - start);
+                    latch.countDown();
+                  }
+                }));
+    assertTrue(
+        "Never returned from UiControllerImpl.loopMainThreadUntilWokenUp();",
+        latch.await(10, TimeUnit.SECONDS));
+    assertTrue("Looped for " + loopedForMs.get() + "ms", loopedForMs.get() >= 200);
+  }
+
   @Test
   public void loopMainThreadUntilIdle_fullQueue() {
     final CountDownLatch latch = new CountDownLatch(3);
@@ -512,6 +578,125 @@ public class UiControllerImplTest {
         latch.await(timeToWaitForIdle - 100, TimeUnit.MILLISECONDS));
   }
 
+  @Test
+  public void loopMainThreadUntilIdle_doesNotAllocateWhenIdle() throws Exception {
+    // AsyncTask pools are left out: ThreadPoolExecutor.getActiveCount() iterates its workers.
+    UiControllerImpl controller = createControllerWithoutAsyncTaskPool();
+    assertEquals("Objects allocated by idle syncs", 0, countIdleSyncAllocations(controller, null));
+  }
+
+  @Test
+  public void loopMainThreadUntilIdle_doesNotAllocateWhenWaitingForIdlingResource()
+      throws Exception {
+    // Below API 29 androidx.tracing finds out whether tracing is enabled through reflection.
+    assumeTrue(Build.VERSION.SDK_INT >= 29);
+    final UiControllerImpl controller = createControllerWithoutAsyncTaskPool();
+    final Handler handler = testThread.getHandler();
+    final AtomicReference<ResourceCallback> resourceCallback = new AtomicReference<>();
+    final AtomicBoolean resourceIdle = new AtomicBoolean(true);
+    assertTrue(
+        idlingResourceRegistry.registerResources(
+            Lists.newArrayList(
+                new IdlingResource() {
+                  @Override
+                  public String getName() {
+                    return "busyOnEverySync";
+                  }
+
+                  @Override
+                  public boolean isIdleNow() {
+                    return resourceIdle.get();
+                  }
+
+                  @Override
+                  public void registerIdleTransitionCallback(ResourceCallback callback) {
+                    resourceCallback.set(callback);
+                  }
+                })));
+    final Runnable goIdle =
+        new Runnable() {
+          @Override
+          public void run() {
+            resourceIdle.set(true);
+            resourceCallback.get().onTransitionToIdle();
+          }
+        };
+    Runnable goBusy =
+        new Runnable() {
+          @Override
+          public void run() {
+            // Busy until the looper got to the next message, so every sync waits on the resource.
+            resourceIdle.set(false);
+            handler.post(goIdle);
+          }
+        };
+
+    assertEquals(
+        "Objects allocated by syncs waiting on an idling resource",
+        0,
+        countIdleSyncAllocations(controller, goBusy));
+  }
+
+  private UiControllerImpl createControllerWithoutAsyncTaskPool() {
+    return new UiControllerImpl(
+        injector,
+        new NoopRunnableIdleNotifier(),
+        new NoopRunnableIdleNotifier(),
+        new Provider<IdleNotifier<IdleNotificationCallback>>() {
+          @Override
+          public IdleNotifier<IdleNotificationCallback> get() {
+            return idlingResourceRegistry.asIdleNotifier();
+          }
+        },
+        testThread.getLooper(),
+        idlingResourceRegistry);
+  }
+
+  /**
+   * Returns the objects allocated on the main thread by 100 calls to {@link
+   * UiControllerImpl#loopMainThreadUntilIdle()}, each preceded by {@code beforeEachSync} if given.
+   */
+  @SuppressWarnings("deprecation") // Debug alloc counting is the only per thread counter.
+  private int countIdleSyncAllocations(
+      final UiControllerImpl controller, final Runnable beforeEachSync) throws Exception {
+    final AtomicInteger allocations = new AtomicInteger(-1);
+    final CountDownLatch latch = new CountDownLatch(1);
+    assertTrue(
+        testThread
+            .getHandler()
+            .post(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    // Warm up lazily initialized state first, e.g. the idle wait histograms.
+                    for (int i = 0; i < 10; i++) {
+                      sync();
+                    }
+                    Debug.startAllocCounting();
+                    try {
+                      Debug.resetThreadAllocCount();
+                      for (int i = 0; i < 100; i++) {
+                        sync();
+                      }
+                      allocations.set(Debug.getThreadAllocCount());
+                    } finally {
+                      Debug.stopAllocCounting();
+                    }
+                    latch.countDown();
+                  }
+
+                  private void sync() {
+                    if (beforeEachSync != null) {
+                      beforeEachSync.run();
+                    }
+                    controller.loopMainThreadUntilIdle();
+                  }
+                }));
+
+    assertTrue("Timed out waiting for idle syncs", latch.await(10, TimeUnit.SECONDS));
+    return allocations.get();
+  }
+
   /** Verify uiController can be initialized on instrumentation thread. */
   @Test
   public void interruptInitialization() {
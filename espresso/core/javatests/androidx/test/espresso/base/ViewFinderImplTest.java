@@ -18,13 +18,18 @@ package androidx.test.espresso.base;
 
 import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
 import static org.junit.rules.ExpectedException.none;
 
 import android.content.Context;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 import androidx.test.annotation.UiThreadTest;
@@ -34,6 +39,9 @@ import androidx.test.espresso.ViewFinder;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.MediumTest;
 import javax.inject.Provider;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -106,6 +114,40 @@ public class ViewFinderImplTest {
     finder.getView();
   }
 
+  @Test
+  @UiThreadTest
+  public void getView_missing_listsAdapterViewsInSameTraversal() {
+    ListView list1 = new ListView(mTargetContext);
+    ListView list2 = new ListView(mTargetContext);
+    testView.addView(list1);
+    ((ViewGroup) nestedChild.getParent()).addView(list2);
+    int[] evaluations = new int[1];
+    Matcher<View> countingMatcher =
+        new TypeSafeMatcher<View>() {
+          @Override
+          protected boolean matchesSafely(View view) {
+            evaluations[0]++;
+            return false;
+          }
+
+          @Override
+          public void describeTo(Description description) {
+            description.appendText("counting");
+          }
+        };
+    ViewFinder finder = new ViewFinderImpl(countingMatcher, testViewProvider);
+
+    try {
+      finder.getView();
+      fail("expected NoMatchingViewException");
+    } catch (NoMatchingViewException expected) {
+      assertThat(
+          expected.getMessage(),
+          containsString("one of the following AdapterViews:" + list1 + "\n- " + list2));
+    }
+    assertThat(evaluations[0], is(9));
+  }
+
   @Test
   @UiThreadTest
   public void getView_multiple() {
@@ -117,6 +117,27 @@ public class ViewHierarchyExceptionHandlerTest {
     verify(testStorage).openOutputFile(eq("view-hierarchy-1.txt"));
   }
 
+  @Test
+  public void handle_noMatchingViewException_rendersMessageBeforeThrowing() {
+    TextView root = new TextView(getInstrumentation().getTargetContext());
+    root.setText("before");
+    NoMatchingViewException exceptionUnderTest =
+        new NoMatchingViewException.Builder()
+            .withViewMatcher(alwaysFalseMatcher)
+            .withRootView(root)
+            .build();
+
+    failureCount.incrementAndGet();
+    NoMatchingViewException thrown =
+        assertThrows(
+            NoMatchingViewException.class,
+            () -> noMatchingViewExceptionHandler.handle(exceptionUnderTest, alwaysFalseMatcher));
+    root.setText("after");
+
+    assertThat(thrown).hasMessageThat().contains("text=before");
+    assertThat(thrown).hasMessageThat().doesNotContain("text=after");
+  }
+
   @Test
   public void handle_nonNoMatchingViewException() {
     // No-op. No exception should be thrown.
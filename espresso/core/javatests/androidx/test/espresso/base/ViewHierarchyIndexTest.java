@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.espresso.matcher.ViewMatchers.isAssignableFrom;
+import static androidx.test.espresso.matcher.ViewMatchers.isDisplayed;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static androidx.test.espresso.matcher.ViewMatchers.withText;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static com.google.common.truth.Truth.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.notNullValue;
+
+import android.content.Context;
+import android.text.method.PasswordTransformationMethod;
+import android.view.View;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.espresso.ViewFinder;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ViewHierarchyIndex}. */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ViewHierarchyIndexTest {
+
+  private final ViewHierarchyIndex index = new ViewHierarchyIndex(true);
+  private FrameLayout root;
+  private LinearLayout layout;
+  private TextView text1;
+  private TextView text2;
+  private Button button;
+
+  @Before
+  public void setUp() {
+    Context context = getInstrumentation().getTargetContext();
+    root = new FrameLayout(context);
+    layout = new LinearLayout(context);
+    text1 = new TextView(context);
+    text1.setId(1);
+    text1.setText("one");
+    text2 = new TextView(context);
+    text2.setId(2);
+    text2.setText("two");
+    button = new Button(context);
+    button.setId(2);
+    button.setText("one");
+    root.addView(layout);
+    layout.addView(text1);
+    layout.addView(text2);
+    root.addView(button);
+  }
+
+  @Test
+  @UiThreadTest
+  public void disabled() {
+    assertThat(new ViewHierarchyIndex(false).getCandidates(root, withId(1))).isNull();
+  }
+
+  @Test
+  @UiThreadTest
+  public void candidatesById() {
+    assertThat(index.getCandidates(root, withId(1))).containsExactly(text1);
+    assertThat(index.getCandidates(root, allOf(isDisplayed(), withId(2))))
+        .containsExactly(button, text2)
+        .inOrder();
+    assertThat(index.getCandidates(root, withId(3))).isEmpty();
+  }
+
+  @Test
+  @UiThreadTest
+  public void candidatesByText() {
+    assertThat(index.getCandidates(root, withText("one")))
+        .containsExactly(button, text1)
+        .inOrder();
+  }
+
+  @Test
+  @UiThreadTest
+  public void candidatesByText_withTransformationMethod() {
+    text2.setTransformationMethod(PasswordTransformationMethod.getInstance());
+
+    // The transformed text is not indexed, so all views may match.
+    assertThat(index.getCandidates(root, withText("one"))).hasSize(5);
+  }
+
+  @Test
+  @UiThreadTest
+  public void candidatesByClass() {
+    assertThat(index.getCandidates(root, isAssignableFrom(Button.class))).containsExactly(button);
+    assertThat(index.getCandidates(root, allOf(isDisplayed(), isAssignableFrom(TextView.class))))
+        .containsExactly(button, text1, text2)
+        .inOrder();
+  }
+
+  @Test
+  @UiThreadTest
+  public void unknownMatcher_allViews() {
+    assertThat(index.getCandidates(root, notNullValue()))
+        .containsExactly(root, layout, button, text1, text2)
+        .inOrder();
+  }
+
+  @Test
+  @UiThreadTest
+  public void keptUntilLayout() {
+    assertThat(index.getCandidates(root, withId(1))).containsExactly(text1);
+
+    text2.setId(1);
+    assertThat(index.getCandidates(root, withId(1))).containsExactly(text1);
+
+    root.getViewTreeObserver().dispatchOnGlobalLayout();
+    assertThat(index.getCandidates(root, withId(1))).containsExactly(text1, text2).inOrder();
+  }
+
+  @Test
+  @UiThreadTest
+  public void viewFinder_verifiesCandidates() {
+    ViewFinder finder =
+        new ViewFinderImpl(
+            allOf(withId(2), isAssignableFrom(Button.class)),
+            () -> root,
+            index,
+            new ViewMatcherProfiler());
+
+    assertThat(finder.getView()).isSameInstanceAs(button);
+  }
+}
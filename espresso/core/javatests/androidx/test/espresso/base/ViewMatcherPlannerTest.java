@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.espresso.matcher.ViewMatchers.isAssignableFrom;
+import static androidx.test.espresso.matcher.ViewMatchers.isDisplayed;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static androidx.test.espresso.matcher.ViewMatchers.withText;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static com.google.common.truth.Truth.assertThat;
+import static org.hamcrest.Matchers.allOf;
+
+import android.view.View;
+import android.widget.TextView;
+import androidx.test.espresso.base.ViewMatcherPlanner.PlannedConjunction;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+import org.hamcrest.TypeSafeMatcher;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ViewMatcherPlanner}. */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ViewMatcherPlannerTest {
+
+  @Test
+  public void notAConjunction_notPlanned() {
+    Matcher<View> matcher = withId(1);
+    assertThat(ViewMatcherPlanner.plan(matcher)).isSameInstanceAs(matcher);
+  }
+
+  @Test
+  public void alreadyInOrder_notPlanned() {
+    Matcher<View> matcher = allOf(withId(1), isDisplayed());
+    assertThat(ViewMatcherPlanner.plan(matcher)).isSameInstanceAs(matcher);
+  }
+
+  @Test
+  public void ordersByRank() {
+    Matcher<View> displayed = isDisplayed();
+    Matcher<View> text = withText("text");
+    Matcher<View> clazz = isAssignableFrom(TextView.class);
+    Matcher<View> id = withId(1);
+
+    Matcher<? super View> plan =
+        ViewMatcherPlanner.plan(allOf(displayed, allOf(text, clazz), id));
+
+    assertThat(((PlannedConjunction) plan).conjuncts)
+        .containsExactly(id, clazz, text, displayed)
+        .inOrder();
+  }
+
+  @Test
+  public void unrankedConjunctsKeepTheirPosition() {
+    Matcher<View> displayed = isDisplayed();
+    UnrankedMatcher unranked = new UnrankedMatcher();
+    Matcher<View> text = withText("text");
+    Matcher<View> id = withId(1);
+
+    Matcher<? super View> plan = ViewMatcherPlanner.plan(allOf(displayed, text, unranked, id));
+
+    assertThat(((PlannedConjunction) plan).conjuncts)
+        .containsExactly(text, displayed, unranked, id)
+        .inOrder();
+  }
+
+  @Test
+  public void matchesAndDescribesLikeOriginal() {
+    TextView view = new TextView(getInstrumentation().getTargetContext());
+    view.setId(1);
+    view.setText("text");
+    Matcher<View> matcher = allOf(isDisplayed(), withText("text"), withId(1));
+    Matcher<? super View> plan = ViewMatcherPlanner.plan(matcher);
+
+    assertThat(plan).isNotSameInstanceAs(matcher);
+    assertThat(plan.matches(view)).isEqualTo(matcher.matches(view));
+    assertThat(StringDescription.toString(plan)).isEqualTo(StringDescription.toString(matcher));
+    StringDescription planMismatch = new StringDescription();
+    plan.describeMismatch(view, planMismatch);
+    StringDescription mismatch = new StringDescription();
+    matcher.describeMismatch(view, mismatch);
+    assertThat(planMismatch.toString()).isEqualTo(mismatch.toString());
+  }
+
+  private static class UnrankedMatcher extends TypeSafeMatcher<View> {
+    @Override
+    protected boolean matchesSafely(View view) {
+      return true;
+    }
+
+    @Override
+    public void describeTo(Description description) {
+      description.appendText("unranked");
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.base;
+
+import static androidx.test.espresso.matcher.ViewMatchers.isEnabled;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static com.google.common.truth.Truth.assertThat;
+import static org.hamcrest.Matchers.allOf;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.hamcrest.Matcher;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ViewMatcherProfiler}. */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ViewMatcherProfilerTest {
+
+  private final ViewMatcherProfiler profiler = new ViewMatcherProfiler();
+  private FrameLayout root;
+  private TextView text;
+
+  @Before
+  public void setUp() {
+    Context context = getInstrumentation().getTargetContext();
+    root = new FrameLayout(context);
+    root.addView(new View(context));
+    text = new TextView(context);
+    text.setId(1);
+    root.addView(text);
+  }
+
+  @Test
+  @UiThreadTest
+  public void disabledByDefault() {
+    find(withId(1));
+
+    assertThat(profiler.isEmpty()).isTrue();
+  }
+
+  @Test
+  @UiThreadTest
+  public void recordsLookupAndConjuncts() {
+    profiler.setEnabled(true);
+
+    find(allOf(isEnabled(), withId(1)));
+
+    String[] lines = write().split("\n");
+    assertThat(lines).hasLength(4);
+    assertThat(lines[0])
+        .isEqualTo("type,description,count,total_ns,max_ns,hierarchy_views,visited_views");
+    assertThat(lines[1]).startsWith("lookup,(");
+    assertThat(lines[1]).endsWith(",3,3");
+    // withId is planned first and evaluated on every view, isEnabled only on the matching one.
+    assertThat(lines[2]).startsWith("matcher,view.getId() is <1");
+    assertThat(lines[2]).contains(">,3,");
+    assertThat(lines[3]).startsWith("matcher,view.isEnabled() is <true>,1,");
+  }
+
+  @Test
+  @UiThreadTest
+  public void getSlowMatchers() {
+    profiler.setEnabled(true);
+    find(withId(1));
+
+    assertThat(profiler.getSlowMatchers(0, 5)).hasSize(1);
+    assertThat(profiler.getSlowMatchers(0, 5).get(0))
+        .contains("in 3 evaluations: view.getId() is <1");
+    assertThat(profiler.getSlowMatchers(Long.MAX_VALUE / 1_000_000, 5)).isEmpty();
+  }
+
+  @Test
+  @UiThreadTest
+  public void reset_clearsStats() {
+    profiler.setEnabled(true);
+    find(withId(1));
+    profiler.reset();
+
+    assertThat(profiler.isEmpty()).isTrue();
+  }
+
+  private void find(Matcher<View> matcher) {
+    View found =
+        new ViewFinderImpl(matcher, () -> root, new ViewHierarchyIndex(false), profiler).getView();
+    assertThat(found).isSameInstanceAs(text);
+  }
+
+  private String write() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(bytes);
+    profiler.writeTo(out);
+    out.flush();
+    return bytes.toString();
+  }
+}
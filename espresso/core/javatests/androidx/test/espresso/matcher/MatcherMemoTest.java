@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.matcher;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+import static androidx.test.espresso.matcher.ViewMatchers.hasDescendant;
+import static androidx.test.espresso.matcher.ViewMatchers.isAssignableFrom;
+import static androidx.test.espresso.matcher.ViewMatchers.isDescendantOfA;
+import static androidx.test.espresso.matcher.ViewMatchers.withParent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import androidx.test.espresso.util.TreeIterables;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link MatcherMemo}. */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class MatcherMemoTest {
+  private static final int ID = 0x7f010001;
+  // Nested layouts, each with a few leaves.
+  private static final int DEPTH = 20;
+  private static final int LEAVES_PER_LEVEL = 9;
+
+  private final Resources resources = mock(Resources.class);
+
+  @After
+  public void tearDown() {
+    MatcherMemo.stop();
+  }
+
+  @Test
+  public void resourceString_resolvedOncePerLookup() {
+    when(resources.getString(ID)).thenReturn("text");
+
+    assertThat(MatcherMemo.start(), is(true));
+    assertThat(
+        MatcherMemo.getResourceString(resources, MatcherMemo.RESOURCE_STRING, ID), is("text"));
+    assertThat(
+        MatcherMemo.getResourceString(resources, MatcherMemo.RESOURCE_STRING, ID), is("text"));
+
+    verify(resources, times(1)).getString(ID);
+  }
+
+  @Test
+  public void resourceString_notFound_resolvedOncePerLookup() {
+    when(resources.getResourceEntryName(ID)).thenThrow(new Resources.NotFoundException());
+
+    assertThat(MatcherMemo.start(), is(true));
+    assertThat(
+        MatcherMemo.getResourceString(resources, MatcherMemo.RESOURCE_ENTRY_NAME, ID),
+        nullValue());
+    assertThat(
+        MatcherMemo.getResourceString(resources, MatcherMemo.RESOURCE_ENTRY_NAME, ID),
+        nullValue());
+
+    verify(resources, times(1)).getResourceEntryName(ID);
+  }
+
+  @Test
+  public void resourceString_outsideLookup_notMemoised() {
+    when(resources.getResourceName(ID)).thenReturn("pkg:id/name");
+
+    MatcherMemo.getResourceString(resources, MatcherMemo.RESOURCE_NAME, ID);
+    MatcherMemo.getResourceString(resources, MatcherMemo.RESOURCE_NAME, ID);
+
+    verify(resources, times(2)).getResourceName(ID);
+  }
+
+  @Test
+  public void screen_computedOncePerLookup() {
+    Context context = getApplicationContext();
+    Rect outside = MatcherMemo.getScreenWithoutStatusBarActionBar(context);
+    assertThat(MatcherMemo.getScreenWithoutStatusBarActionBar(context), not(sameInstance(outside)));
+
+    assertThat(MatcherMemo.start(), is(true));
+    Rect screen = MatcherMemo.getScreenWithoutStatusBarActionBar(context);
+
+    assertThat(screen, is(outside));
+    assertThat(MatcherMemo.getScreenWithoutStatusBarActionBar(context), sameInstance(screen));
+  }
+
+  @Test
+  public void scratchRect_reusedPerLookup() {
+    assertThat(MatcherMemo.obtainScratchRect(), not(sameInstance(MatcherMemo.obtainScratchRect())));
+
+    assertThat(MatcherMemo.start(), is(true));
+
+    assertThat(MatcherMemo.obtainScratchRect(), sameInstance(MatcherMemo.obtainScratchRect()));
+  }
+
+  @Test
+  public void hasDescendant_evaluatedOncePerViewPerLookup() {
+    CountingMatcher neverMatches = new CountingMatcher();
+    verifyMemoised(
+        allOf(isAssignableFrom(LinearLayout.class), hasDescendant(neverMatches)), neverMatches);
+  }
+
+  @Test
+  public void isDescendantOfA_evaluatedOncePerViewPerLookup() {
+    CountingMatcher neverMatches = new CountingMatcher();
+    verifyMemoised(isDescendantOfA(neverMatches), neverMatches);
+  }
+
+  @Test
+  public void withParent_evaluatedOncePerViewPerLookup() {
+    CountingMatcher neverMatches = new CountingMatcher();
+    verifyMemoised(withParent(neverMatches), neverMatches);
+  }
+
+  private static void verifyMemoised(Matcher<View> matcher, CountingMatcher nested) {
+    Context context = getApplicationContext();
+    ViewGroup root = new LinearLayout(context);
+    ViewGroup parent = root;
+    int viewCount = 1;
+    for (int level = 0; level < DEPTH; level++) {
+      for (int i = 0; i < LEAVES_PER_LEVEL; i++) {
+        parent.addView(new View(context));
+      }
+      ViewGroup child = new LinearLayout(context);
+      parent.addView(child);
+      parent = child;
+      viewCount += LEAVES_PER_LEVEL + 1;
+    }
+
+    int matches = countMatches(root, matcher);
+    int unmemoisedEvaluations = nested.evaluations;
+    nested.evaluations = 0;
+    assertThat(MatcherMemo.start(), is(true));
+    int memoisedMatches = countMatches(root, matcher);
+
+    assertThat(memoisedMatches, is(matches));
+    assertThat(nested.evaluations, lessThanOrEqualTo(viewCount));
+    assertThat(unmemoisedEvaluations, greaterThan(nested.evaluations));
+  }
+
+  private static int countMatches(View root, Matcher<View> matcher) {
+    int[] matches = new int[1];
+    TreeIterables.breadthFirstViewTraversal(
+        root,
+        view -> {
+          if (matcher.matches(view)) {
+            matches[0]++;
+          }
+          return true;
+        });
+    return matches[0];
+  }
+
+  /** Matches no view, counting how often it is evaluated. */
+  private static class CountingMatcher extends TypeSafeMatcher<View> {
+    int evaluations;
+
+    @Override
+    protected boolean matchesSafely(View view) {
+      evaluations++;
+      return false;
+    }
+
+    @Override
+    public void describeTo(Description description) {
+      description.appendText("counting");
+    }
+  }
+}
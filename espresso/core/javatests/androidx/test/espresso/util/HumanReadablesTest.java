@@ -20,12 +20,16 @@ import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentat
 import static com.google.common.truth.Truth.assertThat;
 
 import android.content.Context;
+import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
 import android.widget.FrameLayout;
 import android.widget.FrameLayout.LayoutParams;
 import android.widget.TextView;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
+import java.io.IOException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -34,6 +38,32 @@ import org.junit.runner.RunWith;
 @RunWith(AndroidJUnit4.class)
 public class HumanReadablesTest {
 
+  @Test
+  public void writeViewHierarchyErrorMessage_sameAsGet() throws IOException {
+    ViewGroup root = createHierarchy(3, new int[1]);
+    StringBuilder written = new StringBuilder();
+
+    HumanReadables.writeViewHierarchyErrorMessage(written, root, null, "header", null);
+
+    assertThat(written.toString())
+        .isEqualTo(HumanReadables.getViewHierarchyErrorMessage(root, null, "header", null));
+  }
+
+  @Test
+  public void getViewHierarchyErrorMessage_truncated_stopsDescribingViews() {
+    int[] describedViews = new int[1];
+    ViewGroup root = createHierarchy(100, describedViews);
+    String full = HumanReadables.getViewHierarchyErrorMessage(root, null, "header", null);
+    describedViews[0] = 0;
+
+    String truncated =
+        HumanReadables.getViewHierarchyErrorMessage(root, null, "header", null, 1000);
+
+    assertThat(truncated).hasLength(1000);
+    assertThat(truncated).isEqualTo(full.substring(0, 1000 - 12) + " [truncated]");
+    assertThat(describedViews[0]).isLessThan(10);
+  }
+
   @Test
   public void describeView_layoutParamsWithObjectAddressRemoved() {
     Context context = getInstrumentation().getContext();
@@ -89,4 +119,21 @@ public class HumanReadablesTest {
                 + " root-is-layout-requested=true, has-input-connection=false, x=0.0, y=0.0,"
                 + " text=text under test, input-type=0, ime-target=false, has-links=false}");
   }
+
+  private static ViewGroup createHierarchy(int childCount, int[] describedViews) {
+    Context context = getInstrumentation().getContext();
+    FrameLayout root = new FrameLayout(context);
+    for (int i = 0; i < childCount; i++) {
+      root.addView(
+          new View(context) {
+            @Override
+            public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
+              // Called once when the view is described.
+              describedViews[0]++;
+              return null;
+            }
+          });
+    }
+    return root;
+  }
 }
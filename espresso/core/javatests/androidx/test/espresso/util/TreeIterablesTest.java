@@ -16,6 +16,7 @@
 
 package androidx.test.espresso.util;
 
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 import static androidx.test.internal.util.Checks.checkNotNull;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
@@ -23,6 +24,11 @@ import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
 import static org.junit.rules.ExpectedException.none;
 
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
 import androidx.test.espresso.util.TreeIterables.DistanceRecordingTreeViewer;
 import androidx.test.espresso.util.TreeIterables.TreeViewer;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -33,6 +39,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -242,4 +249,57 @@ public class TreeIterablesTest {
         allOf(hasEntry("a", 0), hasEntry("b", 1), hasEntry("c", 2), hasEntry("d", 3)));
     assertThat(distancesByData.size(), is(4));
   }
+
+  @Test
+  public void viewVisitor_sameOrderAsIterables() {
+    Context context = getApplicationContext();
+    ViewGroup root = new FrameLayout(context);
+    ViewGroup parent = root;
+    for (int i = 0; i < 5; i++) {
+      ViewGroup child = new LinearLayout(context);
+      parent.addView(child);
+      for (int j = 0; j < 3; j++) {
+        parent.addView(new View(context));
+      }
+      parent = child;
+    }
+
+    List<View> breadthFirst = new ArrayList<>();
+    assertThat(TreeIterables.breadthFirstViewTraversal(root, breadthFirst::add), is(true));
+    assertThat(
+        breadthFirst,
+        is((List<View>) Lists.newArrayList(TreeIterables.breadthFirstViewTraversal(root))));
+    List<View> depthFirst = new ArrayList<>();
+    assertThat(TreeIterables.depthFirstViewTraversal(root, depthFirst::add), is(true));
+    assertThat(
+        depthFirst,
+        is((List<View>) Lists.newArrayList(TreeIterables.depthFirstViewTraversal(root))));
+    List<View> withDistance = new ArrayList<>();
+    for (TreeIterables.ViewAndDistance viewAndDistance :
+        TreeIterables.depthFirstViewTraversalWithDistance(root)) {
+      withDistance.add(viewAndDistance.getView());
+    }
+    assertThat(withDistance, is(depthFirst));
+  }
+
+  @Test
+  public void viewVisitor_canEndTraversalEarly() {
+    Context context = getApplicationContext();
+    ViewGroup root = new FrameLayout(context);
+    for (int i = 0; i < 10; i++) {
+      root.addView(new View(context));
+    }
+    List<View> visited = new ArrayList<>();
+
+    boolean completed =
+        TreeIterables.breadthFirstViewTraversal(
+            root,
+            view -> {
+              visited.add(view);
+              return visited.size() < 3;
+            });
+
+    assertThat(completed, is(false));
+    assertThat(visited.size(), is(3));
+  }
 }
@@ -16,12 +16,16 @@
 
 package androidx.test.espresso;
 
-import static java.util.Collections.synchronizedSet;
-
 import android.os.Looper;
 import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.RestrictTo.Scope;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -41,8 +45,18 @@ public final class IdlingRegistry {
 
   private static final String TAG = IdlingRegistry.class.getSimpleName();
   private static final IdlingRegistry instance = new IdlingRegistry();
-  private final Set<IdlingResource> resources = synchronizedSet(new HashSet<IdlingResource>());
-  private final Set<Looper> loopers = synchronizedSet(new HashSet<Looper>());
+  // Number of registrations and unregistrations kept in the change log. The log only references the
+  // changed resources and loopers weakly, so that unregistered ones can be garbage collected.
+  private static final int MAX_CHANGE_LOG_SIZE = 256;
+
+  private final Object lock = new Object();
+  // All fields below are guarded by lock.
+  private final Set<IdlingResource> resources = new HashSet<>();
+  private final Set<Looper> loopers = new HashSet<>();
+  private final ArrayDeque<Change> changeLog = new ArrayDeque<>();
+  private long version;
+  // Oldest version the change log still has all changes for.
+  private long changeLogStartVersion;
 
   // VisibleForTesting
   IdlingRegistry() {}
@@ -66,7 +80,16 @@ public final class IdlingRegistry {
       throw new NullPointerException("idlingResources cannot be null!");
     }
     Log.d(TAG, "Registering idling resources: " + Arrays.toString(idlingResources));
-    return resources.addAll(Arrays.asList(idlingResources));
+    synchronized (lock) {
+      boolean changed = false;
+      for (IdlingResource resource : idlingResources) {
+        if (resources.add(resource)) {
+          logChange(resource);
+          changed = true;
+        }
+      }
+      return changed;
+    }
   }
 
   /**
@@ -79,7 +102,16 @@ public final class IdlingRegistry {
       throw new NullPointerException("idlingResources cannot be null!");
     }
     Log.d(TAG, "Unregistering idling resources: " + Arrays.toString(idlingResources));
-    return resources.removeAll(Arrays.asList(idlingResources));
+    synchronized (lock) {
+      boolean changed = false;
+      for (IdlingResource resource : idlingResources) {
+        if (resources.remove(resource)) {
+          logChange(resource);
+          changed = true;
+        }
+      }
+      return changed;
+    }
   }
 
   /**
@@ -97,7 +129,11 @@ public final class IdlingRegistry {
       throw new IllegalArgumentException("Not intended for use with main looper!");
     }
 
-    loopers.add(looper);
+    synchronized (lock) {
+      if (loopers.add(looper)) {
+        logChange(looper);
+      }
+    }
   }
 
   /**
@@ -111,20 +147,151 @@ public final class IdlingRegistry {
     if (null == looper) {
       throw new NullPointerException("looper cannot be null!");
     }
-    return loopers.remove(looper);
+    synchronized (lock) {
+      if (loopers.remove(looper)) {
+        logChange(looper);
+        return true;
+      }
+      return false;
+    }
   }
 
   /** Returns a set of all currently registered {@link IdlingResource}s. */
   public Collection<IdlingResource> getResources() {
-    synchronized (resources) {
+    synchronized (lock) {
       return new HashSet<>(resources);
     }
   }
 
   /** Returns a set of all currently registered {@link Looper}s. */
   public Collection<Looper> getLoopers() {
-    synchronized (loopers) {
+    synchronized (lock) {
       return new HashSet<>(loopers);
     }
   }
+
+  /**
+   * Returns the current version of this registry. The version increases every time a resource or
+   * looper is registered or unregistered.
+   *
+   * <p>This method is used by Espresso to keep its internal registry in sync.
+   */
+  @RestrictTo(Scope.LIBRARY_GROUP) // used by espresso core
+  public long getVersion() {
+    synchronized (lock) {
+      return version;
+    }
+  }
+
+  /**
+   * Returns the resources and loopers that were registered or unregistered after the given
+   * version, or {@code null} if the changes are not known anymore and the full contents of the
+   * registry have to be used instead.
+   *
+   * <p>This method is used by Espresso to keep its internal registry in sync.
+   *
+   * @param sinceVersion a version previously returned by {@link #getVersion()} or {@link
+   *     Changes#getVersion()}
+   */
+  @RestrictTo(Scope.LIBRARY_GROUP) // used by espresso core
+  @Nullable
+  public Changes getChangesSince(long sinceVersion) {
+    synchronized (lock) {
+      if (sinceVersion < changeLogStartVersion || sinceVersion > version) {
+        return null;
+      }
+      Changes changes = new Changes(version);
+      for (Change change : changeLog) {
+        if (change.version <= sinceVersion) {
+          continue;
+        }
+        Object subject = change.subject.get();
+        if (subject == null) {
+          // Unregistered and not referenced anywhere else, so the caller cannot hold it either.
+          continue;
+        }
+        // Only the current state matters, no matter how often it changed in between.
+        if (subject instanceof Looper) {
+          Looper looper = (Looper) subject;
+          (loopers.contains(looper) ? changes.registeredLoopers : changes.unregisteredLoopers)
+              .add(looper);
+        } else {
+          IdlingResource resource = (IdlingResource) subject;
+          (resources.contains(resource)
+                  ? changes.registeredResources
+                  : changes.unregisteredResources)
+              .add(resource);
+        }
+      }
+      return changes;
+    }
+  }
+
+  private void logChange(Object subject) {
+    version++;
+    changeLog.addLast(new Change(version, subject));
+    while (changeLog.size() > MAX_CHANGE_LOG_SIZE) {
+      changeLogStartVersion = changeLog.removeFirst().version;
+    }
+  }
+
+  /**
+   * The resources and loopers that were registered or unregistered between two versions of an
+   * {@link IdlingRegistry}, see {@link IdlingRegistry#getChangesSince(long)}.
+   */
+  @RestrictTo(Scope.LIBRARY_GROUP) // used by espresso core
+  public static final class Changes {
+    private final long version;
+    private final Set<IdlingResource> registeredResources = new HashSet<>();
+    private final Set<IdlingResource> unregisteredResources = new HashSet<>();
+    private final Set<Looper> registeredLoopers = new HashSet<>();
+    private final Set<Looper> unregisteredLoopers = new HashSet<>();
+
+    private Changes(long version) {
+      this.version = version;
+    }
+
+    /** Returns the version of the registry that includes these changes. */
+    public long getVersion() {
+      return version;
+    }
+
+    /** Returns whether nothing was registered or unregistered. */
+    public boolean isEmpty() {
+      return registeredResources.isEmpty()
+          && unregisteredResources.isEmpty()
+          && registeredLoopers.isEmpty()
+          && unregisteredLoopers.isEmpty();
+    }
+
+    /** Returns the changed resources that are currently registered. */
+    public Collection<IdlingResource> getRegisteredResources() {
+      return Collections.unmodifiableSet(registeredResources);
+    }
+
+    /** Returns the changed resources that are currently not registered. */
+    public Collection<IdlingResource> getUnregisteredResources() {
+      return Collections.unmodifiableSet(unregisteredResources);
+    }
+
+    /** Returns the changed loopers that are currently registered. */
+    public Collection<Looper> getRegisteredLoopers() {
+      return Collections.unmodifiableSet(registeredLoopers);
+    }
+
+    /** Returns the changed loopers that are currently not registered. */
+    public Collection<Looper> getUnregisteredLoopers() {
+      return Collections.unmodifiableSet(unregisteredLoopers);
+    }
+  }
+
+  private static final class Change {
+    final long version;
+    final WeakReference<Object> subject;
+
+    Change(long version, Object subject) {
+      this.version = version;
+      this.subject = new WeakReference<>(subject);
+    }
+  }
 }
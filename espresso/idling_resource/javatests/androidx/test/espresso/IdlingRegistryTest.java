@@ -18,6 +18,8 @@ package androidx.test.espresso;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
@@ -99,6 +101,63 @@ public class IdlingRegistryTest {
     }
   }
 
+  @Test
+  public void verifyVersionOnlyChangesOnModification() {
+    IdlingResource r1 = getDummyIdlingResource("r1");
+    long version = idlingRegistry.getVersion();
+    assertTrue(idlingRegistry.register(r1));
+    assertTrue(idlingRegistry.getVersion() > version);
+
+    version = idlingRegistry.getVersion();
+    assertFalse(idlingRegistry.register(r1));
+    assertFalse(idlingRegistry.unregister(getDummyIdlingResource("r2")));
+    assertFalse(idlingRegistry.unregisterLooperAsIdlingResource(Looper.myLooper()));
+    assertEquals(version, idlingRegistry.getVersion());
+
+    idlingRegistry.registerLooperAsIdlingResource(Looper.myLooper());
+    assertTrue(idlingRegistry.getVersion() > version);
+  }
+
+  @Test
+  public void verifyChangesSince() {
+    IdlingResource r1 = getDummyIdlingResource("r1");
+    IdlingResource r2 = getDummyIdlingResource("r2");
+    IdlingResource r3 = getDummyIdlingResource("r3");
+    idlingRegistry.register(r1);
+    long version = idlingRegistry.getVersion();
+    assertTrue(idlingRegistry.getChangesSince(version).isEmpty());
+
+    idlingRegistry.register(r2, r3);
+    idlingRegistry.unregister(r1, r3);
+    idlingRegistry.registerLooperAsIdlingResource(Looper.myLooper());
+
+    IdlingRegistry.Changes changes = idlingRegistry.getChangesSince(version);
+    assertEquals(idlingRegistry.getVersion(), changes.getVersion());
+    assertEquals(1, changes.getRegisteredResources().size());
+    assertTrue(changes.getRegisteredResources().contains(r2));
+    assertEquals(2, changes.getUnregisteredResources().size());
+    assertTrue(changes.getUnregisteredResources().contains(r1));
+    assertTrue(changes.getUnregisteredResources().contains(r3));
+    assertEquals(1, changes.getRegisteredLoopers().size());
+    assertTrue(changes.getUnregisteredLoopers().isEmpty());
+  }
+
+  @Test
+  public void verifyChangesSinceUnknownVersion() {
+    idlingRegistry.register(getDummyIdlingResource("r1"));
+    assertNull(idlingRegistry.getChangesSince(idlingRegistry.getVersion() + 1));
+  }
+
+  @Test
+  public void verifyChangesSinceTruncatedChangeLog() {
+    long version = idlingRegistry.getVersion();
+    for (int i = 0; i < 1000; i++) {
+      idlingRegistry.register(getDummyIdlingResource("r" + i));
+    }
+    assertNull(idlingRegistry.getChangesSince(version));
+    assertNotNull(idlingRegistry.getChangesSince(idlingRegistry.getVersion() - 1));
+  }
+
   private IdlingResource getDummyIdlingResource(String name) {
     return new IdlingResourceFixture(name, true);
   }
@@ -20,6 +20,8 @@ import static androidx.test.internal.util.Checks.checkNotNull;
 
 import androidx.annotation.NonNull;
 import androidx.test.espresso.remote.EspressoRemoteMessage.From;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
@@ -35,6 +37,10 @@ import java.util.Locale;
  */
 final class AnyToTypeConverter<T> implements Converter<Any, T> {
 
+  // The FROM field of a remote type never changes, look it up once per type.
+  private static final Cache<Class<?>, From<?, MessageLite>> fromCache =
+      CacheBuilder.newBuilder().weakKeys().build();
+
   private final RemoteDescriptorRegistry remoteDescriptorRegistry;
 
   AnyToTypeConverter(@NonNull RemoteDescriptorRegistry remoteDescriptorRegistry) {
@@ -48,8 +54,7 @@ final class AnyToTypeConverter<T> implements Converter<Any, T> {
     T targetType;
     try {
       Class<?> targetClass = createRemoteTargetClassFromAny(any);
-      Field fromField = accessFromField(targetClass);
-      From<T, MessageLite> remoteMessageFromField = createRemoteMessageFromField(fromField);
+      From<T, MessageLite> remoteMessageFromField = getRemoteMessageFrom(targetClass);
       targetType = createTargetTypeFromRemoteMessage(remoteMessageFromField, any);
     } catch (IllegalAccessException iae) {
       throw new RemoteProtocolException("Cannot unwrap target type instance from any proto: ", iae);
@@ -71,6 +76,19 @@ final class AnyToTypeConverter<T> implements Converter<Any, T> {
     return remoteMessageFromField.fromProto(remoteMessage);
   }
 
+  @SuppressWarnings("unchecked") // safe covariant cast
+  private From<T, MessageLite> getRemoteMessageFrom(Class<?> remoteClass)
+      throws IllegalAccessException {
+    From<?, MessageLite> remoteMessageFrom = fromCache.getIfPresent(remoteClass);
+    if (null == remoteMessageFrom) {
+      remoteMessageFrom = createRemoteMessageFromField(accessFromField(remoteClass));
+      if (remoteMessageFrom != null) {
+        fromCache.put(remoteClass, remoteMessageFrom);
+      }
+    }
+    return (From<T, MessageLite>) remoteMessageFrom;
+  }
+
   @SuppressWarnings("unchecked") // safe covariant cast
   private EspressoRemoteMessage.From<T, MessageLite> createRemoteMessageFromField(Field fromField)
       throws IllegalAccessException {
@@ -56,17 +56,23 @@ import androidx.test.espresso.web.webdriver.RemoteWebDriverAtoms;
 import androidx.test.internal.runner.InstrumentationConnection;
 import androidx.test.internal.util.ParcelableIBinder;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.hamcrest.Matcher;
 
 /**
@@ -80,6 +86,13 @@ import org.hamcrest.Matcher;
  * class should then call {@link #init()} prior to attempting to use any functionality of this
  * class. Call {@link #terminate()} after using EspressoRemote to release any resources. Failure to
  * do so will lead to memory leaks and unexpected behavior.
+ *
+ * <p>Requests are sent straight to the {@link Messenger} of every remote Espresso instance and
+ * carry a request id in {@link Message#arg1}, which the response echoes. Several requests may be
+ * outstanding at the same time. A request is answered by the first successful response, after
+ * which it is cancelled on the instances that did not respond yet. Instances that die or do not
+ * respond in time are given up on. Remote instances run requests one at a time, in the order they
+ * arrived, and drop cancelled requests that did not start yet.
  */
 public final class EspressoRemote implements RemoteInteraction {
   private static final String TAG = "EspressoRemote";
@@ -90,22 +103,30 @@ public final class EspressoRemote implements RemoteInteraction {
   @VisibleForTesting static final String TYPE = EspressoRemote.class.getCanonicalName();
 
   @VisibleForTesting static final String BUNDLE_KEY_TYPE = "type";
-  @VisibleForTesting static final String BUNDLE_KEY_UUID = "uuid";
   @VisibleForTesting static final String BUNDLE_KEY_PROTO = "proto";
 
   @VisibleForTesting static InstrumentationConnection instrumentationConnection;
 
   private static final int MSG_TERMINATE = 1;
-  private static final int MSG_FORWARD_TO_REMOTE_ESPRESSO = 2;
   @VisibleForTesting static final int MSG_HANDLE_ESPRESSO_REQUEST = 3;
   @VisibleForTesting static final int MSG_HANDLE_ESPRESSO_RESPONSE = 4;
   @VisibleForTesting static final int MSG_HANDLE_EMPTY_REQUEST = 5;
+  @VisibleForTesting static final int MSG_CANCEL_REQUEST = 6;
+
+  /** Longer than the default master idling timeout, so that slow interactions still respond. */
+  private static final long DEFAULT_RESPONSE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
 
   /** Represents whether the current instance is running in a remote process or not */
   private static volatile boolean isRemoteProcess;
 
   /** {@link IncomingHandler} that will handler incoming messages */
-  @VisibleForTesting IncomingHandler incomingHandler;
+  @VisibleForTesting volatile IncomingHandler incomingHandler;
+
+  /** Ids of the requests sent by this instance */
+  private final AtomicInteger nextRequestId = new AtomicInteger();
+
+  /** How long to wait for remote Espresso instances to respond to a request */
+  private volatile long responseTimeoutMillis = DEFAULT_RESPONSE_TIMEOUT_MILLIS;
 
   /** package private constructor to aid with testing */
   @VisibleForTesting
@@ -168,11 +189,27 @@ public final class EspressoRemote implements RemoteInteraction {
     }
   }
 
+  @VisibleForTesting
+  void setResponseTimeout(long timeout, TimeUnit unit) {
+    responseTimeoutMillis = unit.toMillis(timeout);
+  }
+
   @Override
   public synchronized boolean isRemoteProcess() {
     return isRemoteProcess;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Not synchronized, as this is checked before every interaction.
+   */
+  @Override
+  public boolean hasRemoteInstances() {
+    // This instance should be ignored from the count
+    return instrumentationConnection.getClientCountForType(TYPE) > 1;
+  }
+
   @Override
   public synchronized Callable<Void> createRemoteCheckCallable(
       final Matcher<Root> rootMatcher,
@@ -288,20 +325,24 @@ public final class EspressoRemote implements RemoteInteraction {
     }
   }
 
-  private synchronized ResponseHolder sendMessageSynchronously(
+  /**
+   * Sends a message to all known remote Espresso instances and waits until one of them reports
+   * success or all of them responded. Instances whose process dies count as responded, and
+   * instances that stay silent are given up on after the response timeout.
+   *
+   * <p>Not synchronized, so that requests from several threads can be outstanding at the same time.
+   */
+  private ResponseHolder sendMessageSynchronously(
       int what, @Nullable byte[] data, Map<String, IBinder> iBinders) throws InterruptedException {
-    UUID uuid = UUID.randomUUID();
+    IncomingHandler handler = incomingHandler;
+    int requestId = nextRequestId.incrementAndGet();
 
     logDebugWithProcess(
-        TAG, String.format(Locale.ROOT, "Sending sync msg [%s] with uuid [%s]", what, uuid));
-
-    CountDownLatch latch = new CountDownLatch(1);
-    ResponseHolder responseHolder = new ResponseHolder(latch);
+        TAG, String.format(Locale.ROOT, "Sending sync msg [%s] with id [%s]", what, requestId));
 
-    Message msg = incomingHandler.getEspressoMessage(MSG_FORWARD_TO_REMOTE_ESPRESSO);
-    msg.arg1 = what;
-    Bundle bundle = msg.getData();
-    bundle.putSerializable(BUNDLE_KEY_UUID, uuid);
+    // The bundle is shared by the messages to all remote Espresso instances
+    Bundle bundle = new Bundle();
+    bundle.putString(BUNDLE_KEY_TYPE, TYPE);
     if (data != null) {
       bundle.putByteArray(BUNDLE_KEY_PROTO, data);
     }
@@ -309,22 +350,40 @@ public final class EspressoRemote implements RemoteInteraction {
     // Add any iBinders to the bundle that need to be send to the other side
     setIBindersToBundle(iBinders, bundle);
 
-    msg.setData(bundle);
-
-    incomingHandler.associateResponse(uuid, responseHolder);
-    incomingHandler.sendMessage(msg);
+    List<Messenger> recipients = handler.getRemoteEspressos();
+    ResponseHolder responseHolder = new ResponseHolder(what, recipients);
+    handler.responses.put(requestId, responseHolder);
     try {
-      latch.await();
+      responseHolder.linkToDeath();
+      for (Messenger recipient : recipients) {
+        if (!handler.sendToRemoteEspresso(recipient, what, requestId, bundle)) {
+          responseHolder.onSendFailed(recipient);
+        }
+      }
+      if (!responseHolder.getLatch().await(responseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        Log.w(
+            TAG,
+            String.format(
+                Locale.ROOT,
+                "Timed out after %d ms waiting for a response from msg [%s] with id [%s]",
+                responseTimeoutMillis,
+                what,
+                requestId));
+        responseHolder.onTimeout();
+      }
+      // Instances that did not respond yet don't need to run the request anymore
+      handler.cancelRequest(requestId, responseHolder.getUnansweredRecipients());
       return responseHolder;
     } catch (InterruptedException ie) {
       Log.w(
           TAG,
           String.format(
               Locale.ROOT,
-              "Interrupted while waiting for a response from msg [%s] with uuid [%s]",
+              "Interrupted while waiting for a response from msg [%s] with id [%s]",
               what,
-              uuid),
+              requestId),
           ie);
+      handler.cancelRequest(requestId, responseHolder.getUnansweredRecipients());
       // Send over an empty request to remote Espresso instance and wait for it to return. This
       // insures that all prior messages were served by the remote process before we send over a
       // new message. Helps with stability.
@@ -332,7 +391,8 @@ public final class EspressoRemote implements RemoteInteraction {
       Thread.currentThread().interrupt();
       throw ie;
     } finally {
-      incomingHandler.disassociateResponse(uuid);
+      responseHolder.unlinkToDeath();
+      handler.responses.remove(requestId);
     }
   }
 
@@ -346,7 +406,7 @@ public final class EspressoRemote implements RemoteInteraction {
     }
   }
 
-  private synchronized boolean hasRemoteEspressoInstances() {
+  private boolean hasRemoteEspressoInstances() {
     Set<Messenger> clientsForType = instrumentationConnection.getClientsForType(TYPE);
     // This instance should be ignored from the check
     return clientsForType.size() > 1;
@@ -373,7 +433,16 @@ public final class EspressoRemote implements RemoteInteraction {
   }
 
   private static void reportResults(ResponseHolder responseHolder) {
-    byte[] protoByteArray = responseHolder.getData().getByteArray(BUNDLE_KEY_PROTO);
+    Bundle data = responseHolder.getData();
+    if (null == data) {
+      if (responseHolder.hasTimedOut()) {
+        throw new NoRemoteEspressoInstanceException(
+            "Remote Espresso instances did not respond in time.");
+      }
+      throw new NoRemoteEspressoInstanceException(
+          "Remote Espresso instances terminated before responding.");
+    }
+    byte[] protoByteArray = data.getByteArray(BUNDLE_KEY_PROTO);
     if (null == protoByteArray) {
       throw new IllegalStateException("Espresso remote response doesn't contain a valid response");
     }
@@ -398,35 +467,185 @@ public final class EspressoRemote implements RemoteInteraction {
     }
   }
 
+  @Nullable
+  private static InteractionResponse parseResponse(Bundle data) {
+    byte[] protoByteArray = data.getByteArray(BUNDLE_KEY_PROTO);
+    if (null == protoByteArray) {
+      return null;
+    }
+    try {
+      return new InteractionResponse.Builder().setResultProto(protoByteArray).build();
+    } catch (RemoteProtocolException re) {
+      return null;
+    }
+  }
+
+  /**
+   * Holds the response to a message sent to one or more remote Espresso instances. The message is
+   * answered by the first response reporting success, or once all instances responded.
+   */
   private static class ResponseHolder {
-    private final CountDownLatch latch;
-    private Bundle data = null;
+    private final int what;
+    private final List<Messenger> recipients;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    // guarded by this
+    private final Set<Messenger> answered = new HashSet<>();
+    private int outstanding;
+    @Nullable private Bundle data = null;
+    private boolean dataHasError;
+    private boolean timedOut;
+    // requesting thread only
+    private final Map<Messenger, IBinder.DeathRecipient> deathRecipients = new HashMap<>();
+
+    ResponseHolder(int what, List<Messenger> recipients) {
+      this.what = what;
+      this.recipients = recipients;
+      this.outstanding = recipients.size();
+      if (outstanding == 0) {
+        latch.countDown();
+      }
+    }
 
-    public ResponseHolder(CountDownLatch latch) {
-      this.latch = latch;
+    synchronized void onResponse(Messenger responder, Bundle response) {
+      if (!answered.add(responder) || latch.getCount() == 0) {
+        return;
+      }
+      outstanding--;
+      if (MSG_HANDLE_ESPRESSO_REQUEST != what) {
+        data = response;
+        latch.countDown();
+        return;
+      }
+      InteractionResponse interactionResponse = parseResponse(response);
+      if (interactionResponse != null && Status.Ok == interactionResponse.getStatus()) {
+        data = response;
+        latch.countDown();
+        return;
+      }
+      // Keep the most telling failure. An error without a remote error only means that the
+      // instance did not run the interaction.
+      boolean hasError = null == interactionResponse || interactionResponse.hasRemoteError();
+      if (null == data || (hasError && !dataHasError)) {
+        data = response;
+        dataHasError = hasError;
+      }
+      if (outstanding == 0) {
+        latch.countDown();
+      }
     }
 
-    public void setData(Bundle data) {
-      this.data = data;
+    synchronized void onSendFailed(Messenger recipient) {
+      if (!answered.add(recipient)) {
+        return;
+      }
+      outstanding--;
+      if (outstanding == 0) {
+        latch.countDown();
+      }
+    }
+
+    /** Stops waiting for the recipients that did not respond yet. */
+    synchronized void onTimeout() {
+      timedOut = true;
+      latch.countDown();
+    }
+
+    /** Treats recipients whose process dies before responding as if sending to them failed. */
+    void linkToDeath() {
+      for (final Messenger recipient : recipients) {
+        IBinder.DeathRecipient deathRecipient =
+            new IBinder.DeathRecipient() {
+              @Override
+              public void binderDied() {
+                Log.w(TAG, "Remote Espresso instance died before responding");
+                onSendFailed(recipient);
+              }
+            };
+        try {
+          recipient.getBinder().linkToDeath(deathRecipient, 0);
+          deathRecipients.put(recipient, deathRecipient);
+        } catch (RemoteException e) {
+          // the remote process is already gone
+          onSendFailed(recipient);
+        }
+      }
     }
 
-    public Bundle getData() {
+    void unlinkToDeath() {
+      for (Map.Entry<Messenger, IBinder.DeathRecipient> entry : deathRecipients.entrySet()) {
+        entry.getKey().getBinder().unlinkToDeath(entry.getValue(), 0);
+      }
+      deathRecipients.clear();
+    }
+
+    synchronized List<Messenger> getUnansweredRecipients() {
+      List<Messenger> unanswered = new ArrayList<>();
+      for (Messenger recipient : recipients) {
+        if (!answered.contains(recipient)) {
+          unanswered.add(recipient);
+        }
+      }
+      return unanswered;
+    }
+
+    @Nullable
+    synchronized Bundle getData() {
       return data;
     }
 
-    public CountDownLatch getLatch() {
+    synchronized boolean hasTimedOut() {
+      return timedOut;
+    }
+
+    CountDownLatch getLatch() {
       return latch;
     }
   }
 
+  /** Identifies a request received from another Espresso instance. */
+  private static final class RequestKey {
+    private final Messenger caller;
+    private final int requestId;
+
+    RequestKey(Messenger caller, int requestId) {
+      this.caller = caller;
+      this.requestId = requestId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RequestKey)) {
+        return false;
+      }
+      RequestKey other = (RequestKey) o;
+      return requestId == other.requestId && caller.equals(other.caller);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * caller.hashCode() + requestId;
+    }
+  }
+
   class IncomingHandler extends Handler {
 
+    /** Outstanding requests of this instance by request id, written by the requesting threads. */
+    private final Map<Integer, ResponseHolder> responses = new ConcurrentHashMap<>();
+
+    /** Requests received from other instances that did not start yet and were not cancelled. */
+    private final Set<RequestKey> queuedRequests =
+        Collections.newSetFromMap(new ConcurrentHashMap<RequestKey, Boolean>());
+
     /**
-     * Map containing latch {@link UUID}s to aid with message synchronization Note: This map should
-     * be only modified {@link #associateResponse(UUID, ResponseHolder)} or {@link
-     * #disassociateResponse(UUID)}
+     * Runs received requests one at a time, so that this handler can still receive cancellations
+     * and responses while an interaction runs.
      */
-    private final Map<UUID, ResponseHolder> responses = new HashMap<>();
+    private final ExecutorService requestExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("EspressoRemoteRequestThread").build());
 
     /** Target we publish for clients to send messages to IncomingHandler. */
     Messenger messengerHandler = new Messenger(this);
@@ -457,22 +676,21 @@ public final class EspressoRemote implements RemoteInteraction {
           logDebugWithProcess(TAG, "handleMessage: MSG_TERMINATE");
           doDie();
           break;
-        case MSG_FORWARD_TO_REMOTE_ESPRESSO:
-          logDebugWithProcess(TAG, "handleMessage: MSG_FORWARD_TO_REMOTE_ESPRESSO");
-          sendMsgToRemoteEspressos(msg.arg1, msg.getData());
-          break;
         case MSG_HANDLE_ESPRESSO_REQUEST:
           logDebugWithProcess(TAG, "handleMessage: MSG_HANDLE_ESPRESSO_REQUEST");
-          handleEspressoRequest(msg.replyTo, msg.getData());
+          handleEspressoRequest(msg.replyTo, msg.arg1, msg.getData());
           break;
         case MSG_HANDLE_ESPRESSO_RESPONSE:
           logDebugWithProcess(TAG, "handleMessage: MSG_HANDLE_ESPRESSO_RESPONSE");
-          handleEspressoResponse(msg.getData());
+          handleEspressoResponse(msg.replyTo, msg.arg1, msg.getData());
           break;
         case MSG_HANDLE_EMPTY_REQUEST:
           logDebugWithProcess(TAG, "handleMessage: MSG_HANDLE_EMPTY_REQUEST");
-          // Nothing to do just send a response back.
-          sendMsgToRemoteEspressos(MSG_HANDLE_ESPRESSO_RESPONSE, msg.getData());
+          handleEmptyRequest(msg.replyTo, msg.arg1);
+          break;
+        case MSG_CANCEL_REQUEST:
+          logDebugWithProcess(TAG, "handleMessage: MSG_CANCEL_REQUEST");
+          queuedRequests.remove(new RequestKey(msg.replyTo, msg.arg1));
           break;
         default:
           Log.w(TAG, "Unknown message code received: " + msg.what);
@@ -480,54 +698,9 @@ public final class EspressoRemote implements RemoteInteraction {
       }
     }
 
-    private void associateResponse(final UUID latchId, final ResponseHolder response) {
-      FutureTask<Void> associationTask =
-          new FutureTask<>(
-              new Callable<Void>() {
-                @Override
-                public Void call() {
-                  responses.put(latchId, response);
-                  return null;
-                }
-              });
-      post(associationTask);
-
-      try {
-        associationTask.get();
-      } catch (InterruptedException e) {
-        // Shouldn't happen, always waiting for finish
-        throw new IllegalStateException(e);
-      } catch (ExecutionException e) {
-        // Shouldn't happen, just adding (key,value) to a map
-        throw new IllegalStateException(e.getCause());
-      }
-    }
-
-    private void disassociateResponse(final UUID latchId) {
-      FutureTask<Void> disassociationTask =
-          new FutureTask<>(
-              new Callable<Void>() {
-                @Override
-                public Void call() {
-                  responses.remove(latchId);
-                  return null;
-                }
-              });
-      post(disassociationTask);
-
-      try {
-        disassociationTask.get();
-      } catch (InterruptedException e) {
-        // Shouldn't happen, always waiting for finish
-        throw new IllegalStateException(e);
-      } catch (ExecutionException e) {
-        // Shouldn't happen, just adding (key,value) to a map
-        throw new IllegalStateException(e.getCause());
-      }
-    }
-
     private void doDie() {
       instrumentationConnection.unregisterClient(TYPE, messengerHandler);
+      requestExecutor.shutdown();
       getLooper().quit();
     }
 
@@ -547,7 +720,7 @@ public final class EspressoRemote implements RemoteInteraction {
      * @return the Espresso Message
      */
     private Message getEspressoMessage(int what) {
-      Message msg = incomingHandler.obtainMessage(what);
+      Message msg = obtainMessage(what);
       msg.replyTo = messengerHandler;
       Bundle bundle = new Bundle();
       bundle.putString(BUNDLE_KEY_TYPE, TYPE);
@@ -555,34 +728,55 @@ public final class EspressoRemote implements RemoteInteraction {
       return msg;
     }
 
+    /** Returns the {@link Messenger}s of all remote Espresso instances, except this one. */
+    private List<Messenger> getRemoteEspressos() {
+      List<Messenger> remoteEspressos = new ArrayList<>();
+      for (Messenger remoteEspresso : instrumentationConnection.getClientsForType(TYPE)) {
+        if (!messengerHandler.equals(remoteEspresso)) {
+          remoteEspressos.add(remoteEspresso);
+        }
+      }
+      return remoteEspressos;
+    }
+
     /**
-     * Send request to remote Espresso instances (if any).
+     * Sends a message to a remote Espresso instance.
      *
+     * @param remoteEspresso the {@link Messenger} of the remote Espresso instance
      * @param what User-defined message code so that the recipient can identify what this message is
      *     about.
+     * @param requestId the id of the request this message belongs to
      * @param data A Bundle of arbitrary data associated with this message
+     * @return false if the remote process is gone
      */
-    private void sendMsgToRemoteEspressos(int what, Bundle data) {
-      logDebugWithProcess(TAG, "sendMsgToRemoteEspressos called");
-
-      Message msg = getEspressoMessage(what);
+    private boolean sendToRemoteEspresso(
+        Messenger remoteEspresso, int what, int requestId, Bundle data) {
+      Message msg = obtainMessage(what);
+      msg.replyTo = messengerHandler;
+      msg.arg1 = requestId;
       msg.setData(data);
+      try {
+        remoteEspresso.send(msg);
+        return true;
+      } catch (RemoteException e) {
+        // In this case the remote process was terminated or crashed before we could
+        // even do anything with it; there is nothing we can do other than unregister the
+        // Espresso instance.
+        Log.w(TAG, "The remote process is terminated unexpectedly", e);
+        instrumentationConnection.unregisterClient(TYPE, remoteEspresso);
+        return false;
+      }
+    }
 
-      Set<Messenger> remoteClients = instrumentationConnection.getClientsForType(TYPE);
-      for (Messenger remoteEspresso : remoteClients) {
-        if (messengerHandler.equals(remoteEspresso)) {
-          // avoid sending message to self
-          continue;
-        }
-        try {
-          remoteEspresso.send(msg);
-        } catch (RemoteException e) {
-          // In this case the remote process was terminated or crashed before we could
-          // even do anything with it; there is nothing we can do other than unregister the
-          // Espresso instance.
-          Log.w(TAG, "The remote process is terminated unexpectedly", e);
-          instrumentationConnection.unregisterClient(TYPE, remoteEspresso);
-        }
+    /** Tells remote Espresso instances to drop a request, unless they already started it. */
+    private void cancelRequest(int requestId, List<Messenger> remoteEspressos) {
+      if (remoteEspressos.isEmpty()) {
+        return;
+      }
+      Bundle data = new Bundle();
+      data.putString(BUNDLE_KEY_TYPE, TYPE);
+      for (Messenger remoteEspresso : remoteEspressos) {
+        sendToRemoteEspresso(remoteEspresso, MSG_CANCEL_REQUEST, requestId, data);
       }
     }
 
@@ -593,24 +787,53 @@ public final class EspressoRemote implements RemoteInteraction {
      * attempt to run the desired interaction 3. send a response to the caller whether there is
      * nothing to execute on (1 is false) or the interaction failed (e.g due to an assertion)
      *
+     * <p>The request runs after all requests received before it, unless the caller cancels it
+     * first.
+     *
      * @param caller The caller that initiated this request
+     * @param requestId The id of the request, echoed in the response
      * @param data A Bundle including InteractionRequestProto repressing the Espresso interaction
      */
-    private void handleEspressoRequest(Messenger caller, Bundle data) {
-      UUID uuid = (UUID) data.getSerializable(BUNDLE_KEY_UUID);
+    private void handleEspressoRequest(
+        final Messenger caller, final int requestId, final Bundle data) {
       logDebugWithProcess(
-          TAG, String.format(Locale.ROOT, "handleEspressoRequest for id: %s", uuid));
-
-      Message msg = getEspressoMessage(MSG_HANDLE_ESPRESSO_RESPONSE);
-      Bundle resultData = msg.getData();
-      // copy over the request UUID
-      resultData.putSerializable(BUNDLE_KEY_UUID, uuid);
-      // attempt to execute the request and save the result
+          TAG, String.format(Locale.ROOT, "handleEspressoRequest for id: %s", requestId));
       isRemoteProcess = true;
-      InteractionResponse interactionResponse = executeRequest(data);
-      resultData.putByteArray(BUNDLE_KEY_PROTO, interactionResponse.toProto().toByteArray());
-      msg.setData(resultData);
+      final RequestKey requestKey = new RequestKey(caller, requestId);
+      queuedRequests.add(requestKey);
+      requestExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              if (!queuedRequests.remove(requestKey)) {
+                logDebugWithProcess(TAG, "Dropping cancelled request with id: %s", requestId);
+                return;
+              }
+              Message msg = getEspressoMessage(MSG_HANDLE_ESPRESSO_RESPONSE);
+              msg.arg1 = requestId;
+              // attempt to execute the request and save the result
+              InteractionResponse interactionResponse = executeRequest(data);
+              msg.getData()
+                  .putByteArray(BUNDLE_KEY_PROTO, interactionResponse.toProto().toByteArray());
+              sendResponse(caller, msg);
+            }
+          });
+    }
 
+    /** Responds to the caller once all requests received before have been served. */
+    private void handleEmptyRequest(final Messenger caller, final int requestId) {
+      requestExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              Message msg = getEspressoMessage(MSG_HANDLE_ESPRESSO_RESPONSE);
+              msg.arg1 = requestId;
+              sendResponse(caller, msg);
+            }
+          });
+    }
+
+    private void sendResponse(Messenger caller, Message msg) {
       try {
         caller.send(msg);
       } catch (RemoteException e) {
@@ -669,19 +892,16 @@ public final class EspressoRemote implements RemoteInteraction {
           .build();
     }
 
-    private void handleEspressoResponse(Bundle data) {
-      UUID uuid = (UUID) data.getSerializable(BUNDLE_KEY_UUID);
-      logDebugWithProcess(TAG, "handleEspressoResponse for id: %s", uuid);
-      ResponseHolder response = responses.get(uuid);
+    private void handleEspressoResponse(Messenger responder, int requestId, Bundle data) {
+      logDebugWithProcess(TAG, "handleEspressoResponse for id: %s", requestId);
+      ResponseHolder response = responses.get(requestId);
       if (null == response) {
-        // TODO(b/32968974) Decide whether logging is sufficient
-        throw new IllegalStateException("Received a response from an unknown message: " + uuid);
+        // Another instance answered the request already, or its sender stopped waiting.
+        logDebugWithProcess(TAG, "Ignoring response for finished request: %s", requestId);
+        return;
       }
-
-      // set the response to be handled on the instrumentation thread
-      response.setData(data);
-      // notify
-      response.getLatch().countDown();
+      // the response is handled on the requesting thread
+      response.onResponse(responder, data);
     }
   } // close IncomingHandler
 
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.test.espresso.remote;
+
+import static androidx.test.espresso.remote.ProtoUtils.capitalizeFirstChar;
+import static androidx.test.espresso.remote.ProtoUtils.getFilteredFieldList;
+import static androidx.test.internal.util.Checks.checkState;
+import static androidx.test.internal.util.LogUtil.logDebug;
+
+import android.os.Parcelable;
+import androidx.annotation.Nullable;
+import androidx.test.espresso.remote.annotation.RemoteMsgConstructor;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import java.io.Serializable;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Converts instances of a type registered with a {@link RemoteDescriptor} to and from their proto
+ * message, using fields, methods and the constructor looked up once per descriptor.
+ *
+ * <p>{@link RemoteMessageSerializer} and {@link RemoteMessageDeserializer} look up every field,
+ * proto builder method and constructor by name for each message they convert. A codec binds them
+ * when it is first requested for a descriptor and is reused for all later messages of that type.
+ * Descriptors whose proto messages do not follow the expected accessor naming cannot be bound and
+ * are left to the reflective conversion.
+ */
+final class GenericMessageCodec {
+  private static final String TAG = "GenericMessageCodec";
+
+  // Keyed by descriptor identity, so codecs go away with the registry that holds the descriptor.
+  private static final Cache<RemoteDescriptor, Optional<GenericMessageCodec>> codecCache =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  private static final int KIND_ITERABLE = 0;
+  private static final int KIND_BYTE_STRING = 1;
+  private static final int KIND_PARCELABLE = 2;
+  private static final int KIND_ANY = 3;
+
+  private final Class<?> instanceType;
+  private final String[] fieldNames;
+  private final Field[] instanceFields;
+  private final Method newBuilder;
+  private final Method build;
+  // Builder setters by field, null if the proto message has no such setter.
+  private final Method[] setByteString;
+  private final Method[] setAny;
+  private final Method[] addAll;
+  // Proto message getters by field, matching the declared field type.
+  private final Method[] getters;
+  private final int[] getterKinds;
+  private final Class<?>[] fieldTypes;
+  private final Constructor<?> constructor;
+
+  private GenericMessageCodec(RemoteDescriptor remoteDescriptor)
+      throws NoSuchFieldException, NoSuchMethodException {
+    List<FieldDescriptor> fieldDescriptors = remoteDescriptor.getInstanceFieldDescriptorList();
+    Class<?> protoType = remoteDescriptor.getProtoType();
+    Class<?> builderType = remoteDescriptor.getProtoBuilderClass();
+    int fieldCount = fieldDescriptors.size();
+
+    instanceType = remoteDescriptor.getInstanceType();
+    fieldNames = new String[fieldCount];
+    fieldTypes = new Class<?>[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      fieldNames[i] = fieldDescriptors.get(i).fieldName;
+      fieldTypes[i] = fieldDescriptors.get(i).fieldType;
+    }
+    instanceFields =
+        getFilteredFieldList(instanceType, Arrays.asList(fieldNames)).toArray(new Field[0]);
+
+    newBuilder = accessible(protoType.getMethod("newBuilder"));
+    build = accessible(builderType.getMethod("build"));
+
+    setByteString = new Method[fieldCount];
+    setAny = new Method[fieldCount];
+    addAll = new Method[fieldCount];
+    getters = new Method[fieldCount];
+    getterKinds = new int[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      String suffix = capitalizeFirstChar(fieldNames[i]);
+      instanceFields[i].setAccessible(true);
+      setByteString[i] = findDeclaredMethod(builderType, "set" + suffix, ByteString.class);
+      setAny[i] = findDeclaredMethod(builderType, "set" + suffix, Any.class);
+      addAll[i] = findDeclaredMethod(builderType, "addAll" + suffix, Iterable.class);
+
+      // Same type dispatch as RemoteMessageDeserializer
+      Class<?> fieldType = fieldTypes[i];
+      if (Iterable.class.isAssignableFrom(fieldType)) {
+        getterKinds[i] = KIND_ITERABLE;
+        getters[i] = accessible(protoType.getDeclaredMethod("get" + suffix + "List"));
+      } else if (Serializable.class.isAssignableFrom(fieldType)
+          || Object.class == fieldType
+          || fieldType.isPrimitive()) {
+        getterKinds[i] = KIND_BYTE_STRING;
+        getters[i] = accessible(protoType.getDeclaredMethod("get" + suffix));
+      } else if (Parcelable.class.isAssignableFrom(fieldType)) {
+        getterKinds[i] = KIND_PARCELABLE;
+        getters[i] = accessible(protoType.getDeclaredMethod("get" + suffix));
+      } else {
+        getterKinds[i] = KIND_ANY;
+        getters[i] = accessible(protoType.getDeclaredMethod("get" + suffix));
+      }
+    }
+    constructor = accessible(findConstructor(instanceType, fieldTypes));
+  }
+
+  /**
+   * Returns the codec for a descriptor, or {@code null} if the descriptor cannot be bound and has
+   * to be converted reflectively.
+   */
+  @Nullable
+  static GenericMessageCodec forDescriptor(final RemoteDescriptor remoteDescriptor) {
+    try {
+      return codecCache
+          .get(
+              remoteDescriptor,
+              new Callable<Optional<GenericMessageCodec>>() {
+                @Override
+                public Optional<GenericMessageCodec> call() {
+                  return bind(remoteDescriptor);
+                }
+              })
+          .orNull();
+    } catch (ExecutionException e) {
+      logDebug(TAG, "Cannot bind codec for %s: %s", remoteDescriptor.getInstanceTypeName(), e);
+      return null;
+    }
+  }
+
+  private static Optional<GenericMessageCodec> bind(RemoteDescriptor remoteDescriptor) {
+    try {
+      return Optional.of(new GenericMessageCodec(remoteDescriptor));
+    } catch (NoSuchFieldException | NoSuchMethodException | RuntimeException e) {
+      logDebug(TAG, "Cannot bind codec for %s: %s", remoteDescriptor.getInstanceTypeName(), e);
+      return Optional.absent();
+    }
+  }
+
+  /** Serializes an instance of the descriptor's instance type into its proto message. */
+  MessageLite toProto(Object instance, RemoteDescriptorRegistry remoteDescriptorRegistry)
+      throws IllegalAccessException {
+    Object builder = invoke(newBuilder, null);
+    for (int i = 0; i < instanceFields.length; i++) {
+      Object fieldValue = instanceFields[i].get(instance);
+      checkState(
+          fieldValue != null,
+          "Serialization of field %s.%s failed, field was null!",
+          instanceFields[i].getDeclaringClass(),
+          fieldNames[i]);
+
+      // Same type dispatch as RemoteMessageSerializer
+      if (fieldValue instanceof Iterable) {
+        List<MessageLite> messageLites = new ArrayList<>();
+        for (Object element : (Iterable<?>) fieldValue) {
+          messageLites.add(TypeProtoConverters.typeToAny(element, remoteDescriptorRegistry));
+        }
+        invokeSetter(addAll[i], Iterable.class, builder, i, messageLites);
+      } else if (fieldValue instanceof Serializable) {
+        invokeSetter(
+            setByteString[i],
+            ByteString.class,
+            builder,
+            i,
+            TypeProtoConverters.typeToByteString(fieldValue));
+      } else if (fieldValue instanceof Parcelable) {
+        invokeSetter(
+            setByteString[i],
+            ByteString.class,
+            builder,
+            i,
+            TypeProtoConverters.parcelableToByteString((Parcelable) fieldValue));
+      } else if (remoteDescriptorRegistry.hasArgForInstanceType(fieldValue.getClass())) {
+        invokeSetter(
+            setAny[i],
+            Any.class,
+            builder,
+            i,
+            TypeProtoConverters.typeToAny(fieldValue, remoteDescriptorRegistry));
+      } else {
+        throw new RemoteProtocolException(
+            String.format(
+                Locale.ROOT,
+                "Target field: %s#%s cannot be serialised "
+                    + "into a proto. Supported target fields can be of type: Any, Serializable or "
+                    + "an Iterable<Any/Serializable>",
+                fieldValue.getClass().getName(),
+                fieldNames[i]));
+      }
+    }
+    return (MessageLite) invoke(build, builder);
+  }
+
+  /** Deserializes a proto message into an instance of the descriptor's instance type. */
+  Object fromProto(
+      MessageLite messageLite, final RemoteDescriptorRegistry remoteDescriptorRegistry) {
+    Object[] constructorParams = new Object[getters.length];
+    for (int i = 0; i < getters.length; i++) {
+      Object value = invoke(getters[i], messageLite);
+      switch (getterKinds[i]) {
+        case KIND_ITERABLE:
+          @SuppressWarnings("unchecked") // getter of a repeated Any field
+          List<Any> anyList = (List<Any>) value;
+          constructorParams[i] =
+              Iterables.transform(
+                  anyList,
+                  new Function<Any, Object>() {
+                    @Override
+                    public Object apply(Any any) {
+                      return TypeProtoConverters.anyToType(any, remoteDescriptorRegistry);
+                    }
+                  });
+          break;
+        case KIND_BYTE_STRING:
+          constructorParams[i] = TypeProtoConverters.byteStringToType((ByteString) value);
+          break;
+        case KIND_PARCELABLE:
+          @SuppressWarnings("unchecked") // type is checked when binding the getter
+          Class<Parcelable> parcelableClass = (Class<Parcelable>) fieldTypes[i];
+          constructorParams[i] =
+              TypeProtoConverters.byteStringToParcelable((ByteString) value, parcelableClass);
+          break;
+        default:
+          constructorParams[i] =
+              TypeProtoConverters.anyToType((Any) value, remoteDescriptorRegistry);
+          break;
+      }
+    }
+
+    try {
+      return constructor.newInstance(constructorParams);
+    } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+      throw new RemoteProtocolException(
+          String.format(
+              Locale.ROOT,
+              "Cannot invoke constructor %s on clazz %s",
+              constructor,
+              instanceType.getName()),
+          e);
+    }
+  }
+
+  private void invokeSetter(
+      @Nullable Method setter, Class<?> valueType, Object builder, int field, Object value) {
+    if (setter == null) {
+      throw new RemoteProtocolException(
+          String.format(
+              Locale.ROOT,
+              "No setter for field %s taking a %s on proto builder of %s",
+              fieldNames[field],
+              valueType.getSimpleName(),
+              instanceType.getName()));
+    }
+    invoke(setter, builder, value);
+  }
+
+  private static Object invoke(Method method, @Nullable Object target, Object... args) {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException | IllegalAccessException e) {
+      throw new RemoteProtocolException(
+          String.format(Locale.ROOT, "Cannot invoke method %s", method.getName()), e);
+    }
+  }
+
+  @Nullable
+  private static Method findDeclaredMethod(
+      Class<?> clazz, String methodName, Class<?> parameterType) {
+    try {
+      return accessible(clazz.getDeclaredMethod(methodName, parameterType));
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static Constructor<?> findConstructor(Class<?> clazz, Class<?>[] parameterTypes)
+      throws NoSuchMethodException {
+    // Same lookup as ConstructorInvocation
+    for (Constructor<?> candidate : clazz.getDeclaredConstructors()) {
+      if (candidate.isAnnotationPresent(RemoteMsgConstructor.class)) {
+        return candidate;
+      }
+    }
+    return clazz.getConstructor(parameterTypes);
+  }
+
+  private static <T extends AccessibleObject> T accessible(T member) {
+    member.setAccessible(true);
+    return member;
+  }
+}
@@ -59,6 +59,10 @@ import java.util.List;
  *   <li/>
  *       <ol/>
  *
+ * <p>The proto getters and the constructor are looked up once per {@link RemoteDescriptor} by a
+ * {@link GenericMessageCodec}. They are only looked up for each message if the codec cannot be
+ * bound.
+ *
  * @see RemoteMessageSerializer
  */
 final class RemoteMessageDeserializer implements EspressoRemoteMessage.From<Object, MessageLite> {
@@ -97,6 +101,11 @@ final class RemoteMessageDeserializer implements EspressoRemoteMessage.From<Obje
   }
 
   private Object fromProtoInternal(MessageLite messageLite, RemoteDescriptor remoteDescriptor) {
+    GenericMessageCodec codec = GenericMessageCodec.forDescriptor(remoteDescriptor);
+    if (codec != null) {
+      return codec.fromProto(messageLite, remoteDescriptorRegistry);
+    }
+
     // List that will be used to store constructor parameters. These values will later be passed
     // along to the constructor of the target object
     List<Object> constructorParams = Lists.newArrayList();
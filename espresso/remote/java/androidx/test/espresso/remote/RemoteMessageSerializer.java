@@ -23,6 +23,7 @@ import static androidx.test.internal.util.LogUtil.logDebug;
 
 import android.os.Parcelable;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.protobuf.Any;
@@ -62,6 +63,9 @@ import java.util.Locale;
  *   <li>Process all other types that are registered with {@link RemoteDescriptorRegistry}
  *   <li>Creates a proto message by calling the proto message Builders {@code build} method
  *       <ol/>
+ *
+ * <p>The fields and builder methods are looked up once per {@link RemoteDescriptor} by a {@link
+ * GenericMessageCodec}. They are only looked up for each message if the codec cannot be bound.
  */
 final class RemoteMessageSerializer implements EspressoRemoteMessage.To<MessageLite> {
   private static final String TAG = "RemoteMsgSerializer";
@@ -71,6 +75,7 @@ final class RemoteMessageSerializer implements EspressoRemoteMessage.To<MessageL
   private final List<FieldDescriptor> fieldDescriptorList;
   private final Class<?> builderType;
   private final Class<?> protoType;
+  @Nullable private final GenericMessageCodec codec;
 
   /**
    * Creates a {@link RemoteMessageSerializer}
@@ -88,6 +93,7 @@ final class RemoteMessageSerializer implements EspressoRemoteMessage.To<MessageL
     this.fieldDescriptorList = remoteDescriptor.getInstanceFieldDescriptorList();
     this.builderType = remoteDescriptor.getProtoBuilderClass();
     this.protoType = remoteDescriptor.getProtoType();
+    this.codec = GenericMessageCodec.forDescriptor(remoteDescriptor);
   }
 
   /** {@inheritDoc} */
@@ -99,6 +105,9 @@ final class RemoteMessageSerializer implements EspressoRemoteMessage.To<MessageL
   private MessageLite toProtoInternal() {
     List<Field> targetFields = null;
     try {
+      if (codec != null) {
+        return codec.toProto(instance, remoteDescriptorRegistry);
+      }
       // Filter a class declared fields based on field descriptor names
       targetFields =
           getFilteredFieldList(
@@ -119,16 +128,18 @@ final class RemoteMessageSerializer implements EspressoRemoteMessage.To<MessageL
       }
       throw new RemoteProtocolException("Error", e);
     } finally {
-      logDebug(
-          TAG,
-          "instance type: %s, protoType: %s, declaredFields %s total: %s, "
-              + "targetFields %s total: %s",
-          instance.getClass(),
-          protoType,
-          instance.getClass().getDeclaredFields().length,
-          Arrays.toString(instance.getClass().getDeclaredFields()),
-          targetFields.size(),
-          targetFields);
+      if (targetFields != null) {
+        logDebug(
+            TAG,
+            "instance type: %s, protoType: %s, declaredFields %s total: %s, "
+                + "targetFields %s total: %s",
+            instance.getClass(),
+            protoType,
+            instance.getClass().getDeclaredFields().length,
+            Arrays.toString(instance.getClass().getDeclaredFields()),
+            targetFields.size(),
+            targetFields);
+      }
     }
   }
 
@@ -42,6 +42,8 @@ import androidx.test.espresso.ViewAssertion;
 import androidx.test.espresso.matcher.RootMatchers;
 import androidx.test.espresso.proto.UiInteraction.InteractionResultProto;
 import androidx.test.espresso.remote.EspressoRemote.RemoteInteractionStrategy;
+import androidx.test.espresso.remote.InteractionResponse.RemoteError;
+import androidx.test.espresso.remote.InteractionResponse.Status;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import androidx.test.internal.runner.InstrumentationConnection;
@@ -51,7 +53,9 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -247,6 +251,159 @@ public class EspressoRemoteTest {
     handlerThread.getLooper().quit();
   }
 
+  @Test
+  public void verifyConcurrentRequestsAreMultiplexed() throws Exception {
+    final EspressoRemote espressoRemote = new EspressoRemote(mockedInstrumentation);
+    espressoRemote.init();
+
+    // create a tmp handler that only responds once both requests are outstanding, in reverse order
+    HandlerThread handlerThread = new HandlerThread("OtherEspresso");
+    handlerThread.start();
+    final List<Message> requests = new ArrayList<>();
+    Handler handler =
+        new Handler(handlerThread.getLooper()) {
+          @Override
+          public void handleMessage(Message msg) {
+            assertEquals(EspressoRemote.MSG_HANDLE_ESPRESSO_REQUEST, msg.what);
+            requests.add(Message.obtain(msg));
+            if (requests.size() < 2) {
+              return;
+            }
+            for (int i = requests.size() - 1; i >= 0; i--) {
+              Message request = requests.get(i);
+              request.what = EspressoRemote.MSG_HANDLE_ESPRESSO_RESPONSE;
+              request.getData().putByteArray(BUNDLE_KEY_PROTO, okResult());
+              espressoRemote.incomingHandler.handleMessage(request);
+            }
+          }
+        };
+    Messenger otherEspressoMessenger = new Messenger(handler);
+    Set<Messenger> clients = new HashSet<>();
+    clients.add(otherEspressoMessenger);
+    when(mockedInstrumentation.getClientsForType(EspressoRemote.TYPE)).thenReturn(clients);
+
+    ListenableFuture<?> first =
+        remoteExecutor.submit(() -> espressoRemote.initiateRemoteCall("first".getBytes(), null));
+    ListenableFuture<?> second =
+        remoteExecutor.submit(() -> espressoRemote.initiateRemoteCall("second".getBytes(), null));
+
+    // both calls return, without waiting for each other
+    first.get(1, TimeUnit.SECONDS);
+    second.get(1, TimeUnit.SECONDS);
+
+    // clean up
+    handlerThread.getLooper().quit();
+  }
+
+  @Test
+  public void verifySuccessfulResponse_cancelsRequestToOtherRemoteEspressos()
+      throws InterruptedException {
+    final EspressoRemote espressoRemote = new EspressoRemote(mockedInstrumentation);
+    espressoRemote.init();
+
+    // create a tmp handler that responds successfully
+    HandlerThread respondingThread = new HandlerThread("RespondingEspresso");
+    respondingThread.start();
+    Handler respondingHandler =
+        new Handler(respondingThread.getLooper()) {
+          @Override
+          public void handleMessage(Message msg) {
+            Message response = Message.obtain(msg);
+            response.what = EspressoRemote.MSG_HANDLE_ESPRESSO_RESPONSE;
+            Bundle resultData = new Bundle();
+            resultData.putString(EspressoRemote.BUNDLE_KEY_TYPE, EspressoRemote.TYPE);
+            resultData.putByteArray(BUNDLE_KEY_PROTO, okResult());
+            response.setData(resultData);
+            espressoRemote.incomingHandler.handleMessage(response);
+          }
+        };
+
+    // create a tmp handler that never responds
+    final CountDownLatch cancelLatch = new CountDownLatch(1);
+    HandlerThread silentThread = new HandlerThread("SilentEspresso");
+    silentThread.start();
+    Handler silentHandler =
+        new Handler(silentThread.getLooper()) {
+          @Override
+          public void handleMessage(Message msg) {
+            if (EspressoRemote.MSG_CANCEL_REQUEST == msg.what) {
+              cancelLatch.countDown();
+            }
+          }
+        };
+
+    Set<Messenger> clients = new HashSet<>();
+    clients.add(new Messenger(respondingHandler));
+    clients.add(new Messenger(silentHandler));
+    when(mockedInstrumentation.getClientsForType(EspressoRemote.TYPE)).thenReturn(clients);
+
+    espressoRemote.initiateRemoteCall("TBDProto".getBytes(), null);
+
+    // the instance that did not respond is told to drop the request
+    assertTrue(cancelLatch.await(200, TimeUnit.MILLISECONDS));
+
+    // clean up
+    respondingThread.getLooper().quit();
+    silentThread.getLooper().quit();
+  }
+
+  @Test
+  public void verifySilentRemoteEspresso_doesNotHideErrorResponse() throws InterruptedException {
+    final EspressoRemote espressoRemote = new EspressoRemote(mockedInstrumentation);
+    espressoRemote.init();
+    espressoRemote.setResponseTimeout(100, TimeUnit.MILLISECONDS);
+
+    // create a tmp handler that responds with an error
+    HandlerThread failingThread = new HandlerThread("FailingEspresso");
+    failingThread.start();
+    Handler failingHandler =
+        new Handler(failingThread.getLooper()) {
+          @Override
+          public void handleMessage(Message msg) {
+            Message response = Message.obtain(msg);
+            response.what = EspressoRemote.MSG_HANDLE_ESPRESSO_RESPONSE;
+            Bundle resultData = new Bundle();
+            resultData.putString(EspressoRemote.BUNDLE_KEY_TYPE, EspressoRemote.TYPE);
+            resultData.putByteArray(BUNDLE_KEY_PROTO, errorResult());
+            response.setData(resultData);
+            espressoRemote.incomingHandler.handleMessage(response);
+          }
+        };
+
+    // create a tmp handler that never responds
+    final CountDownLatch cancelLatch = new CountDownLatch(1);
+    HandlerThread silentThread = new HandlerThread("SilentEspresso");
+    silentThread.start();
+    Handler silentHandler =
+        new Handler(silentThread.getLooper()) {
+          @Override
+          public void handleMessage(Message msg) {
+            if (EspressoRemote.MSG_CANCEL_REQUEST == msg.what) {
+              cancelLatch.countDown();
+            }
+          }
+        };
+
+    Set<Messenger> clients = new HashSet<>();
+    clients.add(new Messenger(failingHandler));
+    clients.add(new Messenger(silentHandler));
+    when(mockedInstrumentation.getClientsForType(EspressoRemote.TYPE)).thenReturn(clients);
+
+    try {
+      espressoRemote.initiateRemoteCall("TBDProto".getBytes(), null);
+      fail("Expected RemoteEspressoException to be thrown");
+    } catch (RemoteEspressoException e) {
+      // expected, the error is reported once the silent instance times out
+    }
+
+    // the instance that did not respond is told to drop the request
+    assertTrue(cancelLatch.await(200, TimeUnit.MILLISECONDS));
+
+    // clean up
+    failingThread.getLooper().quit();
+    silentThread.getLooper().quit();
+  }
+
   @Test
   public void remoteInteractionStrategy_addsViewActionBinders_fromBundle() {
     Matcher viewMatcherMock = Mockito.mock(Matcher.class);
@@ -288,6 +445,19 @@ public class EspressoRemoteTest {
     verify(bindableMock).setIBinder(binderMock);
   }
 
+  private static byte[] okResult() {
+    return InteractionResultProto.newBuilder().setOk(true).build().toByteArray();
+  }
+
+  private static byte[] errorResult() {
+    return new InteractionResponse.Builder()
+        .setStatus(Status.Error)
+        .setRemoteError(new RemoteError(RemoteError.REMOTE_ESPRESSO_ERROR_CODE, "failed"))
+        .build()
+        .toProto()
+        .toByteArray();
+  }
+
   private static final class BindableViewAction implements ViewAction, Bindable {
 
     private final Bindable bindableMock;
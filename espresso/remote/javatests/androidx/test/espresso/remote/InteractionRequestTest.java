@@ -18,10 +18,12 @@ package androidx.test.espresso.remote;
 
 import static androidx.test.espresso.assertion.ViewAssertions.matches;
 import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static androidx.test.espresso.matcher.ViewMatchers.withText;
 import static junit.framework.Assert.fail;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.isEmptyString;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
@@ -40,6 +42,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import com.google.protobuf.Any;
 import org.hamcrest.Matcher;
+import org.hamcrest.core.AllOf;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -161,6 +164,40 @@ public class InteractionRequestTest {
         interactionRequest.getViewAssertion(), instanceOf(Class.forName(VIEW_ASSERTION_MATCHES)));
   }
 
+  @Test
+  public void createInteractionRequest_WithAction_RoundTrip() {
+    InteractionRequest interactionRequest =
+        new InteractionRequest.Builder()
+            .setRootMatcher(rootMatcher)
+            .setViewMatcher(allOf(withIdMatcher, withText("Espresso")))
+            .setViewAction(viewAction)
+            .build();
+
+    InteractionRequest decodedRequest = roundTrip(interactionRequest);
+
+    assertThat(decodedRequest.getViewMatcher(), instanceOf(AllOf.class));
+    assertThat(decodedRequest.getViewAction(), instanceOf(GeneralClickAction.class));
+    assertThat(
+        decodedRequest.toProto().toByteString(),
+        equalTo(interactionRequest.toProto().toByteString()));
+  }
+
+  @Test
+  public void createInteractionRequest_WithAssertion_RoundTrip() {
+    InteractionRequest interactionRequest =
+        new InteractionRequest.Builder()
+            .setRootMatcher(rootMatcher)
+            .setViewMatcher(withIdMatcher)
+            .setViewAssertion(matches(withText("Espresso")))
+            .build();
+
+    InteractionRequest decodedRequest = roundTrip(interactionRequest);
+
+    assertThat(
+        decodedRequest.toProto().toByteString(),
+        equalTo(interactionRequest.toProto().toByteString()));
+  }
+
   @Test
   public void createInteractionRequest_WithViewActionAndViewAssertion_ThrowsISE() {
     try {
@@ -232,4 +269,10 @@ public class InteractionRequestTest {
       // expected
     }
   }
+
+  private static InteractionRequest roundTrip(InteractionRequest interactionRequest) {
+    return new InteractionRequest.Builder()
+        .setRequestProto(interactionRequest.toProto().toByteArray())
+        .build();
+  }
 }
@@ -90,6 +90,23 @@ public class InteractionResponseTest {
     }
   }
 
+  @Test
+  public void createInteractionResponse_WithRemoteError_RoundTrip() {
+    InteractionResponse response =
+        new InteractionResponse.Builder()
+            .setStatus(Status.Error)
+            .setRemoteError(new RemoteError(REMOTE_ESPRESSO_ERROR_CODE, "No matching view"))
+            .build();
+
+    InteractionResponse decodedResponse =
+        new InteractionResponse.Builder()
+            .setResultProto(response.toProto().toByteArray())
+            .build();
+
+    assertThat(decodedResponse.getStatus(), equalTo(Status.Error));
+    assertThat(decodedResponse.getRemoteError().getCode(), equalTo(REMOTE_ESPRESSO_ERROR_CODE));
+  }
+
   @Test
   public void remoteError_GetWellKnownFormattedErrorFromCodeAndDetailedError() {
     String detailedError = "some detailed error";
@@ -50,6 +50,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
@@ -113,8 +114,10 @@ public class InstrumentationConnection {
   /**
    * The {@link IncomingHandler} that will handle all the incoming messages via {@link
    * IncomingHandler#messengerHandler}
+   *
+   * <p>Only assigned while holding the lock, volatile for {@link #getClientCountForType(String)}.
    */
-  IncomingHandler incomingHandler;
+  volatile IncomingHandler incomingHandler;
 
   /** Receiver used to discover and establish communication with new instrumentation instances */
   @VisibleForTesting final BroadcastReceiver messengerReceiver = new MessengerReceiver();
@@ -257,6 +260,21 @@ public class InstrumentationConnection {
     return incomingHandler.getClientsForType(type);
   }
 
+  /**
+   * Returns the number of clients of the same type known so far.
+   *
+   * <p>Unlike {@link #getClientsForType(String)} this doesn't wait for the handler thread, so it is
+   * cheap enough to be called before every interaction. Registrations that are still being handled
+   * are not counted. It doesn't take the lock either, so it doesn't block behind e.g. {@link
+   * #requestRemoteInstancesActivityCleanup()}.
+   *
+   * @param type the type of the client
+   */
+  public int getClientCountForType(String type) {
+    IncomingHandler handler = incomingHandler;
+    return handler == null ? 0 : handler.getClientCount(type);
+  }
+
   /**
    * Un-register a client and notify all other clients of the same type if needed.
    *
@@ -319,6 +337,12 @@ public class InstrumentationConnection {
      */
     @VisibleForTesting Map<String, Set<Messenger>> typedClients = new HashMap<>();
 
+    /**
+     * Mirrors the size of each set in {@link #typedClients}, so it can be read from any thread.
+     * Note: This Map should only be modified via the incomingHandler.
+     */
+    private final Map<String, Integer> clientCounts = new ConcurrentHashMap<>();
+
     /**
      * Keeps track of {@link CountDownLatch}s mapped to {@link UUID}s to aid with synchronization.
      */
@@ -491,6 +515,7 @@ public class InstrumentationConnection {
       sendMessageToOtherInstr(MSG_REMOVE_INSTRUMENTATION, null);
       otherInstrumentations.clear();
       typedClients.clear();
+      clientCounts.clear();
       logDebugWithProcess(TAG, "quitting looper...");
       getLooper().quit();
       logDebugWithProcess(TAG, "finishing instrumentation...");
@@ -499,6 +524,11 @@ public class InstrumentationConnection {
       activityFinisher = null;
     }
 
+    private int getClientCount(String type) {
+      Integer count = clientCounts.get(type);
+      return count == null ? 0 : count;
+    }
+
     private Set<Messenger> getClientsForType(final String type) {
       FutureTask<Set<Messenger>> associationTask =
           new FutureTask<>(
@@ -625,11 +655,13 @@ public class InstrumentationConnection {
         clientSet = new HashSet<>();
         clientSet.add(client);
         typedClients.put(type, clientSet);
+        clientCounts.put(type, 1);
         return;
       }
 
       // Add the new client
       clientSet.add(client);
+      clientCounts.put(type, clientSet.size());
     }
 
     private void unregisterClient(String type, Messenger client) {
@@ -659,6 +691,9 @@ public class InstrumentationConnection {
 
       if (clientSet.isEmpty()) {
         typedClients.remove(type);
+        clientCounts.remove(type);
+      } else {
+        clientCounts.put(type, clientSet.size());
       }
     }
 
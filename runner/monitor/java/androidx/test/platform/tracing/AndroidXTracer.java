@@ -66,6 +66,11 @@ class AndroidXTracer implements Tracer {
   @NonNull
   @Override
   public Span beginSpan(@NonNull String name) {
+    if (!Trace.isEnabled()) {
+      // Nothing would be recorded; skip the per span allocations. Spans begun while disabled stay
+      // no-ops even if tracing gets enabled before they are closed, so sections remain balanced.
+      return Tracing.NOOP_SPAN;
+    }
     beginSection(sanitizeSpanName(name));
     return new AndroidXTracerSpan();
   }
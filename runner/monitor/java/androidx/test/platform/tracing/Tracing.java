@@ -45,8 +45,28 @@ import java.util.Map;
 @ExperimentalTestApi
 public final class Tracing {
   private static final String TAG = Tracing.class.getSimpleName();
+
+  /**
+   * Span that can be returned by the built-in tracers when they do not record anything, e.g. while
+   * tracing is disabled. It is neither closed nor asked for child spans.
+   */
+  static final Span NOOP_SPAN =
+      new Span() {
+        @NonNull
+        @Override
+        public Span beginChildSpan(@NonNull String name) {
+          return this;
+        }
+
+        @Override
+        public void close() {}
+      };
+
   private static final Tracing singleton = new Tracing();
+
   private final List<Tracer> tracers = Collections.synchronizedList(new ArrayList<>());
+  // Returned when no tracer records the span, e.g. when tracing is disabled.
+  private final TracerSpan emptySpan = new TracerSpan(Collections.<Tracer, Span>emptyMap());
 
   private Tracing() {
     // The Android Tracing API only exists starting with JB MR2 (API 18).
@@ -106,14 +126,22 @@ public final class Tracing {
   @MustBeClosed
   public Span beginSpan(@NonNull String name) {
     checkNotNull(name);
-    Map<Tracer, Span> spans;
+    Map<Tracer, Span> spans = null;
     synchronized (tracers) {
-      spans = new HashMap<>(tracers.size());
-      for (Tracer tracer : tracers) {
-        spans.put(tracer, createUnmanagedSpan(tracer, name));
+      // Indexed loop and lazily created map: spans are begun on hot paths and should not allocate
+      // when no tracer records them.
+      for (int i = 0; i < tracers.size(); i++) {
+        Tracer tracer = tracers.get(i);
+        Span span = createUnmanagedSpan(tracer, name);
+        if (span != NOOP_SPAN) {
+          if (spans == null) {
+            spans = new HashMap<>(tracers.size());
+          }
+          spans.put(tracer, span);
+        }
       }
     }
-    return new TracerSpan(spans);
+    return spans == null ? emptySpan : new TracerSpan(spans);
   }
 
   /**
@@ -139,6 +167,9 @@ public final class Tracing {
     @Override
     public Span beginChildSpan(@NonNull String name) {
       checkNotNull(name);
+      if (spans.isEmpty()) {
+        return emptySpan;
+      }
       Map<Tracer, Span> childSpans;
       synchronized (tracers) {
         childSpans = new HashMap<>(tracers.size());
@@ -156,6 +187,9 @@ public final class Tracing {
     /** All spans are closed, even if the tracer has been unregistered in between. */
     @Override
     public void close() {
+      if (spans.isEmpty()) {
+        return;
+      }
       for (Span span : spans.values()) {
         span.close();
       }
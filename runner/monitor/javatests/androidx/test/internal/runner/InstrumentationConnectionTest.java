@@ -367,6 +367,33 @@ public class InstrumentationConnectionTest {
     assertNull(instrumentationConnection.incomingHandler);
   }
 
+  @Test
+  public void verifyGetClientCountForType() throws InterruptedException {
+    instrumentationConnection.init(mockedInstrumentation, mockedFinisher);
+    IncomingHandler incomingHandler = instrumentationConnection.incomingHandler;
+
+    Messenger client1 = new Messenger(new Handler(Looper.getMainLooper()));
+    Messenger client2 = new Messenger(new Handler(Looper.getMainLooper()));
+    String clientType = "6";
+
+    instrumentationConnection.registerClient(clientType, client1);
+    instrumentationConnection.registerClient(clientType, client2);
+    waitForMsgHandling(incomingHandler);
+    assertEquals(2, instrumentationConnection.getClientCountForType(clientType));
+    assertEquals(0, instrumentationConnection.getClientCountForType("999"));
+
+    instrumentationConnection.unregisterClient(clientType, client1);
+    waitForMsgHandling(incomingHandler);
+    assertEquals(1, instrumentationConnection.getClientCountForType(clientType));
+
+    instrumentationConnection.unregisterClient(clientType, client2);
+    waitForMsgHandling(incomingHandler);
+    assertEquals(0, instrumentationConnection.getClientCountForType(clientType));
+
+    instrumentationConnection.terminate();
+    assertEquals(0, instrumentationConnection.getClientCountForType(clientType));
+  }
+
   @Test
   public void verifyActivityFinisher() {
     instrumentationConnection.init(mockedInstrumentation, mockedFinisher);
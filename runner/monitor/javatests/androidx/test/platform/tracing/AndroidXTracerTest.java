@@ -88,6 +88,21 @@ public class AndroidXTracerTest {
         .inOrder();
   }
 
+  @Test
+  public void beginSpan_whenTracingDisabled_isNoop() {
+    ShadowTrace.setEnabled(false);
+
+    AndroidXTracer tracer = new AndroidXTracer();
+    try (Span span1 = tracer.beginSpan("span1")) {
+      assertThat(span1).isSameInstanceAs(Tracing.NOOP_SPAN);
+      // Enabling tracing mid-span must not end a section that was never begun.
+      ShadowTrace.setEnabled(true);
+    }
+
+    assertThat(ShadowTrace.getCurrentSections()).isEmpty();
+    assertThat(ShadowTrace.getPreviousSections()).isEmpty();
+  }
+
   /**
    * android.os.Trace throws if the name is > 127 character so we cut it at that exact length in the
    * stored span name.